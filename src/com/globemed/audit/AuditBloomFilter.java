@@ -0,0 +1,102 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size Bloom filter over 64-bit key hashes, used by segment indexes to
+ * rule out segments that cannot contain a user or patient. A filter that
+ * fills up only causes more false positives (extra scanning), never a missed
+ * record.
+ *
+ * @author Hansana
+ */
+final class AuditBloomFilter {
+
+    private static final int HASH_COUNT = 3;
+
+    private final long[] words;
+    private final int bitCount;
+
+    AuditBloomFilter(int bitCount) {
+        if (bitCount < 64 || Integer.bitCount(bitCount) != 1) {
+            throw new IllegalArgumentException("Bit count must be a power of two >= 64: " + bitCount);
+        }
+        this.words = new long[bitCount >>> 6];
+        this.bitCount = bitCount;
+    }
+
+    private AuditBloomFilter(long[] words) {
+        this.words = words;
+        this.bitCount = words.length << 6;
+    }
+
+    void add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & (bitCount - 1);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & (bitCount - 1);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static long hash(String key) {
+        // 64-bit FNV-1a over the UTF-8 bytes, then mixed
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static long hash(long key) {
+        return mix(key);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    static AuditBloomFilter readFrom(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || Integer.bitCount(length) != 1 || length > (1 << 20)) {
+            throw new IOException("Corrupt Bloom filter length: " + length);
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = in.readLong();
+        }
+        return new AuditBloomFilter(words);
+    }
+}
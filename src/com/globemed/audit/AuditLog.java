@@ -0,0 +1,424 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only audit trail shared by every component that records access to
+ * patient data.
+ *
+ * {@link #record} only allocates the record and claims a ring buffer slot,
+ * so the request thread never formats, locks or touches the disk. A
+ * background writer drains the buffer in batches, appends them to rolling
+ * segment files and fsyncs according to the configured {@link Durability}.
+ * When the buffer is full the {@link OverflowPolicy} applies; dropped records
+ * are counted and a RECORDS_DROPPED marker is written so the loss shows up
+ * in the trail itself.
+ *
+ * @author Hansana
+ */
+public class AuditLog {
+
+    public static final String DEFAULT_DIRECTORY = "audit";
+    public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+    public static final long DEFAULT_SEGMENT_SIZE_BYTES = 16L * 1024 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_MS = 50;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MS = 10;
+
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    // An idle writer doubles its park up to this; record() unparks it early
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long ERROR_BACKOFF_MS = 1000;
+    private static final int BLOCK_SPINS = 100;
+
+    private static AuditLog instance;
+
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final AuditRingBuffer ring;
+    private final AuditTrailSearcher searcher;
+    private final Thread writerThread;
+
+    private volatile Durability durability;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile long groupCommitMillis;
+    private volatile long blockTimeoutMillis;
+    private volatile boolean running = true;
+    private volatile boolean flushRequested;
+    private volatile boolean writerIdle;
+    private volatile long durableCount; // Ring records processed and fsynced
+
+    // Writer thread state
+    private volatile AuditSegmentWriter writer;
+    private long nextSequence;
+    private long reportedDrops;
+
+    // Metrics
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+    private volatile long writtenCount;
+    private volatile long batchCount;
+    private volatile long fsyncCount;
+    private volatile long writeErrorCount;
+
+    public AuditLog(Path directory, int bufferCapacity, long segmentSizeBytes,
+            Durability durability, OverflowPolicy overflowPolicy) {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.ring = new AuditRingBuffer(bufferCapacity);
+        this.durability = durability;
+        this.overflowPolicy = overflowPolicy;
+        this.groupCommitMillis = DEFAULT_GROUP_COMMIT_MS;
+        this.blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MS;
+        this.searcher = new AuditTrailSearcher(() -> {
+            AuditSegmentWriter current = writer;
+            return current != null ? current.getCurrentSegment() : null;
+        });
+
+        this.writerThread = new Thread(this::writeLoop, "globemed-audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public static synchronized AuditLog getInstance() {
+        if (instance == null) {
+            instance = new AuditLog(Paths.get(DEFAULT_DIRECTORY), DEFAULT_BUFFER_CAPACITY,
+                    DEFAULT_SEGMENT_SIZE_BYTES, Durability.GROUP_COMMIT, OverflowPolicy.DROP);
+            AuditLog log = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> log.shutdown(2000),
+                    "globemed-audit-shutdown"));
+        }
+        return instance;
+    }
+
+    /**
+     * Queue an audit record. Never throws and never waits unless the policy
+     * is {@link OverflowPolicy#BLOCK} and the buffer is full.
+     */
+    public void record(String source, String user, String action, String target, String details) {
+        record(source, user, action, null, target, details);
+    }
+
+    /**
+     * Queue an audit record about one patient, so it can later be found with
+     * {@link AuditQuery#forPatient(Long)}.
+     */
+    public void record(String source, String user, String action, Long patientId, String target, String details) {
+        AuditRecord record = new AuditRecord(System.currentTimeMillis(), source, user, action, patientId,
+                target, details);
+        if (ring.offer(record) || (overflowPolicy == OverflowPolicy.BLOCK && running && offerBlocking(record))) {
+            wakeWriter();
+            return;
+        }
+        droppedCount.increment();
+    }
+
+    private void wakeWriter() {
+        if (writerIdle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private boolean offerBlocking(AuditRecord record) {
+        blockedCount.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        int spins = 0;
+        while (System.nanoTime() < deadline) {
+            if (spins++ < BLOCK_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            if (ring.offer(record)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeLoop() {
+        AuditRecord[] batch = new AuditRecord[MAX_BATCH_SIZE];
+        long lastForce = System.nanoTime();
+        long idleParkNanos = IDLE_PARK_NANOS;
+        boolean dirty = false;
+
+        while (running || ring.size() > 0) {
+            int count = ring.drainTo(batch, MAX_BATCH_SIZE);
+            if (count > 0) {
+                dirty |= writeBatch(batch, count);
+                Arrays.fill(batch, 0, count, null);
+            }
+
+            long now = System.nanoTime();
+            boolean flush = flushRequested;
+            boolean groupCommitDue = durability == Durability.GROUP_COMMIT
+                    && now - lastForce >= TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+            if (flush || durability == Durability.SYNC || groupCommitDue) {
+                if (flush) {
+                    flushRequested = false;
+                }
+                if (dirty) {
+                    dirty = !force();
+                }
+                if (!dirty) {
+                    durableCount = ring.getConsumedCount();
+                }
+                lastForce = now;
+            }
+
+            if (count > 0) {
+                idleParkNanos = IDLE_PARK_NANOS;
+            } else {
+                writerIdle = true;
+                // Re-check after publishing writerIdle so a record() racing with it is not missed
+                if (running && ring.size() == 0 && !flushRequested) {
+                    LockSupport.parkNanos(idleParkNanos);
+                    idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+            }
+        }
+
+        if (writer != null) {
+            try {
+                writer.close();
+                durableCount = ring.getConsumedCount();
+            } catch (IOException e) {
+                System.err.println("Error closing audit log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return true if anything reached the segment file
+     */
+    private boolean writeBatch(AuditRecord[] batch, int count) {
+        try {
+            ensureWriter();
+            long dropped = droppedCount.sum();
+            if (dropped > reportedDrops) {
+                writer.append(new AuditRecord(System.currentTimeMillis(), "AUDIT", null, "RECORDS_DROPPED",
+                        null, null, (dropped - reportedDrops) + " audit records dropped"), nextSequence++);
+                reportedDrops = dropped;
+            }
+            for (int i = 0; i < count; i++) {
+                writer.append(batch[i], nextSequence++);
+            }
+            writer.writeBuffer();
+            writtenCount += count;
+            batchCount++;
+            return true;
+        } catch (IOException e) {
+            writeErrorCount++;
+            droppedCount.add(count);
+            System.err.println("Audit log write failed, " + count + " records lost: " + e.getMessage());
+            if (writer != null) {
+                writer.abandonSegment();
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ERROR_BACKOFF_MS));
+            return false;
+        }
+    }
+
+    private boolean force() {
+        try {
+            writer.force();
+            fsyncCount++;
+            return true;
+        } catch (IOException e) {
+            writeErrorCount++;
+            System.err.println("Audit log fsync failed: " + e.getMessage());
+            writer.abandonSegment();
+            return false;
+        }
+    }
+
+    private void ensureWriter() throws IOException {
+        if (writer == null) {
+            writer = new AuditSegmentWriter(directory, segmentSizeBytes);
+            nextSequence = recoverNextSequence();
+        }
+    }
+
+    /**
+     * Continue numbering after the last valid record of the newest segment.
+     */
+    private long recoverNextSequence() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Path last = segments.get(segments.size() - 1);
+        try (AuditSegmentReader reader = new AuditSegmentReader(last)) {
+            long next = reader.getFirstSequence();
+            AuditRecord record;
+            while ((record = reader.next()) != null) {
+                next = record.getSequence() + 1;
+            }
+            return next;
+        } catch (IOException e) {
+            // Unreadable header; start past the sequence in its name
+            System.err.println("Skipping unreadable audit segment " + last + ": " + e.getMessage());
+            String name = last.getFileName().toString();
+            return Long.parseLong(name.substring(AuditSegmentWriter.SEGMENT_PREFIX.length(),
+                    name.length() - AuditSegmentWriter.SEGMENT_SUFFIX.length())) + 1;
+        }
+    }
+
+    /**
+     * Segment files in sequence order.
+     */
+    List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(AuditSegmentWriter::isSegmentFile)
+                    .collect(Collectors.toCollection(ArrayList::new));
+            Collections.sort(segments);
+            return segments;
+        }
+    }
+
+    /**
+     * Find audit records matching the query, oldest first, reading only the
+     * segments and blocks the indexes say can match. Records still waiting
+     * in the ring buffer are not visible; call {@link #flush(long)} first
+     * when that matters.
+     */
+    public List<AuditRecord> query(AuditQuery query) throws IOException {
+        return searcher.search(query, listSegments());
+    }
+
+    /**
+     * Wait until every record accepted before this call has been written and
+     * fsynced (or counted as lost).
+     *
+     * @return false if that did not happen within the timeout
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = ring.getClaimedCount();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (durableCount < target) {
+            if (!writerThread.isAlive() || System.nanoTime() >= deadline) {
+                return durableCount >= target;
+            }
+            flushRequested = true;
+            wakeWriter();
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting work, write out what is buffered and close the current
+     * segment.
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Configuration
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public long getGroupCommitMillis() {
+        return groupCommitMillis;
+    }
+
+    public void setGroupCommitMillis(long groupCommitMillis) {
+        this.groupCommitMillis = groupCommitMillis;
+    }
+
+    public void setBlockTimeoutMillis(long blockTimeoutMillis) {
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    // Statistics
+    public int getBufferedCount() {
+        return ring.size();
+    }
+
+    public long getAcceptedCount() {
+        return ring.getClaimedCount();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getFsyncCount() {
+        return fsyncCount;
+    }
+
+    public long getWriteErrorCount() {
+        return writeErrorCount;
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount;
+        return batches == 0 ? 0.0 : (double) writtenCount / batches;
+    }
+
+    public void printStatistics() {
+        System.out.println("Audit Log Statistics:");
+        System.out.println("  Directory: " + directory.toAbsolutePath() + " (" + durability
+                + ", overflow: " + overflowPolicy + ")");
+        System.out.println("  Buffered: " + getBufferedCount() + "/" + ring.capacity());
+        System.out.println("  Accepted/written: " + getAcceptedCount() + "/" + getWrittenCount());
+        System.out.println("  Dropped: " + getDroppedCount() + " (producers blocked " + blockedCount.sum() + " times)");
+        System.out.println(String.format("  Batches: %d (avg %.1f records), fsyncs: %d, write errors: %d",
+                batchCount, getAverageBatchSize(), getFsyncCount(), getWriteErrorCount()));
+        AuditSegmentWriter current = writer;
+        if (current != null) {
+            System.out.println("  Segments opened: " + current.getSegmentCount()
+                    + ", bytes written: " + current.getBytesWritten());
+        }
+        System.out.println("  Queries: " + searcher.getQueryCount() + " (segments scanned/skipped: "
+                + searcher.getSegmentsScanned() + "/" + searcher.getSegmentsSkipped()
+                + ", blocks: " + searcher.getBlocksScanned() + ", records: " + searcher.getRecordsScanned() + ")");
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Criteria for {@link AuditLog#query(AuditQuery)}. Every criterion is
+ * optional; unset ones match everything.
+ *
+ * <pre>
+ * // Who viewed patient 42 last month?
+ * auditLog.query(new AuditQuery()
+ *         .forPatient(42L)
+ *         .withAction("READ")
+ *         .between(monthStart, monthEnd));
+ * </pre>
+ *
+ * @author Hansana
+ */
+public class AuditQuery {
+
+    public static final int DEFAULT_LIMIT = 1000;
+
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+    private String user;
+    private Long patientId;
+    private String action;
+    private String source;
+    private int limit = DEFAULT_LIMIT;
+
+    /**
+     * Records with {@code from <= timestamp < to}; either bound may be null.
+     */
+    public AuditQuery between(LocalDateTime from, LocalDateTime to) {
+        ZoneId zone = ZoneId.systemDefault();
+        this.fromMillis = from != null ? from.atZone(zone).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        this.toMillis = to != null ? to.atZone(zone).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        return this;
+    }
+
+    public AuditQuery byUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public AuditQuery forPatient(Long patientId) {
+        this.patientId = patientId;
+        return this;
+    }
+
+    public AuditQuery withAction(String action) {
+        this.action = action;
+        return this;
+    }
+
+    public AuditQuery fromSource(String source) {
+        this.source = source;
+        return this;
+    }
+
+    /**
+     * Stop after this many matches (oldest first).
+     */
+    public AuditQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    long getFromMillis() {
+        return fromMillis;
+    }
+
+    long getToMillis() {
+        return toMillis;
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    Long getPatientId() {
+        return patientId;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Whether the segment index allows this segment to hold a match.
+     */
+    boolean mayMatch(AuditSegmentIndex index) {
+        if (!index.getHeader().overlaps(fromMillis, toMillis)) {
+            return false;
+        }
+        if (user != null && !index.mightContainUser(user)) {
+            return false;
+        }
+        return patientId == null || index.mightContainPatient(patientId);
+    }
+
+    boolean matches(AuditRecord record) {
+        return record.getTimestamp() >= fromMillis
+                && record.getTimestamp() < toMillis
+                && (user == null || user.equals(record.getUser()))
+                && (patientId == null || patientId.equals(record.getPatientId()))
+                && (action == null || action.equals(record.getAction()))
+                && (source == null || source.equals(record.getSource()));
+    }
+
+    @Override
+    public String toString() {
+        return "AuditQuery{from=" + fromMillis + ", to=" + toMillis + ", user=" + user
+                + ", patientId=" + patientId + ", action=" + action + ", source=" + source
+                + ", limit=" + limit + "}";
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One audit trail entry. Records are created on the request thread and only
+ * formatted when somebody reads them back.
+ *
+ * @author Hansana
+ */
+public final class AuditRecord {
+
+    private final long sequence;
+    private final long timestamp;
+    private final String source;
+    private final String user;
+    private final String action;
+    private final Long patientId;
+    private final String target;
+    private final String details;
+
+    AuditRecord(long timestamp, String source, String user, String action, Long patientId,
+            String target, String details) {
+        this(-1, timestamp, source, user, action, patientId, target, details);
+    }
+
+    AuditRecord(long sequence, long timestamp, String source, String user, String action,
+            Long patientId, String target, String details) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.source = source;
+        this.user = user;
+        this.action = action;
+        this.patientId = patientId;
+        this.target = target;
+        this.details = details;
+    }
+
+    /**
+     * Position in the log, assigned by the writer; -1 for a record that has
+     * not been written yet.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Patient whose data was touched, or null if the record is not about a
+     * single patient.
+     */
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getDetails() {
+        return details;
+    }
+
+    @Override
+    public String toString() {
+        String time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        return String.format("[%s] #%d %s: User=%s, Action=%s, PatientID=%s, Target=%s, Details=%s",
+                time, sequence, source, user, action, patientId, target, details);
+    }
+}
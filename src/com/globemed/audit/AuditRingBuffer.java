@@ -0,0 +1,100 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer.
+ *
+ * Each slot carries a sequence number: a producer may fill slot {@code i}
+ * for position {@code p} once the slot's sequence equals {@code p}, claims it
+ * with one CAS on the tail, and publishes it by setting the sequence to
+ * {@code p + 1}. The consumer frees the slot by advancing its sequence a
+ * full lap. A full buffer makes {@link #offer} fail instead of blocking.
+ *
+ * @author Hansana
+ */
+final class AuditRingBuffer {
+
+    private final AuditRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head; // Written by the consumer thread only
+
+    AuditRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AuditRecord[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(AuditRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = record;
+                    sequences.lazySet(index, position + 1); // Publish
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // Full: slot still holds an unconsumed record
+            } else {
+                position = tail.get(); // Another producer got there first
+            }
+        }
+    }
+
+    /**
+     * Move up to {@code max} published records into {@code out}. Consumer
+     * thread only.
+     */
+    int drainTo(AuditRecord[] out, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break; // Not yet published
+            }
+            out[count++] = slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+        }
+        head = position;
+        return count;
+    }
+
+    /**
+     * Number of records ever accepted, including ones not yet consumed.
+     */
+    long getClaimedCount() {
+        return tail.get();
+    }
+
+    long getConsumedCount() {
+        return head;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
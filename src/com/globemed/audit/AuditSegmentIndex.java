@@ -0,0 +1,262 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sparse index stored next to a sealed segment as {@code audit-<seq>.idx}.
+ *
+ * It holds the segment's sequence and timestamp range, one entry per block
+ * of {@link #BLOCK_RECORDS} records (file offset plus the block's timestamp
+ * range), and Bloom filters over the users and patient ids in the segment.
+ * The header is a fixed size at the start of the file so a query can decide
+ * from it alone whether the segment's time range is of interest.
+ *
+ * @author Hansana
+ */
+final class AuditSegmentIndex {
+
+    static final int BLOCK_RECORDS = 512;
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final byte[] MAGIC = "GMAIDX01".getBytes(StandardCharsets.US_ASCII);
+    private static final int USER_FILTER_BITS = 1 << 12;
+    private static final int PATIENT_FILTER_BITS = 1 << 17;
+
+    private final Header header;
+    private final long[] blockOffsets;
+    private final long[] blockMinTimestamps;
+    private final long[] blockMaxTimestamps;
+    private final AuditBloomFilter userFilter;
+    private final AuditBloomFilter patientFilter;
+
+    private AuditSegmentIndex(Header header, long[] blockOffsets, long[] blockMinTimestamps,
+            long[] blockMaxTimestamps, AuditBloomFilter userFilter, AuditBloomFilter patientFilter) {
+        this.header = header;
+        this.blockOffsets = blockOffsets;
+        this.blockMinTimestamps = blockMinTimestamps;
+        this.blockMaxTimestamps = blockMaxTimestamps;
+        this.userFilter = userFilter;
+        this.patientFilter = patientFilter;
+    }
+
+    static Path indexPathFor(Path segment) {
+        String name = segment.getFileName().toString();
+        String base = name.substring(0, name.length() - AuditSegmentWriter.SEGMENT_SUFFIX.length());
+        return segment.resolveSibling(base + INDEX_SUFFIX);
+    }
+
+    Header getHeader() {
+        return header;
+    }
+
+    int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    long getBlockOffset(int block) {
+        return blockOffsets[block];
+    }
+
+    /**
+     * File offset where the block ends, or -1 for the last block.
+     */
+    long getBlockEnd(int block) {
+        return block + 1 < blockOffsets.length ? blockOffsets[block + 1] : -1;
+    }
+
+    boolean blockOverlaps(int block, long fromMillis, long toMillis) {
+        return blockMaxTimestamps[block] >= fromMillis && blockMinTimestamps[block] < toMillis;
+    }
+
+    boolean mightContainUser(String user) {
+        return userFilter.mightContain(AuditBloomFilter.hash(user));
+    }
+
+    boolean mightContainPatient(long patientId) {
+        return patientFilter.mightContain(AuditBloomFilter.hash(patientId));
+    }
+
+    void write(Path indexFile) throws IOException {
+        // Write to a temporary file and move it into place, so a reader never
+        // sees half an index
+        Path temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.write(MAGIC);
+            out.writeLong(header.firstSequence);
+            out.writeLong(header.lastSequence);
+            out.writeLong(header.minTimestamp);
+            out.writeLong(header.maxTimestamp);
+            out.writeInt(header.recordCount);
+            out.writeInt(blockOffsets.length);
+            for (int i = 0; i < blockOffsets.length; i++) {
+                out.writeLong(blockOffsets[i]);
+                out.writeLong(blockMinTimestamps[i]);
+                out.writeLong(blockMaxTimestamps[i]);
+            }
+            userFilter.writeTo(out);
+            patientFilter.writeTo(out);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Header readHeader(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 64))) {
+            return readHeader(in, indexFile);
+        }
+    }
+
+    static AuditSegmentIndex read(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile), 64 * 1024))) {
+            Header header = readHeader(in, indexFile);
+            int blockCount = in.readInt();
+            if (blockCount < 0 || blockCount > header.recordCount / BLOCK_RECORDS + 1) {
+                throw new IOException("Corrupt audit index block count: " + indexFile);
+            }
+            long[] offsets = new long[blockCount];
+            long[] minTimestamps = new long[blockCount];
+            long[] maxTimestamps = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = in.readLong();
+                minTimestamps[i] = in.readLong();
+                maxTimestamps[i] = in.readLong();
+            }
+            AuditBloomFilter users = AuditBloomFilter.readFrom(in);
+            AuditBloomFilter patients = AuditBloomFilter.readFrom(in);
+            return new AuditSegmentIndex(header, offsets, minTimestamps, maxTimestamps, users, patients);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in, Path indexFile) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an audit index: " + indexFile);
+        }
+        long firstSequence = in.readLong();
+        long lastSequence = in.readLong();
+        long minTimestamp = in.readLong();
+        long maxTimestamp = in.readLong();
+        int recordCount = in.readInt();
+        return new Header(firstSequence, lastSequence, minTimestamp, maxTimestamp, recordCount);
+    }
+
+    /**
+     * Build an index by reading a whole segment, for segments that were
+     * never sealed (the writer crashed or is still appending to them).
+     */
+    static AuditSegmentIndex scan(Path segment) throws IOException {
+        try (AuditSegmentReader reader = new AuditSegmentReader(segment)) {
+            Builder builder = new Builder(reader.getFirstSequence());
+            while (true) {
+                long offset = reader.getPosition();
+                AuditRecord record = reader.next();
+                if (record == null) {
+                    break;
+                }
+                builder.add(record.getSequence(), record.getTimestamp(), record.getUser(),
+                        record.getPatientId(), offset);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Time and sequence range of a segment, small enough to keep for every
+     * segment on disk.
+     */
+    static final class Header {
+
+        final long firstSequence;
+        final long lastSequence;
+        final long minTimestamp;
+        final long maxTimestamp;
+        final int recordCount;
+
+        Header(long firstSequence, long lastSequence, long minTimestamp, long maxTimestamp, int recordCount) {
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.recordCount = recordCount;
+        }
+
+        boolean overlaps(long fromMillis, long toMillis) {
+            return recordCount > 0 && maxTimestamp >= fromMillis && minTimestamp < toMillis;
+        }
+    }
+
+    /**
+     * Collects index data while a segment is written.
+     */
+    static final class Builder {
+
+        private final long firstSequence;
+        private final List<long[]> blocks = new ArrayList<>(); // {offset, min, max}
+        private final AuditBloomFilter userFilter = new AuditBloomFilter(USER_FILTER_BITS);
+        private final AuditBloomFilter patientFilter = new AuditBloomFilter(PATIENT_FILTER_BITS);
+        private long lastSequence = -1;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private int recordCount;
+
+        Builder(long firstSequence) {
+            this.firstSequence = firstSequence;
+        }
+
+        void add(long sequence, long timestamp, String user, Long patientId, long offset) {
+            long[] block;
+            if (recordCount % BLOCK_RECORDS == 0) {
+                block = new long[]{offset, timestamp, timestamp};
+                blocks.add(block);
+            } else {
+                block = blocks.get(blocks.size() - 1);
+                block[1] = Math.min(block[1], timestamp);
+                block[2] = Math.max(block[2], timestamp);
+            }
+            if (user != null) {
+                userFilter.add(AuditBloomFilter.hash(user));
+            }
+            if (patientId != null) {
+                patientFilter.add(AuditBloomFilter.hash(patientId));
+            }
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            lastSequence = sequence;
+            recordCount++;
+        }
+
+        AuditSegmentIndex build() {
+            int blockCount = blocks.size();
+            long[] offsets = new long[blockCount];
+            long[] minTimestamps = new long[blockCount];
+            long[] maxTimestamps = new long[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                long[] block = blocks.get(i);
+                offsets[i] = block[0];
+                minTimestamps[i] = block[1];
+                maxTimestamps[i] = block[2];
+            }
+            Header header = recordCount == 0
+                    ? new Header(firstSequence, firstSequence - 1, 0, 0, 0)
+                    : new Header(firstSequence, lastSequence, minTimestamp, maxTimestamp, recordCount);
+            return new AuditSegmentIndex(header, offsets, minTimestamps, maxTimestamps, userFilter, patientFilter);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads records back from one segment written by {@link AuditSegmentWriter},
+ * in order, optionally starting at a block offset taken from the segment's
+ * index. Reading stops at the first incomplete or corrupt frame, which is
+ * where a crash interrupted the writer (or where the writer currently is).
+ *
+ * @author Hansana
+ */
+final class AuditSegmentReader implements Closeable {
+
+    private static final int MAX_PAYLOAD_SIZE = 24 + 5 * (2 + AuditSegmentWriter.MAX_STRING_CHARS * 3);
+
+    private final FileChannel channel;
+    private final DataInputStream input;
+    private final long firstSequence;
+    private final CRC32 crc = new CRC32();
+    private long position;
+    private boolean finished;
+
+    AuditSegmentReader(Path segment) throws IOException {
+        this(segment, AuditSegmentWriter.HEADER_SIZE);
+    }
+
+    AuditSegmentReader(Path segment, long offset) throws IOException {
+        this.channel = FileChannel.open(segment, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(AuditSegmentWriter.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Truncated audit segment header: " + segment);
+                }
+            }
+            header.flip();
+            byte[] magic = new byte[AuditSegmentWriter.MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, AuditSegmentWriter.MAGIC)) {
+                throw new IOException("Not an audit segment: " + segment);
+            }
+            this.firstSequence = header.getLong();
+
+            this.position = Math.max(offset, AuditSegmentWriter.HEADER_SIZE);
+            channel.position(position);
+            this.input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * File offset of the next frame.
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Next record, or null at the end of the valid data.
+     */
+    AuditRecord next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            int payloadSize = input.readInt();
+            int expectedCrc = input.readInt();
+            if (payloadSize < 16 || payloadSize > MAX_PAYLOAD_SIZE) {
+                finished = true;
+                return null;
+            }
+            byte[] payload = new byte[payloadSize];
+            input.readFully(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != expectedCrc) {
+                finished = true;
+                return null;
+            }
+            position += AuditSegmentWriter.FRAME_HEADER_SIZE + payloadSize;
+            return decode(payload);
+        } catch (EOFException e) {
+            finished = true;
+            return null;
+        }
+    }
+
+    private AuditRecord decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        long sequence = in.getLong();
+        long timestamp = in.getLong();
+        long value = in.getLong();
+        Long patientId = value != AuditSegmentWriter.NO_PATIENT ? value : null;
+        String[] fields = new String[5];
+        for (int i = 0; i < fields.length; i++) {
+            int length = in.getShort() & 0xFFFF;
+            if (length != AuditSegmentWriter.NULL_STRING) {
+                fields[i] = new String(payload, in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            }
+        }
+        return new AuditRecord(sequence, timestamp, fields[0], fields[1], fields[2], patientId, fields[3], fields[4]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
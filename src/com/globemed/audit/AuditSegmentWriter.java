@@ -0,0 +1,240 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Appends audit records to rolling segment files through a
+ * {@link FileChannel}.
+ *
+ * A segment starts with an 8 byte magic and the sequence of its first
+ * record, so segments sort by name and each one can be read on its own.
+ * Every record is framed as {@code [payload length][CRC32][payload]}; the
+ * payload is the sequence, the timestamp, the patient id and five
+ * length-prefixed UTF-8 strings. A torn write at the end of a segment
+ * therefore fails its CRC and readers stop there.
+ *
+ * Records are staged in a direct buffer and reach the channel in one write
+ * per batch. When a segment is sealed (rolled over or closed) its
+ * {@link AuditSegmentIndex} is written next to it. Only the writer thread
+ * uses this class.
+ *
+ * @author Hansana
+ */
+final class AuditSegmentWriter implements Closeable {
+
+    static final byte[] MAGIC = "GMAUDIT2".getBytes(StandardCharsets.US_ASCII);
+    static final long NO_PATIENT = Long.MIN_VALUE;
+    static final int HEADER_SIZE = MAGIC.length + 8;
+    static final int FRAME_HEADER_SIZE = 8; // length + CRC
+    static final int NULL_STRING = 0xFFFF;
+    // At most 3 UTF-8 bytes per char, so a capped string always fits the 16-bit length
+    static final int MAX_STRING_CHARS = 16384;
+    static final String SEGMENT_PREFIX = "audit-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int BUFFER_SIZE = 512 * 1024;
+
+    private final Path directory;
+    private final long segmentSizeBytes;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+
+    private FileChannel channel;
+    private AuditSegmentIndex.Builder indexBuilder;
+    private volatile Path currentSegment; // Read by queries on other threads
+    private long segmentPosition; // Bytes already handed to the channel
+    private long segmentCount;
+    private long bytesWritten;
+
+    AuditSegmentWriter(Path directory, long segmentSizeBytes) throws IOException {
+        this.directory = directory;
+        this.segmentSizeBytes = segmentSizeBytes;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.crc = new CRC32();
+        Files.createDirectories(directory);
+    }
+
+    static String segmentFileName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    void append(AuditRecord record, long sequence) throws IOException {
+        byte[][] fields = {
+            encode(record.getSource()),
+            encode(record.getUser()),
+            encode(record.getAction()),
+            encode(record.getTarget()),
+            encode(record.getDetails())
+        };
+        int payloadSize = 24;
+        for (byte[] field : fields) {
+            payloadSize += 2 + (field != null ? field.length : 0);
+        }
+        int frameSize = FRAME_HEADER_SIZE + payloadSize;
+
+        if (channel == null) {
+            openSegment(sequence);
+        } else if (segmentPosition + buffer.position() + frameSize > segmentSizeBytes
+                && segmentPosition + buffer.position() > HEADER_SIZE) {
+            roll(sequence);
+        }
+        if (buffer.remaining() < frameSize) {
+            writeBuffer();
+        }
+
+        int start = buffer.position();
+        indexBuilder.add(sequence, record.getTimestamp(), record.getUser(), record.getPatientId(),
+                segmentPosition + start);
+        buffer.position(start + FRAME_HEADER_SIZE);
+        buffer.putLong(sequence);
+        buffer.putLong(record.getTimestamp());
+        buffer.putLong(record.getPatientId() != null ? record.getPatientId() : NO_PATIENT);
+        for (byte[] field : fields) {
+            if (field == null) {
+                buffer.putShort((short) NULL_STRING);
+            } else {
+                buffer.putShort((short) field.length);
+                buffer.put(field);
+            }
+        }
+
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + FRAME_HEADER_SIZE).limit(start + frameSize);
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(start, payloadSize);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() > MAX_STRING_CHARS) {
+            value = value.substring(0, MAX_STRING_CHARS);
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hand everything staged so far to the operating system.
+     */
+    void writeBuffer() throws IOException {
+        if (channel == null || buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            int written = channel.write(buffer);
+            segmentPosition += written;
+            bytesWritten += written;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Write staged records and fsync the current segment.
+     */
+    void force() throws IOException {
+        writeBuffer();
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    private void roll(long nextSequence) throws IOException {
+        seal();
+        openSegment(nextSequence);
+    }
+
+    /**
+     * Fsync and close the current segment and write its index.
+     */
+    private void seal() throws IOException {
+        force();
+        channel.close();
+        channel = null;
+        Path sealed = currentSegment;
+        currentSegment = null;
+        try {
+            indexBuilder.build().write(AuditSegmentIndex.indexPathFor(sealed));
+        } catch (IOException e) {
+            // Queries rebuild a missing index from the segment itself
+            System.err.println("Could not write audit index for " + sealed + ": " + e.getMessage());
+        }
+        indexBuilder = null;
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        currentSegment = directory.resolve(segmentFileName(firstSequence));
+        // A file with this name can only exist if it holds no readable record
+        // at or after firstSequence (e.g. a crash right after it was created),
+        // so it is safe to start it over.
+        channel = FileChannel.open(currentSegment, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putLong(firstSequence).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        segmentPosition = HEADER_SIZE;
+        bytesWritten += HEADER_SIZE;
+        segmentCount++;
+        indexBuilder = new AuditSegmentIndex.Builder(firstSequence);
+    }
+
+    /**
+     * Drop the staged bytes and the open segment after a failed write, so
+     * the next append starts a fresh segment.
+     */
+    void abandonSegment() {
+        buffer.clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing audit segment: " + e.getMessage());
+            }
+            channel = null;
+        }
+        // Left without an index; queries scan it instead
+        currentSegment = null;
+        indexBuilder = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            seal();
+        }
+    }
+
+    Path getCurrentSegment() {
+        return currentSegment;
+    }
+
+    long getSegmentCount() {
+        return segmentCount;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+}
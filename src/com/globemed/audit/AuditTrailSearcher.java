@@ -0,0 +1,214 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Answers {@link AuditQuery} requests from the segment files.
+ *
+ * Only the index headers (a few dozen bytes per segment) are kept for every
+ * segment; full indexes are loaded for segments whose time range overlaps
+ * the query and are cached in a small LRU. Within a segment only the blocks
+ * whose timestamp range overlaps the query are read. The segment the writer
+ * is still appending to has no index yet and is scanned in full.
+ *
+ * @author Hansana
+ */
+final class AuditTrailSearcher {
+
+    private static final int INDEX_CACHE_SIZE = 64;
+
+    private final Supplier<Path> activeSegment;
+    private final Map<Path, AuditSegmentIndex.Header> headers;
+    private final Map<Path, AuditSegmentIndex> indexCache;
+
+    // Metrics
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder segmentsSkipped = new LongAdder();
+    private final LongAdder segmentsScanned = new LongAdder();
+    private final LongAdder blocksScanned = new LongAdder();
+    private final LongAdder recordsScanned = new LongAdder();
+
+    AuditTrailSearcher(Supplier<Path> activeSegment) {
+        this.activeSegment = activeSegment;
+        this.headers = new ConcurrentHashMap<>();
+        this.indexCache = new LinkedHashMap<Path, AuditSegmentIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, AuditSegmentIndex> eldest) {
+                return size() > INDEX_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * @param segments every segment file, in sequence order
+     */
+    List<AuditRecord> search(AuditQuery query, List<Path> segments) {
+        queryCount.increment();
+        List<AuditRecord> results = new ArrayList<>();
+        Path active = activeSegment.get();
+
+        for (Path segment : segments) {
+            if (results.size() >= query.getLimit()) {
+                break;
+            }
+            try {
+                if (segment.equals(active)) {
+                    segmentsScanned.increment();
+                    scan(segment, AuditSegmentWriter.HEADER_SIZE, -1, query, results);
+                    continue;
+                }
+
+                AuditSegmentIndex.Header header = loadHeader(segment);
+                if (header != null && !header.overlaps(query.getFromMillis(), query.getToMillis())) {
+                    segmentsSkipped.increment();
+                    continue;
+                }
+
+                AuditSegmentIndex index = loadIndex(segment);
+                if (!query.mayMatch(index)) {
+                    segmentsSkipped.increment();
+                    continue;
+                }
+                segmentsScanned.increment();
+                scanBlocks(segment, index, query, results);
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable audit segment " + segment + ": " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    private void scanBlocks(Path segment, AuditSegmentIndex index, AuditQuery query,
+            List<AuditRecord> results) throws IOException {
+        AuditSegmentReader reader = null;
+        try {
+            for (int block = 0; block < index.getBlockCount() && results.size() < query.getLimit(); block++) {
+                if (!index.blockOverlaps(block, query.getFromMillis(), query.getToMillis())) {
+                    continue;
+                }
+                blocksScanned.increment();
+                long offset = index.getBlockOffset(block);
+                // Adjacent matching blocks are read with the same reader
+                if (reader == null || reader.getPosition() != offset) {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                    reader = new AuditSegmentReader(segment, offset);
+                }
+                readUntil(reader, index.getBlockEnd(block), query, results);
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    private void scan(Path segment, long offset, long end, AuditQuery query, List<AuditRecord> results)
+            throws IOException {
+        try (AuditSegmentReader reader = new AuditSegmentReader(segment, offset)) {
+            readUntil(reader, end, query, results);
+        }
+    }
+
+    private void readUntil(AuditSegmentReader reader, long end, AuditQuery query, List<AuditRecord> results)
+            throws IOException {
+        while ((end < 0 || reader.getPosition() < end) && results.size() < query.getLimit()) {
+            AuditRecord record = reader.next();
+            if (record == null) {
+                return;
+            }
+            recordsScanned.increment();
+            if (query.matches(record)) {
+                results.add(record);
+            }
+        }
+    }
+
+    /**
+     * Header from the cache or the index file, or null if the segment has no
+     * readable index yet.
+     */
+    private AuditSegmentIndex.Header loadHeader(Path segment) {
+        AuditSegmentIndex.Header header = headers.get(segment);
+        if (header == null) {
+            Path indexFile = AuditSegmentIndex.indexPathFor(segment);
+            if (Files.exists(indexFile)) {
+                try {
+                    header = AuditSegmentIndex.readHeader(indexFile);
+                    headers.put(segment, header);
+                } catch (IOException e) {
+                    return null; // loadIndex rebuilds it
+                }
+            }
+        }
+        return header;
+    }
+
+    private AuditSegmentIndex loadIndex(Path segment) throws IOException {
+        synchronized (indexCache) {
+            AuditSegmentIndex cached = indexCache.get(segment);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Path indexFile = AuditSegmentIndex.indexPathFor(segment);
+        AuditSegmentIndex index = null;
+        if (Files.exists(indexFile)) {
+            try {
+                index = AuditSegmentIndex.read(indexFile);
+            } catch (IOException e) {
+                System.err.println("Rebuilding corrupt audit index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        if (index == null) {
+            // Sealed without an index (crash or write failure); rebuild it once
+            index = AuditSegmentIndex.scan(segment);
+            try {
+                index.write(indexFile);
+            } catch (IOException e) {
+                System.err.println("Could not save rebuilt audit index " + indexFile + ": " + e.getMessage());
+            }
+        }
+
+        headers.put(segment, index.getHeader());
+        synchronized (indexCache) {
+            indexCache.put(segment, index);
+        }
+        return index;
+    }
+
+    long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    long getSegmentsSkipped() {
+        return segmentsSkipped.sum();
+    }
+
+    long getSegmentsScanned() {
+        return segmentsScanned.sum();
+    }
+
+    long getBlocksScanned() {
+        return blocksScanned.sum();
+    }
+
+    long getRecordsScanned() {
+        return recordsScanned.sum();
+    }
+}
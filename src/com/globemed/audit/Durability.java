@@ -0,0 +1,28 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+/**
+ * How hard {@link AuditLog} works to get records onto disk.
+ *
+ * @author Hansana
+ */
+public enum Durability {
+    /**
+     * Records are written to the segment file but only fsynced when a
+     * segment rolls over or the log is flushed. A crash can lose whatever
+     * the operating system had not yet written.
+     */
+    NONE,
+    /**
+     * One fsync covers every record written during the group-commit
+     * interval. A crash loses at most that interval.
+     */
+    GROUP_COMMIT,
+    /**
+     * Every batch is fsynced before the writer takes the next one.
+     */
+    SYNC
+}
@@ -0,0 +1,24 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.audit;
+
+/**
+ * What {@link AuditLog#record} does when the ring buffer is full. Either way
+ * dropped records are counted and the writer logs a RECORDS_DROPPED marker,
+ * so a gap in the trail is always visible.
+ *
+ * @author Hansana
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the record immediately; the caller never waits.
+     */
+    DROP,
+    /**
+     * Wait up to the configured timeout for the writer to make room, then
+     * drop.
+     */
+    BLOCK
+}
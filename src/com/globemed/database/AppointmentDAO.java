@@ -9,7 +9,10 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  *
@@ -17,6 +20,8 @@ import java.util.List;
  */
 public class AppointmentDAO {
 
+    private static final int SLOT_LOCK_TIMEOUT_SECONDS = 5;
+
     public List<Appointment> getAllAppointments() throws SQLException {
         List<Appointment> appointments = new ArrayList<>();
         String sql = "SELECT * FROM appointments ORDER BY appointment_time";
@@ -106,10 +111,187 @@ public class AppointmentDAO {
         return appointments;
     }
 
+    /**
+     * True if the staff member has a non-cancelled appointment starting in
+     * [start, end], ignoring {@code excludeId} (may be null).
+     */
+    public boolean hasStaffConflict(Long staffId, LocalDateTime start, LocalDateTime end, Long excludeId) throws SQLException {
+        return hasConflict("staff_id", staffId, start, end, excludeId);
+    }
+
+    public boolean hasLocationConflict(String location, LocalDateTime start, LocalDateTime end, Long excludeId) throws SQLException {
+        return hasConflict("location", location, start, end, excludeId);
+    }
+
+    private boolean hasConflict(String column, Object key, LocalDateTime start, LocalDateTime end, Long excludeId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return hasConflict(conn, column, key, start, end, excludeId);
+        }
+    }
+
+    private boolean hasConflict(Connection conn, String column, Object key, LocalDateTime start, LocalDateTime end,
+            Long excludeId) throws SQLException {
+        String sql = "SELECT 1 FROM appointments WHERE " + column + " = ? AND appointment_time BETWEEN ? AND ? "
+                + "AND status <> 'CANCELLED' AND id <> ? LIMIT 1";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setObject(1, key);
+            stmt.setTimestamp(2, Timestamp.valueOf(start));
+            stmt.setTimestamp(3, Timestamp.valueOf(end));
+            stmt.setLong(4, excludeId != null ? excludeId : -1L);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * All non-cancelled appointments in [start, end] that belong to any of
+     * the given staff members or rooms, fetched in a single query.
+     */
+    public List<Appointment> getActiveAppointmentsForCalendars(Collection<Long> staffIds, Collection<String> locations,
+            LocalDateTime start, LocalDateTime end) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        if (staffIds.isEmpty() && locations.isEmpty()) {
+            return appointments;
+        }
+
+        List<String> owners = new ArrayList<>();
+        if (!staffIds.isEmpty()) {
+            owners.add("staff_id IN (" + placeholders(staffIds.size()) + ")");
+        }
+        if (!locations.isEmpty()) {
+            owners.add("location IN (" + placeholders(locations.size()) + ")");
+        }
+        String sql = "SELECT * FROM appointments WHERE appointment_time BETWEEN ? AND ? "
+                + "AND status <> 'CANCELLED' AND (" + String.join(" OR ", owners) + ") ORDER BY appointment_time";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            stmt.setTimestamp(index++, Timestamp.valueOf(start));
+            stmt.setTimestamp(index++, Timestamp.valueOf(end));
+            for (Long staffId : staffIds) {
+                stmt.setLong(index++, staffId);
+            }
+            for (String location : locations) {
+                stmt.setString(index++, location);
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(mapResultSetToAppointment(rs));
+                }
+            }
+        }
+
+        return appointments;
+    }
+
+    private String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Insert the appointment only if neither its staff member nor its room
+     * has another appointment within {@code windowMinutes} of its start.
+     * The check and the insert run under MySQL named locks for the staff
+     * member and the room, so concurrent bookings from other application
+     * instances cannot both succeed.
+     *
+     * @return the new id, or null if the slot is already taken
+     */
+    public Long insertAppointmentIfSlotFree(Appointment appointment, int windowMinutes) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<String> lockNames = acquireSlotLocks(conn, appointment.getStaffId(), appointment.getLocation());
+            try {
+                if (isSlotTaken(conn, appointment, windowMinutes)) {
+                    return null;
+                }
+                return insertAppointment(conn, appointment);
+            } finally {
+                releaseSlotLocks(conn, lockNames);
+            }
+        }
+    }
+
+    /**
+     * Move the appointment to its (already updated) time and location only if
+     * that slot is free, ignoring the appointment itself.
+     *
+     * @return false if the slot is taken or the appointment no longer exists
+     */
+    public boolean updateAppointmentIfSlotFree(Appointment appointment, int windowMinutes) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            List<String> lockNames = acquireSlotLocks(conn, appointment.getStaffId(), appointment.getLocation());
+            try {
+                if (isSlotTaken(conn, appointment, windowMinutes)) {
+                    return false;
+                }
+                return updateAppointment(conn, appointment);
+            } finally {
+                releaseSlotLocks(conn, lockNames);
+            }
+        }
+    }
+
+    private boolean isSlotTaken(Connection conn, Appointment appointment, int windowMinutes) throws SQLException {
+        LocalDateTime start = appointment.getAppointmentTime().minusMinutes(windowMinutes);
+        LocalDateTime end = appointment.getAppointmentTime().plusMinutes(windowMinutes);
+        return hasConflict(conn, "staff_id", appointment.getStaffId(), start, end, appointment.getId())
+                || hasConflict(conn, "location", appointment.getLocation(), start, end, appointment.getId());
+    }
+
+    // Names are taken in sorted order so two sessions can never wait on each other
+    private List<String> acquireSlotLocks(Connection conn, Long staffId, String location) throws SQLException {
+        List<String> names = new ArrayList<>();
+        names.add("globemed.slot.staff." + staffId);
+        names.add("globemed.slot.room." + location);
+        names.sort(null);
+
+        List<String> acquired = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            for (String name : names) {
+                // MySQL caps lock names at 64 characters
+                String lockName = name.length() > 64 ? name.substring(0, 64) : name;
+                stmt.setString(1, lockName);
+                stmt.setInt(2, SLOT_LOCK_TIMEOUT_SECONDS);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next() || rs.getInt(1) != 1) {
+                        releaseSlotLocks(conn, acquired);
+                        throw new SQLTransientException("Timed out waiting for appointment slot lock " + lockName);
+                    }
+                }
+                acquired.add(lockName);
+            }
+        }
+        return acquired;
+    }
+
+    private void releaseSlotLocks(Connection conn, List<String> lockNames) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            for (String lockName : lockNames) {
+                stmt.setString(1, lockName);
+                stmt.executeQuery().close();
+            }
+        } catch (SQLException e) {
+            // Named locks are also released when the session ends
+            System.err.println("Error releasing appointment slot lock: " + e.getMessage());
+        }
+    }
+
     public Long insertAppointment(Appointment appointment) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return insertAppointment(conn, appointment);
+        }
+    }
+
+    private Long insertAppointment(Connection conn, Appointment appointment) throws SQLException {
         String sql = "INSERT INTO appointments (patient_id, staff_id, appointment_time, location, status) VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setLong(1, appointment.getPatientId());
             stmt.setLong(2, appointment.getStaffId());
@@ -135,9 +317,15 @@ public class AppointmentDAO {
     }
 
     public boolean updateAppointment(Appointment appointment) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return updateAppointment(conn, appointment);
+        }
+    }
+
+    private boolean updateAppointment(Connection conn, Appointment appointment) throws SQLException {
         String sql = "UPDATE appointments SET patient_id = ?, staff_id = ?, appointment_time = ?, location = ?, status = ? WHERE id = ?";
 
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, appointment.getPatientId());
             stmt.setLong(2, appointment.getStaffId());
@@ -178,12 +366,54 @@ public class AppointmentDAO {
         return appointments;
     }
 
+    /**
+     * Keyset-paginated read ordered by appointment time, then id.
+     */
+    public Page<Appointment> fetchPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        String sql = "SELECT * FROM appointments"
+                + (cursor != null ? " WHERE " + sort.seekAfter("appointment_time", cursor) : "")
+                + sort.orderBy("appointment_time") + " LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    appointments.add(mapResultSetToAppointment(rs));
+                }
+            }
+        }
+
+        return Page.fromLookahead(appointments, limit, appointment -> PageCursor.after(
+                appointment.getAppointmentTime(), appointment.getId()));
+    }
+
+    /**
+     * Stream appointments in a time range (time order) without loading them
+     * into memory. The stream holds a database connection until it is closed.
+     */
+    public Stream<Appointment> streamAppointmentsByTimeRange(LocalDateTime start, LocalDateTime end) throws SQLException {
+        String sql = "SELECT * FROM appointments WHERE appointment_time >= ? AND appointment_time < ? "
+                + "ORDER BY appointment_time, id";
+        return ResultSetStreams.stream(sql, stmt -> {
+            stmt.setTimestamp(1, Timestamp.valueOf(start));
+            stmt.setTimestamp(2, Timestamp.valueOf(end));
+        }, this::mapResultSetToAppointment);
+    }
+
+    public Stream<Appointment> streamAllAppointments() throws SQLException {
+        return ResultSetStreams.stream("SELECT * FROM appointments ORDER BY appointment_time, id",
+                this::mapResultSetToAppointment);
+    }
+
     private Appointment mapResultSetToAppointment(ResultSet rs) throws SQLException {
         Appointment appointment = new Appointment();
         appointment.setId(rs.getLong("id"));
         appointment.setPatientId(rs.getLong("patient_id"));
         appointment.setStaffId(rs.getLong("staff_id"));
-        appointment.setAppointmentTime(rs.getTimestamp("appointment_time").toLocalDateTime());
+        appointment.setAppointmentTime(rs.getObject("appointment_time", LocalDateTime.class));
         appointment.setLocation(rs.getString("location"));
         appointment.setStatus(rs.getString("status"));
         return appointment;
@@ -6,10 +6,14 @@ package com.globemed.database;
 
 import com.globemed.models.Bill;
 import com.globemed.models.BillItem;
+import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  *
@@ -17,68 +21,43 @@ import java.util.List;
  */
 public class BillDAO {
 
+    // Bills joined to their items so a whole bill graph comes back in one round trip
+    private static final String BILL_WITH_ITEMS_COLUMNS = "SELECT b.id, b.appointment_id, b.total_amount, "
+            + "b.claim_status, b.insurance_details, bi.id AS item_id, bi.item_type, bi.description, bi.cost ";
+    private static final String BILL_ITEMS_JOIN = " LEFT JOIN bill_items bi ON bi.bill_id = b.id ";
+
     public List<Bill> getAllBills() throws SQLException {
-        List<Bill> bills = new ArrayList<>();
-        String sql = "SELECT * FROM bills ORDER BY id";
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b" + BILL_ITEMS_JOIN + "ORDER BY b.id, bi.id";
 
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                Bill bill = mapResultSetToBill(rs);
-                //bill.setBillItems(getBillItemsByBillId(bill.getId()));
-                bills.add(bill);
-            }
-            for (Bill bill : bills) {
-                bill.setBillItems(getBillItemsByBillId(bill.getId()));
-            }
+            return mapResultSetToBillsWithItems(rs);
         }
-
-        return bills;
     }
 
     public Bill getBillById(Long id) throws SQLException {
-        String sql = "SELECT * FROM bills WHERE id = ?";
-        Bill bill = null;
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b" + BILL_ITEMS_JOIN + "WHERE b.id = ? ORDER BY bi.id";
 
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    bill = mapResultSetToBill(rs);
-                }
+                List<Bill> bills = mapResultSetToBillsWithItems(rs);
+                return bills.isEmpty() ? null : bills.get(0);
             }
         }
-
-        // Now fetch bill items after the ResultSet is closed
-        if (bill != null) {
-            bill.setBillItems(getBillItemsByBillId(bill.getId()));
-        }
-
-        return bill;
     }
 
     public List<Bill> getBillsByPatientId(Long patientId) throws SQLException {
-        List<Bill> bills = new ArrayList<>();
-        String sql = "SELECT b.* FROM bills b JOIN appointments a ON b.appointment_id = a.id WHERE a.patient_id = ?";
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b JOIN appointments a ON b.appointment_id = a.id"
+                + BILL_ITEMS_JOIN + "WHERE a.patient_id = ? ORDER BY b.id, bi.id";
 
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, patientId);
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Bill bill = mapResultSetToBill(rs);
-                    bills.add(bill);
-                }
+                return mapResultSetToBillsWithItems(rs);
             }
         }
-
-        // Now fetch bill items for all bills after the ResultSet is closed
-        for (Bill bill : bills) {
-            bill.setBillItems(getBillItemsByBillId(bill.getId()));
-        }
-
-        return bills;
     }
 
     public Long insertBill(Bill bill) throws SQLException {
@@ -181,10 +160,9 @@ public class BillDAO {
     }
 
     public List<Bill> getBillsByPatientIdAndDateRange(Long patientId, LocalDate startDate, LocalDate endDate) throws SQLException {
-        List<Bill> bills = new ArrayList<>();
-        String sql = "SELECT b.* FROM bills b "
-                + "JOIN appointments a ON b.appointment_id = a.id "
-                + "WHERE a.patient_id = ? AND DATE(a.appointment_time) BETWEEN ? AND ?";
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b JOIN appointments a ON b.appointment_id = a.id"
+                + BILL_ITEMS_JOIN
+                + "WHERE a.patient_id = ? AND DATE(a.appointment_time) BETWEEN ? AND ? ORDER BY b.id, bi.id";
 
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
@@ -192,22 +170,234 @@ public class BillDAO {
             stmt.setDate(2, Date.valueOf(startDate));
             stmt.setDate(3, Date.valueOf(endDate));
 
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapResultSetToBillsWithItems(rs);
+            }
+        }
+    }
+
+    /**
+     * Keyset-paginated read ordered by bill id. The page is cut in a derived
+     * table first so the LIMIT applies to bills, not to joined item rows.
+     */
+    public Page<Bill> fetchPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM (SELECT * FROM bills"
+                + (cursor != null ? " WHERE " + sort.seekAfter("id", cursor) : "")
+                + sort.orderBy("id") + " LIMIT ?) b" + BILL_ITEMS_JOIN
+                + " ORDER BY b.id " + sort.keyword() + ", bi.id";
+        List<Bill> bills;
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                bills = mapResultSetToBillsWithItems(rs);
+            }
+        }
+
+        return Page.fromLookahead(bills, limit, bill -> PageCursor.afterId(bill.getId()));
+    }
+
+    /**
+     * Bills matching an optional claim status and an optional appointment
+     * date range (inclusive); null arguments are not filtered on.
+     */
+    public List<Bill> searchBills(String claimStatus, LocalDate fromDate, LocalDate toDate) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        String where = buildBillFilter(claimStatus, fromDate, toDate, params);
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b" + joinAppointmentsIfNeeded(fromDate, toDate)
+                + BILL_ITEMS_JOIN + where + " ORDER BY b.id, bi.id";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            bindParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapResultSetToBillsWithItems(rs);
+            }
+        }
+    }
+
+    // Aggregates - computed by the database so no bills are loaded into memory
+    public Map<String, BigDecimal> sumTotalsByStatus(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        Map<String, BigDecimal> totals = new LinkedHashMap<>();
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT b.claim_status, SUM(b.total_amount) AS total FROM bills b"
+                + joinAppointmentsIfNeeded(fromDate, toDate)
+                + buildBillFilter(null, fromDate, toDate, params)
+                + " GROUP BY b.claim_status";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            bindParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.put(rs.getString("claim_status"), nonNull(rs.getBigDecimal("total")));
+                }
+            }
+        }
+
+        return totals;
+    }
+
+    public Map<String, Long> countByStatus(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT b.claim_status, COUNT(*) AS bill_count FROM bills b"
+                + joinAppointmentsIfNeeded(fromDate, toDate)
+                + buildBillFilter(null, fromDate, toDate, params)
+                + " GROUP BY b.claim_status";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            bindParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString("claim_status"), rs.getLong("bill_count"));
+                }
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Bill totals per appointment day, in date order. A null status sums
+     * bills of every status.
+     */
+    public Map<LocalDate, BigDecimal> sumRevenueByDay(String claimStatus, LocalDate fromDate, LocalDate toDate) throws SQLException {
+        Map<LocalDate, BigDecimal> revenue = new LinkedHashMap<>();
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT DATE(a.appointment_time) AS day, SUM(b.total_amount) AS total "
+                + "FROM bills b JOIN appointments a ON b.appointment_id = a.id"
+                + buildBillFilter(claimStatus, fromDate, toDate, params)
+                + " GROUP BY DATE(a.appointment_time) ORDER BY day";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            bindParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    revenue.put(rs.getDate("day").toLocalDate(), nonNull(rs.getBigDecimal("total")));
+                }
+            }
+        }
+
+        return revenue;
+    }
+
+    /**
+     * Bill item costs per item type. A null status sums bills of every status.
+     */
+    public Map<String, BigDecimal> sumRevenueByItemType(String claimStatus, LocalDate fromDate, LocalDate toDate) throws SQLException {
+        Map<String, BigDecimal> revenue = new LinkedHashMap<>();
+        List<Object> params = new ArrayList<>();
+        String sql = "SELECT bi.item_type, SUM(bi.cost) AS total "
+                + "FROM bill_items bi JOIN bills b ON bi.bill_id = b.id"
+                + joinAppointmentsIfNeeded(fromDate, toDate)
+                + buildBillFilter(claimStatus, fromDate, toDate, params)
+                + " GROUP BY bi.item_type ORDER BY total DESC";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            bindParameters(stmt, params);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Bill bill = mapResultSetToBill(rs);
-                    bills.add(bill);
+                    revenue.put(rs.getString("item_type"), nonNull(rs.getBigDecimal("total")));
                 }
             }
         }
 
-        // Now fetch bill items for all bills after the ResultSet is closed
-        for (Bill bill : bills) {
-            bill.setBillItems(getBillItemsByBillId(bill.getId()));
+        return revenue;
+    }
+
+    private String joinAppointmentsIfNeeded(LocalDate fromDate, LocalDate toDate) {
+        return fromDate != null || toDate != null ? " JOIN appointments a ON b.appointment_id = a.id" : "";
+    }
+
+    // Date bounds compare the raw column so an index on appointment_time can be used
+    private String buildBillFilter(String claimStatus, LocalDate fromDate, LocalDate toDate, List<Object> params) {
+        List<String> conditions = new ArrayList<>();
+        if (claimStatus != null && !claimStatus.isEmpty()) {
+            conditions.add("b.claim_status = ?");
+            params.add(claimStatus);
+        }
+        if (fromDate != null) {
+            conditions.add("a.appointment_time >= ?");
+            params.add(Timestamp.valueOf(fromDate.atStartOfDay()));
+        }
+        if (toDate != null) {
+            conditions.add("a.appointment_time < ?");
+            params.add(Timestamp.valueOf(toDate.plusDays(1).atStartOfDay()));
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private void bindParameters(PreparedStatement stmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            stmt.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private BigDecimal nonNull(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * Stream every bill with its items in id order. Rows of the join are
+     * folded bill by bill, so only one bill graph is in memory at a time.
+     * The stream holds a database connection until it is closed.
+     */
+    public Stream<Bill> streamAllBills() throws SQLException {
+        String sql = BILL_WITH_ITEMS_COLUMNS + "FROM bills b" + BILL_ITEMS_JOIN + "ORDER BY b.id, bi.id";
+        Stream<Bill> rows = ResultSetStreams.stream(sql, this::mapJoinedBillRow);
+        return ResultSetStreams.groupAdjacent(rows,
+                (bill, row) -> bill.getId().equals(row.getId()),
+                (bill, row) -> {
+                    bill.getBillItems().addAll(row.getBillItems());
+                    return bill;
+                });
+    }
+
+    /**
+     * Assemble bills from a bills/bill_items join ordered by bill id. Each bill
+     * spans one row per item (or a single row with NULL item columns when it
+     * has none), so the whole result is folded in a single pass.
+     */
+    private List<Bill> mapResultSetToBillsWithItems(ResultSet rs) throws SQLException {
+        List<Bill> bills = new ArrayList<>();
+        Bill current = null;
+
+        while (rs.next()) {
+            Bill row = mapJoinedBillRow(rs);
+            if (current == null || !current.getId().equals(row.getId())) {
+                current = row;
+                bills.add(current);
+            } else {
+                current.getBillItems().addAll(row.getBillItems());
+            }
         }
 
         return bills;
     }
 
+    // One row of the bills/bill_items join: the bill plus at most one item
+    private Bill mapJoinedBillRow(ResultSet rs) throws SQLException {
+        Bill bill = mapResultSetToBill(rs);
+        long itemId = rs.getLong("item_id");
+        if (!rs.wasNull()) {
+            BillItem item = new BillItem();
+            item.setId(itemId);
+            item.setBillId(bill.getId());
+            item.setItemType(rs.getString("item_type"));
+            item.setDescription(rs.getString("description"));
+            item.setCost(rs.getBigDecimal("cost"));
+            // Added directly so the stored total_amount is kept as loaded
+            bill.getBillItems().add(item);
+        }
+        return bill;
+    }
+
     private Bill mapResultSetToBill(ResultSet rs) throws SQLException {
         Bill bill = new Bill();
         bill.setId(rs.getLong("id"));
@@ -0,0 +1,334 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * At most {@code maxSize} physical connections exist at any time; borrowers
+ * beyond that wait up to {@code maxWaitMillis}. Idle connections are kept in
+ * LIFO order so the warmest connection is reused first and the coldest ones
+ * are evicted by the housekeeper once they exceed {@code idleTimeoutMillis},
+ * never going below {@code minIdle}.
+ *
+ * @author Hansana
+ */
+public class ConnectionPool {
+
+    // A connection returned within this window is handed out again without a
+    // validation round trip; anything idle for longer is pinged first.
+    private static final long VALIDATION_BYPASS_WINDOW_MS = 500;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30_000;
+
+    private final String url;
+    private final Properties connectionProperties;
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections;
+    private final Set<PooledConnection> borrowedConnections;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    // Metrics
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+    private final LongAdder leakCount = new LongAdder();
+
+    public ConnectionPool(String url, Properties connectionProperties, int maxSize, int minIdle,
+            long maxWaitMillis, long idleTimeoutMillis, long leakDetectionThresholdMillis,
+            int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.connectionProperties = new Properties();
+        this.connectionProperties.putAll(connectionProperties);
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+
+        this.permits = new Semaphore(maxSize, true);
+        this.idleConnections = new LinkedBlockingDeque<>();
+        this.borrowedConnections = ConcurrentHashMap.newKeySet();
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "globemed-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::runHousekeeping,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection. The returned object must be closed by the caller,
+     * which returns it to the pool (try-with-resources does this).
+     */
+    public Connection borrow() throws SQLException {
+        PooledConnection pooled = borrowPooled();
+        return pooled.getProxy();
+    }
+
+    /**
+     * Borrow for a reader that legitimately holds the connection for a long
+     * time, such as a streaming export; it is left out of leak detection.
+     */
+    Connection borrowLongLived() throws SQLException {
+        PooledConnection pooled = borrowPooled();
+        pooled.setLeakReported(true);
+        return pooled.getProxy();
+    }
+
+    PooledConnection borrowPooled() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis
+                        + "ms waiting for a database connection (" + borrowedConnections.size()
+                        + "/" + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - waitStart);
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection();
+            }
+            pooled.markBorrowed(leakDetectionThresholdMillis > 0);
+            borrowedConnections.add(pooled);
+            borrowCount.increment();
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled) {
+        if (!borrowedConnections.remove(pooled)) {
+            return; // Already returned
+        }
+
+        try {
+            if (closed || pooled.isBroken()) {
+                destroy(pooled);
+            } else {
+                pooled.resetState();
+                pooled.markReturned();
+                idleConnections.offerFirst(pooled);
+            }
+        } catch (SQLException e) {
+            System.err.println("Discarding connection that could not be reset: " + e.getMessage());
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            long idleFor = System.currentTimeMillis() - pooled.getLastReturnedAt();
+            if (idleFor <= VALIDATION_BYPASS_WINDOW_MS || pooled.isValid(validationTimeoutSeconds)) {
+                return pooled;
+            }
+            validationFailureCount.increment();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, connectionProperties);
+        createdCount.increment();
+        return new PooledConnection(this, physical, statementCacheSize);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        pooled.markReturned();
+        pooled.closePhysical();
+        destroyedCount.increment();
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private void runHousekeeping() {
+        try {
+            evictIdleConnections();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        // Oldest idle connections sit at the tail of the deque
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && idleConnections.size() > minIdle) {
+            PooledConnection pooled = iterator.next();
+            if (now - pooled.getLastReturnedAt() > idleTimeoutMillis && idleConnections.remove(pooled)) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionThresholdMillis <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowedConnections) {
+            if (!pooled.isLeakReported() && now - pooled.getBorrowedAt() > leakDetectionThresholdMillis) {
+                pooled.setLeakReported(true);
+                leakCount.increment();
+                System.err.println("Possible connection leak: connection held for "
+                        + (now - pooled.getBorrowedAt()) + "ms without being closed");
+                Throwable trace = pooled.getBorrowTrace();
+                if (trace != null) {
+                    trace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Close every idle connection and refuse further borrows. Connections that
+     * are still checked out are closed as they come back.
+     */
+    public void shutdown() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Statistics
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getActiveCount() {
+        return borrowedConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getWaitingThreadCount() {
+        return permits.getQueueLength();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.sum();
+        return borrows == 0 ? 0.0 : totalWaitNanos.sum() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.sum();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailureCount.sum();
+    }
+
+    public long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    public long getStatementCacheHitCount() {
+        return StatementCache.getGlobalHitCount();
+    }
+
+    public long getStatementCacheMissCount() {
+        return StatementCache.getGlobalMissCount();
+    }
+
+    public double getStatementCacheHitRate() {
+        return StatementCache.getGlobalHitRate();
+    }
+
+    public void printStatistics() {
+        System.out.println("Connection Pool Statistics:");
+        System.out.println("  Active/Idle/Max: " + getActiveCount() + "/" + getIdleCount() + "/" + maxSize);
+        System.out.println("  Waiting threads: " + getWaitingThreadCount());
+        System.out.println("  Borrows: " + getBorrowCount() + " (timeouts: " + getTimeoutCount() + ")");
+        System.out.println(String.format("  Wait time avg/max: %.3fms / %.3fms",
+                getAverageWaitMillis(), getMaxWaitMillis()));
+        System.out.println("  Connections created/destroyed: " + getCreatedCount() + "/" + getDestroyedCount());
+        System.out.println("  Validation failures: " + getValidationFailureCount());
+        System.out.println("  Suspected leaks: " + getLeakCount());
+        System.out.println(String.format("  Statement cache hits/misses/evictions: %d/%d/%d (%.1f%% hit rate)",
+                StatementCache.getGlobalHitCount(), StatementCache.getGlobalMissCount(),
+                StatementCache.getGlobalEvictionCount(), StatementCache.getGlobalHitRate() * 100));
+    }
+}
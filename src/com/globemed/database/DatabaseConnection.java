@@ -17,71 +17,124 @@ public class DatabaseConnection {
     private static final String USERNAME = "root"; // Change as needed
     private static final String PASSWORD = "0000"; // Change as needed
 
-    private static Connection connection = null;
+    // Pool settings
+    private static final int MAX_POOL_SIZE = 10;
+    private static final int MIN_IDLE_CONNECTIONS = 2;
+    private static final long CONNECTION_WAIT_TIMEOUT_MS = 10_000;
+    private static final long IDLE_TIMEOUT_MS = 10 * 60_000;
+    private static final long LEAK_DETECTION_THRESHOLD_MS = 60_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int STATEMENT_CACHE_SIZE = 64; // Per connection
 
+    private static ConnectionPool pool = null;
+
+    // Connection pinned to the current thread between beginTransaction() and commit/rollback
+    private static final ThreadLocal<PooledConnection> transactionConnection = new ThreadLocal<>();
+
+    /**
+     * Borrow a connection from the pool. Closing the returned connection hands
+     * it back to the pool. Inside a transaction the same connection is
+     * returned every time and close() leaves it checked out.
+     */
     public static Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
+        PooledConnection pinned = transactionConnection.get();
+        if (pinned != null) {
+            return pinned.getProxy();
+        }
+        return getPool().borrow();
+    }
+
+    public static synchronized ConnectionPool getPool() throws SQLException {
+        if (pool == null || pool.isClosed()) {
             try {
                 Class.forName("com.mysql.cj.jdbc.Driver");
-                Properties props = new Properties();
-                props.setProperty("user", USERNAME);
-                props.setProperty("password", PASSWORD);
-                props.setProperty("useSSL", "false");
-                props.setProperty("allowPublicKeyRetrieval", "true");
-
-                connection = DriverManager.getConnection(URL, props);
-                //System.out.println("Database connected successfully!");
             } catch (ClassNotFoundException e) {
                 throw new SQLException("MySQL JDBC Driver not found", e);
             }
+
+            Properties props = new Properties();
+            props.setProperty("user", USERNAME);
+            props.setProperty("password", PASSWORD);
+            props.setProperty("useSSL", "false");
+            props.setProperty("allowPublicKeyRetrieval", "true");
+            // Cached statements keep their server-side handle between DAO calls
+            props.setProperty("useServerPrepStmts", "true");
+
+            pool = new ConnectionPool(URL, props, MAX_POOL_SIZE, MIN_IDLE_CONNECTIONS,
+                    CONNECTION_WAIT_TIMEOUT_MS, IDLE_TIMEOUT_MS, LEAK_DETECTION_THRESHOLD_MS,
+                    VALIDATION_TIMEOUT_SECONDS, STATEMENT_CACHE_SIZE);
         }
-        return connection;
+        return pool;
     }
 
-    public static void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                System.out.println("Database connection closed.");
-            } catch (SQLException e) {
-                System.err.println("Error closing database connection: " + e.getMessage());
-            }
+    public static synchronized void closeConnection() {
+        if (pool != null) {
+            pool.shutdown();
+            System.out.println("Database connection pool closed.");
         }
     }
-    
+
     /**
      * Begin a transaction
      */
     public static void beginTransaction() throws SQLException {
-        Connection conn = getConnection();
-        if (conn != null) {
-            conn.setAutoCommit(false);
+        if (transactionConnection.get() != null) {
+            throw new SQLException("A transaction is already active on this thread");
+        }
+        PooledConnection pooled = getPool().borrowPooled();
+        try {
+            pooled.getProxy().setAutoCommit(false);
+        } catch (SQLException e) {
+            pooled.getProxy().close();
+            throw e;
         }
+        pooled.pin();
+        transactionConnection.set(pooled);
     }
-    
+
     /**
      * Commit the current transaction
      */
     public static void commitTransaction() throws SQLException {
-        Connection conn = getConnection();
-        if (conn != null) {
+        PooledConnection pooled = transactionConnection.get();
+        if (pooled == null) {
+            throw new SQLException("No active transaction on this thread");
+        }
+        try {
+            Connection conn = pooled.getProxy();
             conn.commit();
             conn.setAutoCommit(true);
+        } finally {
+            endTransaction(pooled);
         }
     }
-    
+
     /**
      * Rollback the current transaction
      */
     public static void rollbackTransaction() {
+        PooledConnection pooled = transactionConnection.get();
+        if (pooled == null) {
+            return;
+        }
         try {
-            Connection conn = getConnection();
-            if (conn != null) {
-                conn.rollback();
-                conn.setAutoCommit(true);
-            }
+            Connection conn = pooled.getProxy();
+            conn.rollback();
+            conn.setAutoCommit(true);
         } catch (SQLException e) {
             System.err.println("Error rolling back transaction: " + e.getMessage());
+        } finally {
+            endTransaction(pooled);
+        }
+    }
+
+    private static void endTransaction(PooledConnection pooled) {
+        transactionConnection.remove();
+        pooled.unpin();
+        try {
+            pooled.getProxy().close();
+        } catch (SQLException e) {
+            System.err.println("Error returning transaction connection: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import com.globemed.models.DuplicateCandidate;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Review table for suspected duplicate patients, filled by the duplicate
+ * detection job and worked through by staff. The table is created on first
+ * use.
+ *
+ * @author Hansana
+ */
+public class DuplicateCandidateDAO {
+
+    public static final int INSERT_CHUNK = 500;
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS patient_duplicate_candidates ("
+            + " id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+            + " run_id VARCHAR(64) NOT NULL,"
+            + " cluster_id INT NOT NULL,"
+            + " patient_id BIGINT NOT NULL,"
+            + " score DECIMAL(4,3) NOT NULL,"
+            + " status VARCHAR(16) NOT NULL DEFAULT 'PENDING',"
+            + " created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+            + " INDEX idx_duplicate_run (run_id, cluster_id),"
+            + " INDEX idx_duplicate_status (status))";
+
+    public void createTableIfMissing() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE);
+        }
+    }
+
+    public boolean hasRun(String runId) throws SQLException {
+        String sql = "SELECT 1 FROM patient_duplicate_candidates WHERE run_id = ? LIMIT 1";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, runId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public int deleteRun(String runId) throws SQLException {
+        String sql = "DELETE FROM patient_duplicate_candidates WHERE run_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, runId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Insert with one multi-row INSERT per {@link #INSERT_CHUNK} candidates.
+     * Runs inside the caller's transaction if one is active.
+     */
+    public int insertCandidates(List<DuplicateCandidate> candidates) throws SQLException {
+        int inserted = 0;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (int start = 0; start < candidates.size(); start += INSERT_CHUNK) {
+                List<DuplicateCandidate> chunk = candidates.subList(start, Math.min(start + INSERT_CHUNK, candidates.size()));
+                String sql = "INSERT INTO patient_duplicate_candidates (run_id, cluster_id, patient_id, score, status) VALUES "
+                        + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, ?)"));
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (DuplicateCandidate candidate : chunk) {
+                        stmt.setString(index++, candidate.getRunId());
+                        stmt.setInt(index++, candidate.getClusterId());
+                        stmt.setLong(index++, candidate.getPatientId());
+                        stmt.setDouble(index++, candidate.getScore());
+                        stmt.setString(index++, candidate.getStatus());
+                    }
+                    inserted += stmt.executeUpdate();
+                }
+            }
+        }
+
+        return inserted;
+    }
+
+    public List<DuplicateCandidate> getPendingCandidates(String runId) throws SQLException {
+        List<DuplicateCandidate> candidates = new ArrayList<>();
+        String sql = "SELECT * FROM patient_duplicate_candidates WHERE run_id = ? AND status = ?"
+                + " ORDER BY cluster_id, score DESC";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, runId);
+            stmt.setString(2, DuplicateCandidate.STATUS_PENDING);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    candidates.add(mapResultSetToCandidate(rs));
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    public boolean updateClusterStatus(String runId, int clusterId, String status) throws SQLException {
+        String sql = "UPDATE patient_duplicate_candidates SET status = ? WHERE run_id = ? AND cluster_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, status);
+            stmt.setString(2, runId);
+            stmt.setInt(3, clusterId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private DuplicateCandidate mapResultSetToCandidate(ResultSet rs) throws SQLException {
+        DuplicateCandidate candidate = new DuplicateCandidate();
+        candidate.setId(rs.getLong("id"));
+        candidate.setRunId(rs.getString("run_id"));
+        candidate.setClusterId(rs.getInt("cluster_id"));
+        candidate.setPatientId(rs.getLong("patient_id"));
+        candidate.setScore(rs.getDouble("score"));
+        candidate.setStatus(rs.getString("status"));
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        candidate.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        return candidate;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Process-wide read-through cache of entities by id, shared by every
+ * instance of the owning DAO.
+ *
+ * Entries are evicted least-recently-used once {@code maxSize} is reached and
+ * are reloaded after {@code expireAfterMillis}, which bounds how long a
+ * change made from another workstation can go unseen. Changes made through
+ * this process's DAO invalidate the entry immediately. Model objects are
+ * mutable, so values are copied on the way in and on the way out.
+ *
+ * @author Hansana
+ */
+public class EntityCache<V> {
+
+    /**
+     * Loads the rows for a set of ids; ids with no row are left out.
+     */
+    interface Loader<V> {
+
+        Map<Long, V> loadAll(Collection<Long> ids) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long expireAfterMillis;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<Long, Cached<V>> entries;
+    // Bumped on every invalidation so a load that started before it is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    // Metrics
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    EntityCache(String name, int maxSize, long expireAfterMillis, UnaryOperator<V> copier) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.expireAfterMillis = expireAfterMillis;
+        this.copier = copier;
+        this.entries = new LinkedHashMap<Long, Cached<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached<V>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The entity for an id, loading it on a miss; null if there is no such
+     * row.
+     */
+    V get(Long id, Loader<V> loader) throws SQLException {
+        if (id == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(1);
+        ids.add(id);
+        return getAll(ids, loader).get(id);
+    }
+
+    /**
+     * Entities for the given ids, loading every miss with one call to the
+     * loader. Ids with no row are absent from the result.
+     */
+    Map<Long, V> getAll(Collection<Long> ids, Loader<V> loader) throws SQLException {
+        Map<Long, V> result = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            for (Long id : ids) {
+                if (id == null || result.containsKey(id)) {
+                    continue;
+                }
+                Cached<V> entry = entries.get(id);
+                if (entry != null && now - entry.loadedAt < expireAfterMillis) {
+                    result.put(id, copier.apply(entry.value));
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        hitCount.add(result.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        missCount.add(missing.size());
+        long loadGeneration = generation.get();
+        Map<Long, V> loaded = loader.loadAll(missing);
+        loadCount.increment();
+
+        synchronized (entries) {
+            boolean current = generation.get() == loadGeneration;
+            for (Map.Entry<Long, V> row : loaded.entrySet()) {
+                if (current) {
+                    entries.put(row.getKey(), new Cached<>(copier.apply(row.getValue()), now));
+                }
+                result.put(row.getKey(), row.getValue());
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(Long id) {
+        generation.incrementAndGet();
+        invalidationCount.increment();
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidationCount.increment();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void printStatistics() {
+        System.out.println(name + " Cache Statistics:");
+        System.out.println("  Entries: " + size() + "/" + maxSize + " (expire after " + expireAfterMillis + "ms)");
+        System.out.println(String.format("  Hits/misses: %d/%d (%.1f%% hit rate), bulk loads: %d",
+                getHitCount(), getMissCount(), getHitRate() * 100, loadCount.sum()));
+        System.out.println("  Evictions: " + evictionCount.sum() + ", invalidations: " + invalidationCount.sum());
+    }
+
+    private static final class Cached<V> {
+
+        final V value;
+        final long loadedAt;
+
+        Cached(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits id lists for {@code WHERE id IN (...)} queries.
+ *
+ * Each batch is padded (by repeating its last id) to one of a few fixed
+ * sizes, so only a handful of distinct SQL strings are ever prepared and the
+ * per-connection {@link StatementCache} keeps hitting.
+ *
+ * @author Hansana
+ */
+final class IdBatches {
+
+    private static final int[] BATCH_SIZES = {1, 8, 32, 128, 512};
+    static final int MAX_BATCH_SIZE = BATCH_SIZES[BATCH_SIZES.length - 1];
+
+    private IdBatches() {
+    }
+
+    static List<List<Long>> split(Collection<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        List<Long> batch = new ArrayList<>();
+        for (Long id : ids) {
+            batch.add(id);
+            if (batch.size() == MAX_BATCH_SIZE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Number of placeholders to use for a batch.
+     */
+    static int paddedSize(int size) {
+        for (int batchSize : BATCH_SIZES) {
+            if (size <= batchSize) {
+                return batchSize;
+            }
+        }
+        throw new IllegalArgumentException("Batch too large: " + size);
+    }
+
+    static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Bind a batch starting at {@code index}, padded to {@code paddedSize};
+     * returns the next free parameter index.
+     */
+    static int bind(PreparedStatement stmt, List<Long> batch, int paddedSize, int index) throws SQLException {
+        for (int i = 0; i < paddedSize; i++) {
+            stmt.setLong(index++, batch.get(Math.min(i, batch.size() - 1)));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated query. {@link #getNextCursor()} is null on
+ * the last page.
+ *
+ * @author Hansana
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final PageCursor nextCursor;
+
+    public Page(List<T> items, PageCursor nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from a query that fetched {@code limit + 1} rows: the
+     * extra row only tells us whether another page exists and is dropped.
+     */
+    static <T> Page<T> fromLookahead(List<T> rows, int limit, Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, cursorOf.apply(items.get(limit - 1)));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public PageCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
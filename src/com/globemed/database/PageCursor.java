@@ -0,0 +1,67 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Position of the last row of a page: its sort key value and id. Passing it
+ * back to a {@code fetchPage} call continues right after that row, so the
+ * database seeks through the index instead of skipping an OFFSET.
+ *
+ * @author Hansana
+ */
+public final class PageCursor {
+
+    private final Object sortValue;
+    private final long lastId;
+
+    private PageCursor(Object sortValue, long lastId) {
+        this.sortValue = sortValue;
+        this.lastId = lastId;
+    }
+
+    // For pages keyed on id alone
+    public static PageCursor afterId(long lastId) {
+        return new PageCursor(null, lastId);
+    }
+
+    public static PageCursor after(Object sortValue, long lastId) {
+        return new PageCursor(sortValue, lastId);
+    }
+
+    public static PageCursor after(LocalDateTime sortValue, long lastId) {
+        return new PageCursor(sortValue != null ? Timestamp.valueOf(sortValue) : null, lastId);
+    }
+
+    public Object getSortValue() {
+        return sortValue;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Bind the parameters of {@link SortDirection#seekAfter(String, PageCursor)} starting
+     * at {@code index}; returns the next free parameter index.
+     */
+    int bind(PreparedStatement stmt, int index) throws SQLException {
+        if (sortValue != null) {
+            stmt.setObject(index++, sortValue);
+            stmt.setObject(index++, sortValue);
+        }
+        stmt.setLong(index++, lastId);
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "PageCursor{sortValue=" + sortValue + ", lastId=" + lastId + "}";
+    }
+}
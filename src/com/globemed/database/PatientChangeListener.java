@@ -0,0 +1,21 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import com.globemed.models.Patient;
+
+/**
+ * Notified after {@link PatientDAO} writes or deletes a patient, so anything
+ * derived from patient rows can follow the change. Patients are passed as
+ * stored, with sensitive fields encrypted.
+ *
+ * @author Hansana
+ */
+public interface PatientChangeListener {
+
+    void onPatientSaved(Patient patient);
+
+    void onPatientDeleted(Long patientId);
+}
@@ -7,7 +7,15 @@ package com.globemed.database;
 import com.globemed.models.Patient;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  *
@@ -15,6 +23,46 @@ import java.util.List;
  */
 public class PatientDAO {
 
+    public static final int BULK_UPDATE_CHUNK = 500;
+
+    private static final EntityCache<Patient> cache
+            = new EntityCache<>("Patient", 10_000, 5 * 60_000, PatientDAO::copyOf);
+
+    // Shared by every PatientDAO instance, since callers create their own DAOs
+    private static final List<PatientChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static void addPatientChangeListener(PatientChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removePatientChangeListener(PatientChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void firePatientSaved(Patient patient) {
+        for (PatientChangeListener listener : listeners) {
+            try {
+                listener.onPatientSaved(copyOf(patient));
+            } catch (RuntimeException e) {
+                System.err.println("Patient change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void firePatientDeleted(Long id) {
+        for (PatientChangeListener listener : listeners) {
+            try {
+                listener.onPatientDeleted(id);
+            } catch (RuntimeException e) {
+                System.err.println("Patient change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public static EntityCache<Patient> getCache() {
+        return cache;
+    }
+
     public List<Patient> getAllPatients() throws SQLException {
         List<Patient> patients = new ArrayList<>();
         String sql = "SELECT * FROM patients ORDER BY id";
@@ -22,14 +70,7 @@ public class PatientDAO {
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql); ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                Patient patient = new Patient();
-                patient.setId(rs.getLong("id"));
-                patient.setName(rs.getString("name"));
-                patient.setDob(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
-                patient.setAddress(rs.getString("address"));
-                patient.setPhone(rs.getString("phone"));
-                patient.setMedicalHistory(rs.getString("medical_history"));
-                patients.add(patient);
+                patients.add(mapResultSetToPatient(rs));
             }
         }
 
@@ -44,14 +85,7 @@ public class PatientDAO {
             stmt.setLong(1, id);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Patient patient = new Patient();
-                    patient.setId(rs.getLong("id"));
-                    patient.setName(rs.getString("name"));
-                    patient.setDob(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
-                    patient.setAddress(rs.getString("address"));
-                    patient.setPhone(rs.getString("phone"));
-                    patient.setMedicalHistory(rs.getString("medical_history"));
-                    return patient;
+                    return mapResultSetToPatient(rs);
                 }
             }
         }
@@ -59,6 +93,43 @@ public class PatientDAO {
         return null;
     }
 
+    /**
+     * Cached lookup for display purposes such as resolving names. Fields
+     * are as stored, so sensitive ones are still encrypted.
+     */
+    public Patient getCachedPatientById(Long id) throws SQLException {
+        return cache.get(id, this::loadPatientsByIds);
+    }
+
+    /**
+     * Cached bulk lookup; ids with no patient are absent from the map.
+     */
+    public Map<Long, Patient> getPatientsByIds(Collection<Long> ids) throws SQLException {
+        return cache.getAll(ids, this::loadPatientsByIds);
+    }
+
+    private Map<Long, Patient> loadPatientsByIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Patient> patients = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (List<Long> batch : IdBatches.split(ids)) {
+                int size = IdBatches.paddedSize(batch.size());
+                String sql = "SELECT * FROM patients WHERE id IN (" + IdBatches.placeholders(size) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    IdBatches.bind(stmt, batch, size, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            Patient patient = mapResultSetToPatient(rs);
+                            patients.put(patient.getId(), patient);
+                        }
+                    }
+                }
+            }
+        }
+
+        return patients;
+    }
+
     public Long insertPatient(Patient patient) throws SQLException {
         String sql = "INSERT INTO patients (name, dob, address, phone, medical_history) VALUES (?, ?, ?, ?, ?)";
 
@@ -79,6 +150,8 @@ public class PatientDAO {
                 if (generatedKeys.next()) {
                     Long id = generatedKeys.getLong(1);
                     patient.setId(id);
+                    cache.invalidate(id);
+                    firePatientSaved(patient);
                     return id;
                 } else {
                     throw new SQLException("Creating patient failed, no ID obtained.");
@@ -99,7 +172,109 @@ public class PatientDAO {
             stmt.setString(5, patient.getMedicalHistory());
             stmt.setLong(6, patient.getId());
 
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            cache.invalidate(patient.getId());
+            if (updated) {
+                firePatientSaved(patient);
+            }
+            return updated;
+        }
+    }
+
+    /**
+     * Write many patients with one UPDATE statement per
+     * {@link #BULK_UPDATE_CHUNK} rows, each column set through a
+     * {@code CASE id} expression. Runs inside the caller's transaction if
+     * one is active. Returns the ids of the rows that exist and were
+     * written; each chunk's rows are locked with SELECT ... FOR UPDATE first,
+     * so inside a transaction none of them can be deleted before the UPDATE.
+     *
+     * Cached copies and change listeners are left alone, since the
+     * transaction may still roll back; call {@link #bulkUpdateCommitted} once
+     * it has committed.
+     */
+    public Set<Long> updatePatients(List<Patient> patients) throws SQLException {
+        Set<Long> matched = new HashSet<>();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (int start = 0; start < patients.size(); start += BULK_UPDATE_CHUNK) {
+                List<Patient> chunk = patients.subList(start, Math.min(start + BULK_UPDATE_CHUNK, patients.size()));
+                String lockSql = "SELECT id FROM patients WHERE id IN ("
+                        + IdBatches.placeholders(chunk.size()) + ") FOR UPDATE";
+                Set<Long> existing = new HashSet<>();
+                try (PreparedStatement stmt = conn.prepareStatement(lockSql)) {
+                    int index = 1;
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            existing.add(rs.getLong(1));
+                        }
+                    }
+                }
+                if (existing.isEmpty()) {
+                    continue;
+                }
+                String whenThen = String.join(" ", Collections.nCopies(chunk.size(), "WHEN ? THEN ?"));
+                String sql = "UPDATE patients SET"
+                        + " name = CASE id " + whenThen + " END,"
+                        + " dob = CASE id " + whenThen + " END,"
+                        + " address = CASE id " + whenThen + " END,"
+                        + " phone = CASE id " + whenThen + " END,"
+                        + " medical_history = CASE id " + whenThen + " END"
+                        + " WHERE id IN (" + IdBatches.placeholders(chunk.size()) + ")";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                        stmt.setString(index++, patient.getName());
+                    }
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                        stmt.setDate(index++, patient.getDob() != null ? Date.valueOf(patient.getDob()) : null);
+                    }
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                        stmt.setString(index++, patient.getAddress());
+                    }
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                        stmt.setString(index++, patient.getPhone());
+                    }
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                        stmt.setString(index++, patient.getMedicalHistory());
+                    }
+                    for (Patient patient : chunk) {
+                        stmt.setLong(index++, patient.getId());
+                    }
+                    stmt.executeUpdate();
+                }
+                matched.addAll(existing);
+            }
+        }
+
+        return matched;
+    }
+
+    /**
+     * Drop cached copies of patients written by {@link #updatePatients} and
+     * notify listeners, after the transaction that wrote them has committed.
+     * Invalidating earlier would let another connection cache the old row
+     * again, and listeners would keep values that were rolled back.
+     *
+     * Listeners treat a save as an upsert, so as with {@link #updatePatient}
+     * they only hear about rows that exist: patients whose id is not in
+     * {@code matchedIds} (as returned by updatePatients) are skipped.
+     */
+    public void bulkUpdateCommitted(List<Patient> patients, Set<Long> matchedIds) {
+        for (Patient patient : patients) {
+            cache.invalidate(patient.getId());
+            if (matchedIds.contains(patient.getId())) {
+                firePatientSaved(patient);
+            }
         }
     }
 
@@ -109,7 +284,62 @@ public class PatientDAO {
         try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setLong(1, id);
-            return stmt.executeUpdate() > 0;
+            boolean deleted = stmt.executeUpdate() > 0;
+            cache.invalidate(id);
+            if (deleted) {
+                firePatientDeleted(id);
+            }
+            return deleted;
         }
     }
+
+    /**
+     * Keyset-paginated read ordered by id. Pass {@code null} as the cursor
+     * for the first page and {@link Page#getNextCursor()} afterwards.
+     */
+    public Page<Patient> fetchPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        List<Patient> patients = new ArrayList<>();
+        String sql = "SELECT * FROM patients"
+                + (cursor != null ? " WHERE " + sort.seekAfter("id", cursor) : "")
+                + sort.orderBy("id") + " LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    patients.add(mapResultSetToPatient(rs));
+                }
+            }
+        }
+
+        return Page.fromLookahead(patients, limit, patient -> PageCursor.afterId(patient.getId()));
+    }
+
+    /**
+     * Stream every patient in id order without loading the table into
+     * memory. The stream holds a database connection until it is closed.
+     */
+    public Stream<Patient> streamAllPatients() throws SQLException {
+        return ResultSetStreams.stream("SELECT * FROM patients ORDER BY id", this::mapResultSetToPatient);
+    }
+
+    private Patient mapResultSetToPatient(ResultSet rs) throws SQLException {
+        Patient patient = new Patient();
+        patient.setId(rs.getLong("id"));
+        patient.setName(rs.getString("name"));
+        patient.setDob(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
+        patient.setAddress(rs.getString("address"));
+        patient.setPhone(rs.getString("phone"));
+        patient.setMedicalHistory(rs.getString("medical_history"));
+        return patient;
+    }
+
+    private static Patient copyOf(Patient source) {
+        Patient copy = new Patient(source.getName(), source.getDob(), source.getAddress(),
+                source.getPhone(), source.getMedicalHistory());
+        copy.setId(source.getId());
+        return copy;
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps a physical JDBC connection owned by the {@link ConnectionPool}.
+ * Callers only ever see the proxy returned by {@link #getProxy()}: calling
+ * {@code close()} on it hands the physical connection back to the pool
+ * instead of tearing down the socket.
+ *
+ * @author Hansana
+ */
+class PooledConnection implements InvocationHandler {
+
+    private final ConnectionPool pool;
+    private final Connection physicalConnection;
+    private final long createdAt;
+    private final StatementCache statementCache;
+
+    private volatile Connection proxy;
+    private volatile boolean borrowed;
+    private volatile boolean broken;
+    private volatile long borrowedAt;
+    private volatile long lastReturnedAt;
+    private volatile Throwable borrowTrace;
+    private volatile boolean leakReported;
+    private boolean autoCommitChanged;
+    private int pinCount;
+
+    PooledConnection(ConnectionPool pool, Connection physicalConnection, int statementCacheSize) {
+        this.pool = pool;
+        this.physicalConnection = physicalConnection;
+        this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize, this) : null;
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    /**
+     * Called by the pool when the connection is handed out. A fresh proxy is
+     * created per borrow so that a stale reference kept by a caller cannot
+     * close a connection that has since been given to someone else.
+     */
+    void markBorrowed(boolean captureTrace) {
+        borrowed = true;
+        borrowedAt = System.currentTimeMillis();
+        borrowTrace = captureTrace ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        proxy = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                this);
+    }
+
+    void markReturned() {
+        borrowed = false;
+        borrowTrace = null;
+        proxy = null;
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Restores the session defaults the next borrower expects. Open
+     * transactions that were never committed are rolled back.
+     */
+    void resetState() throws SQLException {
+        if (autoCommitChanged) {
+            if (!physicalConnection.getAutoCommit()) {
+                physicalConnection.rollback();
+                physicalConnection.setAutoCommit(true);
+            }
+            autoCommitChanged = false;
+        }
+        physicalConnection.clearWarnings();
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !physicalConnection.isClosed() && physicalConnection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closePhysical() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        try {
+            physicalConnection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    // Pinning keeps the connection checked out across close() calls, which
+    // is how DatabaseConnection binds one connection to a transaction.
+    synchronized void pin() {
+        pinCount++;
+    }
+
+    synchronized void unpin() {
+        if (pinCount > 0) {
+            pinCount--;
+        }
+    }
+
+    private synchronized boolean isPinned() {
+        return pinCount > 0;
+    }
+
+    Connection getProxy() {
+        return proxy;
+    }
+
+    Connection getPhysicalConnection() {
+        return physicalConnection;
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    Throwable getBorrowTrace() {
+        return borrowTrace;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    @Override
+    public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+
+        switch (name) {
+            case "close":
+                if (borrowed && proxyInstance == proxy && !isPinned()) {
+                    pool.release(this);
+                }
+                return null;
+            case "isClosed":
+                return !borrowed || proxyInstance != proxy || physicalConnection.isClosed();
+            case "equals":
+                return proxyInstance == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxyInstance);
+            case "toString":
+                return "PooledConnection[" + physicalConnection + "]";
+            default:
+                break;
+        }
+
+        if (!borrowed || proxyInstance != proxy) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+
+        if ("setAutoCommit".equals(name)) {
+            autoCommitChanged = true;
+        }
+
+        // prepareStatement(String) and prepareStatement(String, int) go through the statement cache
+        if (statementCache != null && "prepareStatement".equals(name)
+                && (args.length == 1 || (args.length == 2 && args[1] instanceof Integer))) {
+            int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+            try {
+                return statementCache.prepare(physicalConnection, (String) args[0], autoGeneratedKeys);
+            } catch (SQLException e) {
+                markBrokenIfConnectionError(e);
+                throw e;
+            }
+        }
+
+        try {
+            return method.invoke(physicalConnection, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                markBrokenIfConnectionError((SQLException) cause);
+            }
+            throw cause;
+        }
+    }
+
+    private void markBrokenIfConnectionError(SQLException e) {
+        String sqlState = e.getSQLState();
+        // Class 08 = connection exception; never hand this one out again
+        if (sqlState != null && sqlState.startsWith("08")) {
+            broken = true;
+        }
+    }
+}
@@ -5,10 +5,12 @@
 package com.globemed.database;
 
 import com.globemed.models.Report;
+import com.globemed.models.ReportSummary;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  *
@@ -16,6 +18,11 @@ import java.util.List;
  */
 public class ReportDAO {
 
+    // Listing columns: no content, patient name joined in
+    private static final String SUMMARY_COLUMNS
+            = "SELECT r.id, r.type, r.title, r.summary, r.patient_id, r.generated_at, p.name AS patient_name ";
+    private static final String SUMMARY_PATIENT_JOIN = " LEFT JOIN patients p ON p.id = r.patient_id";
+
     public List<Report> getAllReports() throws SQLException {
         List<Report> reports = new ArrayList<>();
         String sql = "SELECT * FROM reports ORDER BY generated_at DESC";
@@ -158,6 +165,82 @@ public class ReportDAO {
         }
     }
 
+    /**
+     * Keyset-paginated read ordered by generation time, then id.
+     */
+    public Page<Report> fetchPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        List<Report> reports = new ArrayList<>();
+        String sql = "SELECT * FROM reports"
+                + (cursor != null ? " WHERE " + sort.seekAfter("generated_at", cursor) : "")
+                + sort.orderBy("generated_at") + " LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    reports.add(mapResultSetToReport(rs));
+                }
+            }
+        }
+
+        return Page.fromLookahead(reports, limit, report -> PageCursor.after(
+                report.getGeneratedAt(), report.getId()));
+    }
+
+    /**
+     * Keyset-paginated listing ordered by generation time, then id. The page
+     * is selected from reports alone and only then joined to patients.
+     */
+    public Page<ReportSummary> fetchSummaryPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        List<ReportSummary> summaries = new ArrayList<>();
+        String sql = SUMMARY_COLUMNS + "FROM (SELECT id, type, title, summary, patient_id, generated_at FROM reports"
+                + (cursor != null ? " WHERE " + sort.seekAfter("generated_at", cursor) : "")
+                + sort.orderBy("generated_at") + " LIMIT ?) r" + SUMMARY_PATIENT_JOIN
+                + " ORDER BY r.generated_at " + sort.keyword() + ", r.id " + sort.keyword();
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    summaries.add(mapResultSetToSummary(rs));
+                }
+            }
+        }
+
+        return Page.fromLookahead(summaries, limit, summary -> PageCursor.after(
+                summary.getGeneratedAt(), summary.getId()));
+    }
+
+    public List<ReportSummary> getReportSummariesByType(String type) throws SQLException {
+        List<ReportSummary> summaries = new ArrayList<>();
+        String sql = SUMMARY_COLUMNS + "FROM reports r" + SUMMARY_PATIENT_JOIN
+                + " WHERE r.type = ? ORDER BY r.generated_at DESC";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, type);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    summaries.add(mapResultSetToSummary(rs));
+                }
+            }
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Stream every report, oldest first, without loading them into memory.
+     * The stream holds a database connection until it is closed.
+     */
+    public Stream<Report> streamAllReports() throws SQLException {
+        return ResultSetStreams.stream("SELECT * FROM reports ORDER BY generated_at, id", this::mapResultSetToReport);
+    }
+
     private Report mapResultSetToReport(ResultSet rs) throws SQLException {
         Report report = new Report();
         report.setId(rs.getLong("id"));
@@ -168,7 +251,19 @@ public class ReportDAO {
         report.setTitle(rs.getString("title"));
         report.setSummary(rs.getString("summary"));
         report.setFooter(rs.getString("footer"));
-        report.setGeneratedAt(rs.getTimestamp("generated_at").toLocalDateTime());
+        report.setGeneratedAt(rs.getObject("generated_at", LocalDateTime.class));
         return report;
     }
+
+    private ReportSummary mapResultSetToSummary(ResultSet rs) throws SQLException {
+        ReportSummary summary = new ReportSummary();
+        summary.setId(rs.getLong("id"));
+        summary.setType(rs.getString("type"));
+        summary.setTitle(rs.getString("title"));
+        summary.setSummary(rs.getString("summary"));
+        summary.setPatientId(rs.getObject("patient_id", Long.class));
+        summary.setPatientName(rs.getString("patient_name"));
+        summary.setGeneratedAt(rs.getObject("generated_at", LocalDateTime.class));
+        return summary;
+    }
 }
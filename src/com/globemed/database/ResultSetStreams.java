@@ -0,0 +1,149 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiPredicate;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns a query into a lazily read {@link Stream} using MySQL's row-by-row
+ * streaming mode, so whole tables can be walked in constant memory.
+ *
+ * The stream owns its own pooled connection until it is closed, and while
+ * it is open that connection cannot run any other statement - always use
+ * try-with-resources. SQL errors during iteration surface as
+ * {@link UncheckedSQLException}.
+ *
+ * @author Hansana
+ */
+final class ResultSetStreams {
+
+    interface RowMapper<T> {
+
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    interface ParameterBinder {
+
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+
+    private ResultSetStreams() {
+    }
+
+    static <T> Stream<T> stream(String sql, RowMapper<T> mapper) throws SQLException {
+        return stream(sql, stmt -> {
+        }, mapper);
+    }
+
+    static <T> Stream<T> stream(String sql, ParameterBinder binder, RowMapper<T> mapper) throws SQLException {
+        // Borrow straight from the pool: a streaming result set would block
+        // a connection pinned to the caller's transaction
+        Connection conn = DatabaseConnection.getPool().borrowLongLived();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            // Forward-only, read-only and fetch size MIN_VALUE is what makes
+            // Connector/J stream rows instead of buffering the whole result
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            binder.bind(stmt);
+            rs = stmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(rs, stmt, conn);
+            throw e;
+        }
+
+        ResultSet resultSet = rs;
+        PreparedStatement statement = stmt;
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(resultSet));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException("Error reading streamed rows", e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(rows, false)
+                .onClose(() -> closeQuietly(resultSet, statement, conn));
+    }
+
+    /**
+     * Merge runs of adjacent elements that belong together, e.g. the rows of
+     * a parent/child join ordered by parent id. Only one group is held in
+     * memory at a time.
+     */
+    static <T> Stream<T> groupAdjacent(Stream<T> source, BiPredicate<T, T> sameGroup, BinaryOperator<T> merge) {
+        Iterator<T> rows = source.iterator();
+        Iterator<T> groups = new Iterator<T>() {
+            private T pending;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || rows.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T group = pending != null ? pending : rows.next();
+                pending = null;
+                while (rows.hasNext()) {
+                    T row = rows.next();
+                    if (!sameGroup.test(group, row)) {
+                        pending = row;
+                        break;
+                    }
+                    group = merge.apply(group, row);
+                }
+                return group;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(groups,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(source::close);
+    }
+
+    private static void closeQuietly(ResultSet rs, PreparedStatement stmt, Connection conn) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Error closing streamed result: " + e.getMessage());
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Error returning streaming connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+/**
+ * Notified after {@link RoleDAO} changes which permissions a role has, so
+ * anything caching role permissions can drop stale entries.
+ *
+ * @author Hansana
+ */
+public interface RoleChangeListener {
+
+    void onRolePermissionsChanged(String roleName);
+}
@@ -9,6 +9,7 @@ import com.globemed.models.Permission;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *
@@ -16,6 +17,27 @@ import java.util.List;
  */
 public class RoleDAO {
 
+    // Shared by every RoleDAO instance, since callers create their own DAOs
+    private static final List<RoleChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static void addRoleChangeListener(RoleChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeRoleChangeListener(RoleChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void fireRolePermissionsChanged(String roleName) {
+        for (RoleChangeListener listener : listeners) {
+            try {
+                listener.onRolePermissionsChanged(roleName);
+            } catch (RuntimeException e) {
+                System.err.println("Role change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
     public List<Role> getAllRoles() throws SQLException {
         List<Role> roles = new ArrayList<>();
         String sql = "SELECT * FROM roles ORDER BY name";
@@ -130,6 +152,7 @@ public class RoleDAO {
             stmt.setString(2, permissionName);
             stmt.executeUpdate();
         }
+        fireRolePermissionsChanged(roleName);
     }
 
     public void removePermissionFromRole(String roleName, String permissionName) throws SQLException {
@@ -143,6 +166,7 @@ public class RoleDAO {
             stmt.setString(2, permissionName);
             stmt.executeUpdate();
         }
+        fireRolePermissionsChanged(roleName);
     }
 
     private Role mapResultSetToRole(ResultSet rs) throws SQLException {
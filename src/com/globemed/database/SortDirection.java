@@ -0,0 +1,58 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+/**
+ * Sort order for keyset-paginated queries. Every page is ordered by a sort
+ * column with {@code id} as tie-breaker, so the pair is always unique.
+ *
+ * @author Hansana
+ */
+public enum SortDirection {
+    ASCENDING("ASC", ">"),
+    DESCENDING("DESC", "<");
+
+    private final String keyword;
+    private final String comparator;
+
+    SortDirection(String keyword, String comparator) {
+        this.keyword = keyword;
+        this.comparator = comparator;
+    }
+
+    String keyword() {
+        return keyword;
+    }
+
+    String orderBy(String column) {
+        if ("id".equals(column)) {
+            return " ORDER BY id " + keyword;
+        }
+        return " ORDER BY " + column + " " + keyword + ", id " + keyword;
+    }
+
+    /**
+     * Seek predicate for the rows after a cursor, matching the parameters
+     * {@link PageCursor#bind} sets: sort value twice and id, or only id when
+     * the cursor's sort value is null. MySQL sorts NULLs first ascending and
+     * last descending, so a null sort value is seeked through explicitly.
+     */
+    String seekAfter(String column, PageCursor cursor) {
+        if ("id".equals(column)) {
+            return "id " + comparator + " ?";
+        }
+        if (cursor.getSortValue() == null) {
+            if (this == ASCENDING) {
+                return "((" + column + " IS NULL AND id > ?) OR " + column + " IS NOT NULL)";
+            }
+            return "(" + column + " IS NULL AND id < ?)";
+        }
+        String seek = "(" + column + " " + comparator + " ? OR (" + column + " = ? AND id " + comparator + " ?)";
+        if (this == DESCENDING) {
+            seek += " OR " + column + " IS NULL";
+        }
+        return seek + ")";
+    }
+}
@@ -7,7 +7,10 @@ package com.globemed.database;
 import com.globemed.models.Staff;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -15,6 +18,13 @@ import java.util.List;
  */
 public class StaffDAO {
 
+    private static final EntityCache<Staff> cache
+            = new EntityCache<>("Staff", 2_000, 5 * 60_000, StaffDAO::copyOf);
+
+    public static EntityCache<Staff> getCache() {
+        return cache;
+    }
+
     public List<Staff> getAllStaff() throws SQLException {
         List<Staff> staff = new ArrayList<>();
         String sql = "SELECT * FROM staff ORDER BY name";
@@ -81,6 +91,42 @@ public class StaffDAO {
         return null;
     }
 
+    /**
+     * Cached lookup for display purposes such as resolving names.
+     */
+    public Staff getCachedStaffById(Long id) throws SQLException {
+        return cache.get(id, this::loadStaffByIds);
+    }
+
+    /**
+     * Cached bulk lookup; ids with no staff member are absent from the map.
+     */
+    public Map<Long, Staff> getStaffByIds(Collection<Long> ids) throws SQLException {
+        return cache.getAll(ids, this::loadStaffByIds);
+    }
+
+    private Map<Long, Staff> loadStaffByIds(Collection<Long> ids) throws SQLException {
+        Map<Long, Staff> staff = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            for (List<Long> batch : IdBatches.split(ids)) {
+                int size = IdBatches.paddedSize(batch.size());
+                String sql = "SELECT * FROM staff WHERE id IN (" + IdBatches.placeholders(size) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    IdBatches.bind(stmt, batch, size, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            Staff member = mapResultSetToStaff(rs);
+                            staff.put(member.getId(), member);
+                        }
+                    }
+                }
+            }
+        }
+
+        return staff;
+    }
+
     public Long insertStaff(Staff staff) throws SQLException {
         String sql = "INSERT INTO staff (name, role_id, username, password, email) VALUES (?, ?, ?, ?, ?)";
 
@@ -101,6 +147,7 @@ public class StaffDAO {
                 if (generatedKeys.next()) {
                     Long id = generatedKeys.getLong(1);
                     staff.setId(id);
+                    cache.invalidate(id);
                     return id;
                 } else {
                     throw new SQLException("Creating staff failed, no ID obtained.");
@@ -121,10 +168,53 @@ public class StaffDAO {
             stmt.setString(5, staff.getEmail());
             stmt.setLong(6, staff.getId());
 
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            cache.invalidate(staff.getId());
+            return updated;
         }
     }
 
+    /**
+     * Replace only the stored password hash, e.g. when it is upgraded on
+     * login.
+     */
+    public boolean updatePassword(Long staffId, String passwordHash) throws SQLException {
+        String sql = "UPDATE staff SET password = ? WHERE id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, passwordHash);
+            stmt.setLong(2, staffId);
+
+            boolean updated = stmt.executeUpdate() > 0;
+            cache.invalidate(staffId);
+            return updated;
+        }
+    }
+
+    /**
+     * Keyset-paginated read ordered by name, then id.
+     */
+    public Page<Staff> fetchPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        List<Staff> staff = new ArrayList<>();
+        String sql = "SELECT * FROM staff"
+                + (cursor != null ? " WHERE " + sort.seekAfter("name", cursor) : "")
+                + sort.orderBy("name") + " LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = cursor != null ? cursor.bind(stmt, 1) : 1;
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    staff.add(mapResultSetToStaff(rs));
+                }
+            }
+        }
+
+        return Page.fromLookahead(staff, limit, member -> PageCursor.after(member.getName(), member.getId()));
+    }
+
     private Staff mapResultSetToStaff(ResultSet rs) throws SQLException {
         Staff staff = new Staff();
         staff.setId(rs.getLong("id"));
@@ -135,4 +225,11 @@ public class StaffDAO {
         staff.setEmail(rs.getString("email"));
         return staff;
     }
+
+    private static Staff copyOf(Staff source) {
+        Staff copy = new Staff(source.getName(), source.getRoleId(), source.getUsername(),
+                source.getPassword(), source.getEmail());
+        copy.setId(source.getId());
+        return copy;
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements attached to one pooled connection, keyed
+ * by SQL text. DAOs keep calling {@code prepareStatement} and closing the
+ * result as usual; a cached statement is only "logically" closed and the
+ * next call with the same SQL on the same connection reuses it, so the
+ * server-side statement handle survives across DAO calls.
+ *
+ * @author Hansana
+ */
+class StatementCache {
+
+    // Aggregated over every connection in the process
+    private static final LongAdder globalHits = new LongAdder();
+    private static final LongAdder globalMisses = new LongAdder();
+    private static final LongAdder globalEvictions = new LongAdder();
+
+    private final int maxSize;
+    private final PooledConnection owner;
+    private final LinkedHashMap<String, CachedStatement> statements;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    StatementCache(int maxSize, PooledConnection owner) {
+        this.maxSize = maxSize;
+        this.owner = owner;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true); // access order
+    }
+
+    /**
+     * Return a statement for the given SQL, reusing a cached one when it is
+     * not currently in use. Pass {@link Statement#NO_GENERATED_KEYS} for the
+     * plain {@code prepareStatement(String)} variant.
+     */
+    synchronized PreparedStatement prepare(Connection physical, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K:" + sql : "S:" + sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null) {
+            if (!cached.inUse) {
+                hits++;
+                globalHits.increment();
+                return cached.checkOut();
+            }
+            // Same SQL already open on this connection (nested use) - don't share it
+            misses++;
+            globalMisses.increment();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        misses++;
+        globalMisses.increment();
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        cached = new CachedStatement(statement);
+        statements.put(key, cached);
+        evictOverflow();
+        return cached.checkOut();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next();
+            iterator.remove();
+            evictions++;
+            globalEvictions.increment();
+            eldest.evict();
+        }
+    }
+
+    /**
+     * Physically close every cached statement, e.g. before the owning
+     * connection is discarded.
+     */
+    synchronized void clear() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.evict();
+        }
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    static long getGlobalHitCount() {
+        return globalHits.sum();
+    }
+
+    static long getGlobalMissCount() {
+        return globalMisses.sum();
+    }
+
+    static long getGlobalEvictionCount() {
+        return globalEvictions.sum();
+    }
+
+    static double getGlobalHitRate() {
+        long hitCount = globalHits.sum();
+        long total = hitCount + globalMisses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    // A physical statement plus the logical handle currently given out for it
+    private class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement physical;
+        private volatile PreparedStatement handle;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement checkOut() {
+            inUse = true;
+            handle = (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+            return handle;
+        }
+
+        void evict() {
+            synchronized (StatementCache.this) {
+                evicted = true;
+                if (inUse) {
+                    return; // Closed for real when the caller is done with it
+                }
+            }
+            closePhysical();
+        }
+
+        private void checkIn() throws SQLException {
+            boolean closeNow;
+            synchronized (StatementCache.this) {
+                handle = null;
+                inUse = false;
+                closeNow = evicted;
+            }
+            if (closeNow) {
+                closePhysical();
+                return;
+            }
+            try {
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+            } catch (SQLException e) {
+                synchronized (StatementCache.this) {
+                    statements.values().remove(this);
+                }
+                closePhysical();
+            }
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxyInstance, Method method, Object[] args) throws Throwable {
+            boolean current = proxyInstance == handle;
+            switch (method.getName()) {
+                case "close":
+                    if (current) {
+                        checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return !current;
+                case "getConnection":
+                    return owner.getProxy();
+                case "equals":
+                    return proxyInstance == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxyInstance);
+                case "toString":
+                    return "CachedStatement[" + physical + "]";
+                default:
+                    break;
+            }
+
+            if (!current) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ package com.globemed.gui;
 
 import com.globemed.database.*;
 import com.globemed.models.*;
+import com.globemed.scheduling.AvailableSlot;
 import com.globemed.services.AppointmentService;
 import com.toedter.calendar.JDateChooser;
 import javax.swing.*;
@@ -58,13 +59,22 @@ public class AppointmentPanel extends JPanel {
     private JComboBox<String> doctorComboBox;
     private JComboBox<String> locationComboBox;
     private JComboBox<String> statusComboBox;
-    private JButton scheduleButton, rescheduleButton, cancelButton, refreshButton;
+    private JButton scheduleButton, rescheduleButton, cancelButton, refreshButton, loadMoreButton;
     private JTextArea notificationsArea;
     private JDateChooser dateChooser;
     private JSpinner timeSpinner;
 
     // Table columns
     private final String[] columnNames = {"ID", "Patient", "Doctor", "Date & Time", "Location", "Status"};
+
+    // Slot search defaults
+    private static final int SLOT_SEARCH_DAYS = 7;
+    private static final int SLOT_SEARCH_COUNT = 10;
+    private static final int SLOT_DURATION_MINUTES = 30;
+
+    // Keyset paging: appointments are fetched PAGE_SIZE at a time in time order
+    private static final int PAGE_SIZE = 200;
+    private PageCursor nextPageCursor;
     private final String[] statusOptions = {"SCHEDULED", "COMPLETED", "CANCELLED", "IN_PROGRESS"};
 
     public AppointmentPanel(MainFrame parentFrame) {
@@ -172,6 +182,8 @@ public class AppointmentPanel extends JPanel {
         rescheduleButton = createStyledButton("Reschedule", WARNING_COLOR, "reschedule");
         cancelButton = createStyledButton("Update Status", ERROR_COLOR, "cancel");
         refreshButton = createStyledButton("Refresh", PRIMARY_COLOR, "refresh");
+        loadMoreButton = createStyledButton("Load More", PRIMARY_COLOR, "");
+        loadMoreButton.setEnabled(false);
 
         rescheduleButton.setEnabled(false);
         cancelButton.setEnabled(false);
@@ -310,6 +322,7 @@ public class AppointmentPanel extends JPanel {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 8));
         buttonPanel.setBackground(CARD_COLOR);
         buttonPanel.add(refreshButton);
+        buttonPanel.add(loadMoreButton);
         buttonPanel.add(rescheduleButton);
         buttonPanel.add(cancelButton);
 
@@ -376,6 +389,10 @@ public class AppointmentPanel extends JPanel {
         checkAvailabilityBtn.addActionListener(e -> checkAvailability());
         actionPanel.add(checkAvailabilityBtn);
 
+        JButton findSlotsBtn = createStyledButton("Find Next Slots", PRIMARY_COLOR, "find");
+        findSlotsBtn.addActionListener(e -> findNextAvailableSlots());
+        actionPanel.add(findSlotsBtn);
+
         JButton clearFormBtn = createStyledButton("Clear Form", new Color(128, 128, 128), "clear");
         clearFormBtn.addActionListener(e -> clearSchedulingForm());
         actionPanel.add(clearFormBtn);
@@ -555,6 +572,7 @@ public class AppointmentPanel extends JPanel {
         rescheduleButton.addActionListener(e -> rescheduleAppointment());
         cancelButton.addActionListener(e -> updateAppointmentStatus());
         refreshButton.addActionListener(e -> refreshData());
+        loadMoreButton.addActionListener(e -> loadMoreAppointments());
 
         dateChooser.setDate(java.sql.Date.valueOf(LocalDate.now()));
     }
@@ -628,6 +646,71 @@ public class AppointmentPanel extends JPanel {
         }
     }
 
+    private void findNextAvailableSlots() {
+        Long staffId = extractIdFromComboBox(doctorComboBox);
+        if (staffId == null) {
+            showWarningDialog("Please select a doctor first!");
+            return;
+        }
+
+        // Search the selected room, or every room when none is selected
+        String selectedLocation = (String) locationComboBox.getSelectedItem();
+        List<String> rooms = selectedLocation == null || selectedLocation.equals("Select Location")
+                ? appointmentService.getAvailableRooms()
+                : java.util.Collections.singletonList(selectedLocation);
+
+        java.util.Date selectedDate = dateChooser.getDate();
+        LocalDateTime windowStart = selectedDate != null
+                ? new java.sql.Date(selectedDate.getTime()).toLocalDate().atStartOfDay()
+                : LocalDateTime.now();
+        LocalDateTime windowEnd = windowStart.plusDays(SLOT_SEARCH_DAYS);
+
+        SwingWorker<List<AvailableSlot>, Void> worker = new SwingWorker<List<AvailableSlot>, Void>() {
+            @Override
+            protected List<AvailableSlot> doInBackground() {
+                return appointmentService.findAvailableSlots(java.util.Collections.singletonList(staffId), rooms,
+                        windowStart, windowEnd, SLOT_DURATION_MINUTES, SLOT_SEARCH_COUNT);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    showAvailableSlots(get());
+                } catch (Exception e) {
+                    showErrorDialog("Error finding available slots: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void showAvailableSlots(List<AvailableSlot> slots) {
+        if (slots.isEmpty()) {
+            showWarningDialog("No free slots found in the next " + SLOT_SEARCH_DAYS + " days.");
+            return;
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        String[] options = new String[slots.size()];
+        for (int i = 0; i < slots.size(); i++) {
+            options[i] = slots.get(i).getStartTime().format(formatter) + "  -  " + slots.get(i).getLocation();
+        }
+
+        String choice = (String) JOptionPane.showInputDialog(this, "Select a free slot:", "Next Available Slots",
+                JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice == null) {
+            return;
+        }
+
+        // Copy the chosen slot into the scheduling form
+        AvailableSlot slot = slots.get(java.util.Arrays.asList(options).indexOf(choice));
+        java.util.Date start = java.util.Date.from(slot.getStartTime().atZone(java.time.ZoneId.systemDefault()).toInstant());
+        dateChooser.setDate(start);
+        timeSpinner.setValue(start);
+        locationComboBox.setSelectedItem(slot.getLocation());
+        addNotification("🔍 Selected free slot " + choice);
+    }
+
     private void checkAvailability() {
         try {
             Long staffId = extractIdFromComboBox(doctorComboBox);
@@ -1054,18 +1137,15 @@ public class AppointmentPanel extends JPanel {
             @Override
             protected Void doInBackground() throws Exception {
                 try {
-                    List<Patient> allPatients = patientDAO.getAllPatients();
-                    List<Staff> allStaff = staffDAO.getAllStaff();
-
-                    java.util.Map<Long, Patient> patientMap = new java.util.HashMap<>();
-                    java.util.Map<Long, Staff> staffMap = new java.util.HashMap<>();
-
-                    for (Patient patient : allPatients) {
-                        patientMap.put(patient.getId(), patient);
-                    }
-                    for (Staff staff : allStaff) {
-                        staffMap.put(staff.getId(), staff);
+                    // Only names are shown; resolve them through the shared cache
+                    java.util.Set<Long> patientIds = new java.util.HashSet<>();
+                    java.util.Set<Long> staffIds = new java.util.HashSet<>();
+                    for (Appointment appointment : todayAppointments) {
+                        patientIds.add(appointment.getPatientId());
+                        staffIds.add(appointment.getStaffId());
                     }
+                    java.util.Map<Long, Patient> patientMap = patientDAO.getPatientsByIds(patientIds);
+                    java.util.Map<Long, Staff> staffMap = staffDAO.getStaffByIds(staffIds);
 
                     for (Appointment apt : todayAppointments) {
                         Patient patient = patientMap.get(apt.getPatientId());
@@ -1281,19 +1361,21 @@ public class AppointmentPanel extends JPanel {
     }
 
     public void refreshData() {
-        SwingWorker<List<Appointment>, Void> worker = new SwingWorker<List<Appointment>, Void>() {
+        SwingWorker<Page<Appointment>, Void> worker = new SwingWorker<Page<Appointment>, Void>() {
             @Override
-            protected List<Appointment> doInBackground() throws Exception {
-                return appointmentDAO.getAllAppointments();
+            protected Page<Appointment> doInBackground() throws Exception {
+                return appointmentDAO.fetchPage(null, PAGE_SIZE, SortDirection.ASCENDING);
             }
 
             @Override
             protected void done() {
                 try {
-                    List<Appointment> appointments = get();
-                    updateTableData(appointments);
+                    Page<Appointment> page = get();
+                    tableModel.setRowCount(0);
+                    appendPage(page);
                     if (parentFrame != null) {
-                        parentFrame.setStatus("✅ Appointments refreshed - " + appointments.size() + " appointments loaded");
+                        parentFrame.setStatus("✅ Appointments refreshed - " + page.size() + " appointments loaded"
+                                + (page.hasMore() ? " (more available)" : ""));
                     }
                 } catch (Exception e) {
                     showErrorDialog("Error loading appointments: " + e.getMessage());
@@ -1306,8 +1388,40 @@ public class AppointmentPanel extends JPanel {
         worker.execute();
     }
 
-    private void updateTableData(List<Appointment> appointments) {
-        tableModel.setRowCount(0);
+    private void loadMoreAppointments() {
+        if (nextPageCursor == null) {
+            return;
+        }
+
+        PageCursor cursor = nextPageCursor;
+        loadMoreButton.setEnabled(false);
+
+        SwingWorker<Page<Appointment>, Void> worker = new SwingWorker<Page<Appointment>, Void>() {
+            @Override
+            protected Page<Appointment> doInBackground() throws Exception {
+                return appointmentDAO.fetchPage(cursor, PAGE_SIZE, SortDirection.ASCENDING);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    appendPage(get());
+                } catch (Exception e) {
+                    loadMoreButton.setEnabled(true);
+                    showErrorDialog("Error loading appointments: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    private void appendPage(Page<Appointment> page) {
+        appendTableData(page.getItems());
+        nextPageCursor = page.getNextCursor();
+        loadMoreButton.setEnabled(page.hasMore());
+    }
+
+    private void appendTableData(List<Appointment> appointments) {
         if (appointments == null || appointments.isEmpty()) {
             return;
         }
@@ -1316,18 +1430,15 @@ public class AppointmentPanel extends JPanel {
             @Override
             protected Void doInBackground() throws Exception {
                 try {
-                    List<Patient> allPatients = patientDAO.getAllPatients();
-                    List<Staff> allStaff = staffDAO.getAllStaff();
-
-                    java.util.Map<Long, Patient> patientMap = new java.util.HashMap<>();
-                    java.util.Map<Long, Staff> staffMap = new java.util.HashMap<>();
-
-                    for (Patient patient : allPatients) {
-                        patientMap.put(patient.getId(), patient);
-                    }
-                    for (Staff staff : allStaff) {
-                        staffMap.put(staff.getId(), staff);
+                    // Only names are shown; resolve them through the shared cache
+                    java.util.Set<Long> patientIds = new java.util.HashSet<>();
+                    java.util.Set<Long> staffIds = new java.util.HashSet<>();
+                    for (Appointment appointment : appointments) {
+                        patientIds.add(appointment.getPatientId());
+                        staffIds.add(appointment.getStaffId());
                     }
+                    java.util.Map<Long, Patient> patientMap = patientDAO.getPatientsByIds(patientIds);
+                    java.util.Map<Long, Staff> staffMap = staffDAO.getStaffByIds(staffIds);
 
                     for (Appointment appointment : appointments) {
                         Patient patient = patientMap.get(appointment.getPatientId());
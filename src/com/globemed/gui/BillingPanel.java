@@ -1,5 +1,7 @@
 package com.globemed.gui;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
 import com.globemed.services.BillingService;
 import com.globemed.models.Bill;
 import com.globemed.models.BillItem;
@@ -72,6 +74,11 @@ public class BillingPanel extends JPanel {
     private JLabel selectedAppointmentLabel;
     private Long selectedAppointmentId;
 
+    // Keyset paging for the bills table
+    private static final int PAGE_SIZE = 200;
+    private JButton loadMoreBillsButton;
+    private PageCursor nextBillsCursor;
+
     // Claim processing components
     private JComboBox<String> claimTypeCombo;
     private JTextField insuranceProviderField;
@@ -426,11 +433,14 @@ public class BillingPanel extends JPanel {
         JButton updateStatusButton = createStyledButton("Update Status", WARNING_AMBER);
         JButton deleteBillButton = createStyledButton("Delete", ERROR_RED);
         JButton refreshButton = createStyledButton("Refresh", Color.GRAY);
+        loadMoreBillsButton = createStyledButton("Load More", Color.GRAY);
+        loadMoreBillsButton.setEnabled(false);
 
         billsActionPanel.add(viewBillButton);
         billsActionPanel.add(updateStatusButton);
         billsActionPanel.add(deleteBillButton);
         billsActionPanel.add(refreshButton);
+        billsActionPanel.add(loadMoreBillsButton);
         
         billsTablePanel.add(billsActionPanel, BorderLayout.SOUTH);
 
@@ -461,6 +471,7 @@ public class BillingPanel extends JPanel {
         updateStatusButton.addActionListener(e -> updateBillStatus());
         deleteBillButton.addActionListener(e -> deleteBill());
         refreshButton.addActionListener(e -> refreshBillsTable());
+        loadMoreBillsButton.addActionListener(e -> loadMoreBills());
 
         billsTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
@@ -756,25 +767,41 @@ public class BillingPanel extends JPanel {
 
     private void loadBillsData() {
         try {
-            List<Bill> bills = billingService.getAllBills();
+            Page<Bill> page = billingService.getBillPage(null, PAGE_SIZE);
             billsModel.setRowCount(0);
+            appendBillsPage(page);
+        } catch (SQLException e) {
+            showErrorDialog("Error loading bills: " + e.getMessage());
+        }
+    }
 
-            for (Bill bill : bills) {
-                Object[] row = {
-                    bill.getId(),
-                    bill.getAppointmentId(),
-                    "$" + bill.getTotalAmount().toString(),
-                    bill.getClaimStatus(),
-                    bill.getInsuranceDetails() != null ? bill.getInsuranceDetails() : "Direct Pay",
-                    "N/A"
-                };
-                billsModel.addRow(row);
-            }
+    private void loadMoreBills() {
+        if (nextBillsCursor == null) {
+            return;
+        }
+        try {
+            appendBillsPage(billingService.getBillPage(nextBillsCursor, PAGE_SIZE));
         } catch (SQLException e) {
             showErrorDialog("Error loading bills: " + e.getMessage());
         }
     }
 
+    private void appendBillsPage(Page<Bill> page) {
+        for (Bill bill : page.getItems()) {
+            Object[] row = {
+                bill.getId(),
+                bill.getAppointmentId(),
+                "$" + bill.getTotalAmount().toString(),
+                bill.getClaimStatus(),
+                bill.getInsuranceDetails() != null ? bill.getInsuranceDetails() : "Direct Pay",
+                "N/A"
+            };
+            billsModel.addRow(row);
+        }
+        nextBillsCursor = page.getNextCursor();
+        loadMoreBillsButton.setEnabled(page.hasMore());
+    }
+
     private void loadBillItemsForSelectedBill() {
         int selectedRow = billsTable.getSelectedRow();
         if (selectedRow >= 0) {
@@ -1316,7 +1343,9 @@ public class BillingPanel extends JPanel {
     private void updateTotalRevenue() {
         try {
             BigDecimal totalRevenue = billingService.calculateTotalRevenue();
-            totalRevenueLabel.setText("💰 Total Revenue (Paid Bills): $" + totalRevenue.toString());
+            long pendingBills = billingService.getBillCountsByStatus(null, null).getOrDefault("PENDING", 0L);
+            totalRevenueLabel.setText("💰 Total Revenue (Paid Bills): $" + totalRevenue.toString()
+                    + "   |   Pending bills: " + pendingBills);
         } catch (SQLException e) {
             totalRevenueLabel.setText("💰 Total Revenue: Error calculating");
         }
@@ -1355,7 +1384,7 @@ public class BillingPanel extends JPanel {
                 com.globemed.models.Appointment appointment = appointmentDAO.getAppointmentById(appointmentId);
                 
                 if (appointment != null) {
-                    com.globemed.models.Patient patient = patientDAO.getPatientById(appointment.getPatientId());
+                    com.globemed.models.Patient patient = patientDAO.getCachedPatientById(appointment.getPatientId());
                     String patientName = patient != null ? patient.getName() : "Unknown Patient";
                     
                     Object[] row = {
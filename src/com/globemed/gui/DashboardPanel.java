@@ -14,11 +14,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Enhanced Dashboard panel with modern medical UI design
@@ -550,7 +552,10 @@ public class DashboardPanel extends JPanel {
                     // Load all data
                     List<Patient> patients = patientDAO.getAllPatients();
                     List<Appointment> allAppointments = appointmentDAO.getAllAppointments();
-                    List<Bill> bills = billDAO.getAllBills();
+                    // Bill figures are aggregated in SQL; only the latest few bills are fetched
+                    Map<String, Long> billCounts = billDAO.countByStatus(null, null);
+                    Map<String, BigDecimal> billTotals = billDAO.sumTotalsByStatus(null, null);
+                    List<Bill> recentBills = billDAO.fetchPage(null, 5, SortDirection.DESCENDING).getItems();
                     List<Staff> staff = staffDAO.getAllStaff();
 
                     // Update UI on EDT
@@ -562,15 +567,13 @@ public class DashboardPanel extends JPanel {
                                 .count();
                         todayAppointmentsLabel.setText(String.valueOf(todayAppointments));
 
-                        long pendingBills = bills.stream()
-                                .filter(bill -> "PENDING".equals(bill.getClaimStatus()))
-                                .count();
+                        long pendingBills = billCounts.getOrDefault("PENDING", 0L);
                         pendingBillsLabel.setText(String.valueOf(pendingBills));
 
                         totalStaffLabel.setText(String.valueOf(staff.size()));
 
                         // Update activity with enhanced formatting
-                        updateEnhancedActivity(patients, allAppointments, bills, staff);
+                        updateEnhancedActivity(patients, allAppointments, billCounts, billTotals, recentBills, staff);
                     });
 
                     publish("Dashboard updated successfully");
@@ -604,7 +607,8 @@ public class DashboardPanel extends JPanel {
     }
 
     private void updateEnhancedActivity(List<Patient> patients, List<Appointment> appointments,
-            List<Bill> bills, List<Staff> staff) {
+            Map<String, Long> billCounts, Map<String, BigDecimal> billTotals,
+            List<Bill> recentBills, List<Staff> staff) {
         StringBuilder activity = new StringBuilder();
 
         // Modern header
@@ -622,7 +626,7 @@ public class DashboardPanel extends JPanel {
         activity.append(String.format("• Appointments scheduled: %d\n", todayAppointments));
         activity.append(String.format("• Total active patients: %d\n", patients.size()));
         activity.append(String.format("• Bills pending review: %d\n",
-                bills.stream().filter(b -> "PENDING".equals(b.getClaimStatus())).count()));
+                billCounts.getOrDefault("PENDING", 0L)));
 
         activity.append("\n📋 RECENT PATIENTS\n");
         activity.append("─────────────────────────────────────\n");
@@ -647,10 +651,9 @@ public class DashboardPanel extends JPanel {
 
         activity.append("\n💰 BILLING STATUS\n");
         activity.append("─────────────────────────────────────\n");
-        bills.stream()
-                .sorted((b1, b2) -> Long.compare(b2.getId(), b1.getId()))
-                .limit(5)
-                .forEach(bill -> activity.append(String.format("• Bill #%d: $%.2f (%s)\n",
+        billCounts.forEach((status, count) -> activity.append(String.format("• %s: %d bills, $%.2f\n",
+                status, count, billTotals.getOrDefault(status, BigDecimal.ZERO))));
+        recentBills.forEach(bill -> activity.append(String.format("• Bill #%d: $%.2f (%s)\n",
                 bill.getId(), bill.getTotalAmount(), bill.getClaimStatus())));
 
         activity.append("\n🏥 SYSTEM HEALTH\n");
@@ -6,7 +6,7 @@ package com.globemed.gui;
 
 import com.globemed.database.StaffDAO;
 import com.globemed.models.Staff;
-import com.globemed.utils.SecurityUtils;
+import com.globemed.utils.PasswordHasher;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
@@ -401,10 +401,16 @@ public class LoginPanel extends JPanel {
         Staff staff = staffDAO.getStaffByUsername(username);
 
         if (staff != null) {
-            // In a real system, passwords would be hashed
-            // For demo purposes, we'll check plain text or basic encoding
-            if (staff.getPassword().equals(password)
-                    || staff.getPassword().equals(SecurityUtils.encrypt(password))) {
+            // The DB connection is already released; hashing runs on the
+            // bounded hasher pool
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (hasher.verify(password, staff.getPassword())) {
+                // Upgrade clear-text, encrypted or weaker hashes while the
+                // password is at hand
+                String rehashed = hasher.rehashIfNeeded(password, staff.getPassword());
+                if (rehashed != null && staffDAO.updatePassword(staff.getId(), rehashed)) {
+                    staff.setPassword(rehashed);
+                }
                 return staff;
             }
         }
@@ -1,5 +1,7 @@
 package com.globemed.gui;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
 import com.globemed.models.Patient;
 import com.globemed.services.SecurePatientService;
 import javax.swing.*;
@@ -17,7 +19,11 @@ import java.awt.event.MouseEvent;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Enhanced Patient Management Panel with modern medical UI design
@@ -53,13 +59,25 @@ public class PatientManagementPanel extends JPanel {
     private DefaultTableModel tableModel;
     private TableRowSorter<DefaultTableModel> sorter;
     private JTextField searchField;
-    private JButton addButton, editButton, deleteButton, viewButton, refreshButton;
+    private JButton addButton, editButton, deleteButton, viewButton, refreshButton, loadMoreButton;
     private JPanel formPanel;
     private JTextField nameField, dobField, addressField, phoneField;
     private JTextArea medicalHistoryArea;
     private boolean isEditing = false;
     private Long editingPatientId = null;
 
+    // Keyset paging: rows are fetched PAGE_SIZE at a time, "Load More" continues from the cursor
+    private static final int PAGE_SIZE = 200;
+    private PageCursor nextPageCursor;
+
+    // Searches run against the server-side index once typing pauses
+    private static final int SEARCH_LIMIT = 200;
+    private static final int SEARCH_DELAY_MS = 250;
+    private static final int FUZZY_THRESHOLD = 10; // Fewer exact matches than this adds similar names
+    private Timer searchTimer;
+    private int searchGeneration; // Results of older searches are dropped
+    private boolean showingSearchResults = false;
+
     // Table columns
     private final String[] columnNames = {"ID", "Patient Name", "Date of Birth", "Phone", "Address"};
 
@@ -95,6 +113,8 @@ public class PatientManagementPanel extends JPanel {
 
         // Enhanced search field
         searchField = createStyledTextField(25, "Search patients by name, phone, or address...");
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> runSearch());
+        searchTimer.setRepeats(false);
 
         // Enhanced buttons
         addButton = createStyledButton("➕ Add Patient", ACCENT_GREEN);
@@ -102,6 +122,8 @@ public class PatientManagementPanel extends JPanel {
         deleteButton = createStyledButton("🗑️ Delete Patient", ERROR_RED);
         viewButton = createStyledButton("👁️ View Details", INFO_BLUE);
         refreshButton = createStyledButton("🔄 Refresh", Color.GRAY);
+        loadMoreButton = createStyledButton("⬇️ Load More", INFO_BLUE);
+        loadMoreButton.setEnabled(false);
 
         // Initially disable edit/delete buttons
         editButton.setEnabled(false);
@@ -387,6 +409,7 @@ public class PatientManagementPanel extends JPanel {
         tableButtonPanel.add(deleteButton);
         tableButtonPanel.add(Box.createHorizontalStrut(16)); // Spacer
         tableButtonPanel.add(refreshButton);
+        tableButtonPanel.add(loadMoreButton);
 
         tablePanel.add(tableButtonPanel, BorderLayout.SOUTH);
 
@@ -471,6 +494,7 @@ public class PatientManagementPanel extends JPanel {
         deleteButton.addActionListener(e -> deletePatient());
         viewButton.addActionListener(e -> viewPatientDetails());
         refreshButton.addActionListener(e -> refreshData());
+        loadMoreButton.addActionListener(e -> loadMorePatients());
     }
 
     private void showTableContextMenu(MouseEvent e) {
@@ -504,12 +528,76 @@ public class PatientManagementPanel extends JPanel {
     }
 
     private void filterTable() {
+        searchTimer.restart();
+    }
+
+    private void runSearch() {
         String text = searchField.getText().trim();
+        int generation = ++searchGeneration;
         if (text.equals("Search patients by name, phone, or address...") || text.length() == 0) {
             sorter.setRowFilter(null);
-        } else {
-            sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
+            if (showingSearchResults) {
+                showingSearchResults = false;
+                refreshData();
+            }
+            return;
         }
+
+        if (securePatientService == null || !securePatientService.isSearchReady()) {
+            // Index still building: filter the rows already loaded
+            sorter.setRowFilter(RowFilter.regexFilter("(?i)" + Pattern.quote(text)));
+            return;
+        }
+
+        SwingWorker<List<Patient>, Void> worker = new SwingWorker<List<Patient>, Void>() {
+            private int exactMatches;
+
+            @Override
+            protected List<Patient> doInBackground() throws Exception {
+                List<Patient> patients = new ArrayList<>(securePatientService.searchPatients(text, SEARCH_LIMIT));
+                exactMatches = patients.size();
+                if (exactMatches < FUZZY_THRESHOLD) {
+                    // Likely a misspelling: follow with names that look or sound alike
+                    Set<Long> shown = new HashSet<>();
+                    for (Patient patient : patients) {
+                        shown.add(patient.getId());
+                    }
+                    for (Patient similar : securePatientService.findSimilarPatients(text, SEARCH_LIMIT)) {
+                        if (patients.size() < SEARCH_LIMIT && shown.add(similar.getId())) {
+                            patients.add(similar);
+                        }
+                    }
+                }
+                return patients;
+            }
+
+            @Override
+            protected void done() {
+                if (generation != searchGeneration) {
+                    return;
+                }
+                try {
+                    List<Patient> patients = get();
+                    sorter.setRowFilter(null);
+                    tableModel.setRowCount(0);
+                    appendTableData(patients);
+                    showingSearchResults = true;
+                    nextPageCursor = null;
+                    loadMoreButton.setEnabled(false);
+                    int similar = patients.size() - exactMatches;
+                    parentFrame.setStatus("🔍 " + exactMatches + " patients match \"" + text + "\""
+                            + (similar > 0 ? ", " + similar + " with similar names" : "")
+                            + (exactMatches == SEARCH_LIMIT ? " (showing best " + SEARCH_LIMIT + ")" : ""));
+                } catch (Exception e) {
+                    String errorMsg = e.getCause() instanceof SecurityException
+                            ? "🔒 Access denied: " + e.getCause().getMessage()
+                            : "❌ Error searching patients: " + e.getMessage();
+                    parentFrame.setStatus(errorMsg);
+                }
+            }
+        };
+
+        worker.execute();
     }
 
     public void refreshData() {
@@ -522,19 +610,24 @@ public class PatientManagementPanel extends JPanel {
         // Show loading indicator
         JDialog loadingDialog = createLoadingDialog("Loading patient data...");
         
-        SwingWorker<List<Patient>, Void> worker = new SwingWorker<List<Patient>, Void>() {
+        SwingWorker<Page<Patient>, Void> worker = new SwingWorker<Page<Patient>, Void>() {
             @Override
-            protected List<Patient> doInBackground() throws Exception {
-                return securePatientService.getAllPatients();
+            protected Page<Patient> doInBackground() throws Exception {
+                return securePatientService.getPatientPage(null, PAGE_SIZE);
             }
 
             @Override
             protected void done() {
                 loadingDialog.dispose();
                 try {
-                    List<Patient> patients = get();
-                    updateTableData(patients);
-                    parentFrame.setStatus("✅ Patient data refreshed - " + patients.size() + " patients loaded");
+                    Page<Patient> page = get();
+                    tableModel.setRowCount(0);
+                    appendPage(page);
+                    parentFrame.setStatus("✅ Patient data refreshed - " + page.size() + " patients loaded"
+                            + (page.hasMore() ? " (more available)" : ""));
+                    // Re-run any search in the field against the fresh data
+                    showingSearchResults = false;
+                    filterTable();
                 } catch (Exception e) {
                     String errorMsg = e.getCause() instanceof SecurityException
                             ? "🔒 Access denied: " + e.getCause().getMessage()
@@ -550,6 +643,42 @@ public class PatientManagementPanel extends JPanel {
         loadingDialog.setVisible(true);
     }
 
+    private void loadMorePatients() {
+        if (securePatientService == null || nextPageCursor == null) {
+            return;
+        }
+
+        PageCursor cursor = nextPageCursor;
+        loadMoreButton.setEnabled(false);
+
+        SwingWorker<Page<Patient>, Void> worker = new SwingWorker<Page<Patient>, Void>() {
+            @Override
+            protected Page<Patient> doInBackground() throws Exception {
+                return securePatientService.getPatientPage(cursor, PAGE_SIZE);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    appendPage(get());
+                    parentFrame.setStatus("✅ " + tableModel.getRowCount() + " patients loaded"
+                            + (nextPageCursor != null ? " (more available)" : ""));
+                } catch (Exception e) {
+                    loadMoreButton.setEnabled(true);
+                    showErrorDialog("❌ Error loading patients: " + e.getMessage());
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    private void appendPage(Page<Patient> page) {
+        appendTableData(page.getItems());
+        nextPageCursor = page.getNextCursor();
+        loadMoreButton.setEnabled(page.hasMore());
+    }
+
     private JDialog createLoadingDialog(String message) {
         JDialog dialog = new JDialog(parentFrame, "Loading", true);
         dialog.setSize(300, 120);
@@ -577,8 +706,7 @@ public class PatientManagementPanel extends JPanel {
         return dialog;
     }
 
-    private void updateTableData(List<Patient> patients) {
-        tableModel.setRowCount(0);
+    private void appendTableData(List<Patient> patients) {
         for (Patient patient : patients) {
             Object[] row = {
                 patient.getId(),
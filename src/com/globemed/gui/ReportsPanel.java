@@ -65,6 +65,11 @@ public class ReportsPanel extends JPanel {
     private JButton generateDiagnosticBtn;
     private JButton deleteReportBtn;
     private JButton refreshBtn;
+    private JButton loadMoreBtn;
+
+    // Keyset paging: the unfiltered list is fetched PAGE_SIZE reports at a time, newest first
+    private static final int PAGE_SIZE = 200;
+    private PageCursor nextPageCursor;
 
     private final String[] reportTypes = {"All", "TREATMENT_SUMMARY", "FINANCIAL", "DIAGNOSTIC_RESULTS"};
 
@@ -165,6 +170,8 @@ public class ReportsPanel extends JPanel {
         generateDiagnosticBtn = createStyledButton("🔬 Diagnostic Report", new Color(156, 39, 176), "diagnostic");
         deleteReportBtn = createStyledButton("🗑️ Delete Report", ERROR_COLOR, "delete");
         refreshBtn = createStyledButton("🔄 Refresh", new Color(96, 125, 139), "refresh");
+        loadMoreBtn = createStyledButton("⬇️ Load More", new Color(96, 125, 139), "");
+        loadMoreBtn.setEnabled(false);
     }
 
     private JButton createStyledButton(String text, Color bgColor, String type) {
@@ -323,6 +330,7 @@ public class ReportsPanel extends JPanel {
         buttonPanel.add(generateFinancialBtn);
         buttonPanel.add(generateDiagnosticBtn);
         buttonPanel.add(deleteReportBtn);
+        buttonPanel.add(loadMoreBtn);
 
         controlCard.add(buttonPanel, gbc);
 
@@ -476,6 +484,7 @@ public class ReportsPanel extends JPanel {
         generateDiagnosticBtn.addActionListener(e -> generateDiagnosticReport());
         deleteReportBtn.addActionListener(e -> deleteSelectedReport());
         refreshBtn.addActionListener(e -> loadData());
+        loadMoreBtn.addActionListener(e -> loadReportPage(nextPageCursor));
     }
 
     private void loadData() {
@@ -522,18 +531,32 @@ public class ReportsPanel extends JPanel {
     }
 
     private void loadReports() {
-        SwingWorker<List<Report>, Void> worker = new SwingWorker<List<Report>, Void>() {
+        loadReportPage(null);
+    }
+
+    // A null cursor reloads the table from the first page
+    private void loadReportPage(PageCursor cursor) {
+        loadMoreBtn.setEnabled(false);
+
+        SwingWorker<Page<ReportSummary>, Void> worker = new SwingWorker<Page<ReportSummary>, Void>() {
             @Override
-            protected List<Report> doInBackground() throws Exception {
-                return reportService.getAllReports();
+            protected Page<ReportSummary> doInBackground() throws Exception {
+                return reportService.getReportSummaryPage(cursor, PAGE_SIZE);
             }
 
             @Override
             protected void done() {
                 try {
-                    List<Report> reports = get();
-                    updateTableModel(reports);
+                    Page<ReportSummary> page = get();
+                    if (cursor == null) {
+                        updateTableModel(page.getItems());
+                    } else {
+                        appendToTableModel(page.getItems());
+                    }
+                    nextPageCursor = page.getNextCursor();
+                    loadMoreBtn.setEnabled(page.hasMore());
                 } catch (Exception e) {
+                    loadMoreBtn.setEnabled(nextPageCursor != null);
                     showErrorDialog("Error loading reports: " + e.getMessage());
                 }
             }
@@ -541,60 +564,48 @@ public class ReportsPanel extends JPanel {
         worker.execute();
     }
 
-    private void updateTableModel(List<Report> reports) {
+    private void updateTableModel(List<ReportSummary> reports) {
         tableModel.setRowCount(0);
-
-        SwingWorker<Void, Void> dataLoader = new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() throws Exception {
-                for (Report report : reports) {
-                    String patientName = "Unknown";
-                    if (report.getPatientId() != null) {
-                        try {
-                            Patient patient = patientDAO.getPatientById(report.getPatientId());
-                            if (patient != null) {
-                                patientName = patient.getName();
-                            }
-                        } catch (SQLException e) {
-                            // Handle silently
-                        }
-                    }
-
-                    Object[] row = {
-                        report.getId(),
-                        report.getType(),
-                        report.getTitle(),
-                        patientName,
-                        report.getGeneratedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-                        report.getSummary() != null ? (report.getSummary().length() > 50
-                        ? report.getSummary().substring(0, 50) + "..." : report.getSummary()) : ""
-                    };
-
-                    SwingUtilities.invokeLater(() -> tableModel.addRow(row));
-                }
-                return null;
-            }
-        };
-        dataLoader.execute();
+        appendToTableModel(reports);
+    }
+
+    // Patient names come joined in from the listing query
+    private void appendToTableModel(List<ReportSummary> reports) {
+        for (ReportSummary report : reports) {
+            Object[] row = {
+                report.getId(),
+                report.getType(),
+                report.getTitle(),
+                report.getPatientName() != null ? report.getPatientName() : "Unknown",
+                report.getGeneratedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
+                report.getSummary() != null ? (report.getSummary().length() > 50
+                ? report.getSummary().substring(0, 50) + "..." : report.getSummary()) : ""
+            };
+            tableModel.addRow(row);
+        }
     }
 
     private void filterReports() {
         String selectedType = (String) reportTypeFilter.getSelectedItem();
+        if ("All".equals(selectedType)) {
+            loadReports();
+            return;
+        }
+
+        // Filtered results come back as one list, so paging is off until the filter is cleared
+        nextPageCursor = null;
+        loadMoreBtn.setEnabled(false);
 
-        SwingWorker<List<Report>, Void> worker = new SwingWorker<List<Report>, Void>() {
+        SwingWorker<List<ReportSummary>, Void> worker = new SwingWorker<List<ReportSummary>, Void>() {
             @Override
-            protected List<Report> doInBackground() throws Exception {
-                if ("All".equals(selectedType)) {
-                    return reportService.getAllReports();
-                } else {
-                    return reportService.getReportsByType(selectedType);
-                }
+            protected List<ReportSummary> doInBackground() throws Exception {
+                return reportService.getReportSummariesByType(selectedType);
             }
 
             @Override
             protected void done() {
                 try {
-                    List<Report> reports = get();
+                    List<ReportSummary> reports = get();
                     updateTableModel(reports);
                 } catch (Exception e) {
                     showErrorDialog("Error filtering reports: " + e.getMessage());
@@ -612,11 +623,8 @@ public class ReportsPanel extends JPanel {
             SwingWorker<Report, Void> worker = new SwingWorker<Report, Void>() {
                 @Override
                 protected Report doInBackground() throws Exception {
-                    List<Report> allReports = reportService.getAllReports();
-                    return allReports.stream()
-                            .filter(r -> r.getId().equals(reportId))
-                            .findFirst()
-                            .orElse(null);
+                    // Content is only fetched for the report being shown
+                    return reportService.getReportById(reportId);
                 }
 
                 @Override
@@ -4,12 +4,15 @@
  */
 package com.globemed.gui;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.database.StaffDAO;
 import com.globemed.models.Staff;
 import com.globemed.patterns.decorator.SecureService;
 import com.globemed.services.RoleManagementService;
 import com.globemed.services.IntegratedSecurityService;
-import com.globemed.utils.SecurityUtils;
+import com.globemed.utils.PasswordHasher;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
@@ -36,9 +39,14 @@ public class StaffManagementPanel extends JPanel {
     private DefaultTableModel tableModel;
     private JTextField nameField, usernameField, passwordField, emailField;
     private JComboBox<String> roleComboBox;
-    private JButton addButton, editButton, deleteButton, refreshButton;
+    private JButton addButton, editButton, deleteButton, refreshButton, loadMoreButton;
     private boolean isEditing = false;
     private Long editingStaffId = null;
+    private String editingStaffPassword = null; // Stored hash, kept when the password field is left blank
+
+    // Keyset paging: staff are fetched PAGE_SIZE at a time in name order
+    private static final int PAGE_SIZE = 200;
+    private PageCursor nextPageCursor;
 
     // Table columns
     private final String[] columnNames = {"ID", "Name", "Role", "Username", "Email"};
@@ -81,6 +89,8 @@ public class StaffManagementPanel extends JPanel {
         editButton = new JButton("Edit Staff");
         deleteButton = new JButton("Delete Staff");
         refreshButton = new JButton("Refresh");
+        loadMoreButton = new JButton("Load More");
+        loadMoreButton.setEnabled(false);
 
         editButton.setEnabled(false);
         deleteButton.setEnabled(false);
@@ -106,7 +116,10 @@ public class StaffManagementPanel extends JPanel {
         JLabel titleLabel = new JLabel("Staff Management");
         titleLabel.setFont(new Font("Arial", Font.BOLD, 24));
         headerPanel.add(titleLabel, BorderLayout.WEST);
-        headerPanel.add(refreshButton, BorderLayout.EAST);
+        JPanel headerButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        headerButtons.add(loadMoreButton);
+        headerButtons.add(refreshButton);
+        headerPanel.add(headerButtons, BorderLayout.EAST);
 
         add(headerPanel, BorderLayout.NORTH);
 
@@ -186,6 +199,7 @@ public class StaffManagementPanel extends JPanel {
         editButton.addActionListener(e -> saveStaff(true));
         deleteButton.addActionListener(e -> deleteStaff());
         refreshButton.addActionListener(e -> refreshData());
+        loadMoreButton.addActionListener(e -> loadStaffPage(nextPageCursor));
     }
 
     private void loadSelectedStaff() {
@@ -212,7 +226,8 @@ public class StaffManagementPanel extends JPanel {
                         editingStaffId = staff.getId();
                         nameField.setText(staff.getName());
                         usernameField.setText(staff.getUsername());
-                        passwordField.setText(staff.getPassword());
+                        editingStaffPassword = staff.getPassword();
+                        passwordField.setText(""); // Blank keeps the current password
                         emailField.setText(staff.getEmail());
                         roleComboBox.setSelectedItem(roleService.getRoleById(staff.getRoleId()).getRoleName());
                     }
@@ -234,7 +249,8 @@ public class StaffManagementPanel extends JPanel {
             String email = emailField.getText().trim();
             String roleName = (String) roleComboBox.getSelectedItem();
 
-            if (name.isEmpty() || username.isEmpty() || password.isEmpty() || email.isEmpty() || roleName.equals("Select Role")) {
+            if (name.isEmpty() || username.isEmpty() || (password.isEmpty() && !isUpdate)
+                    || email.isEmpty() || roleName.equals("Select Role")) {
                 JOptionPane.showMessageDialog(this, "All fields are required!", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
@@ -242,12 +258,12 @@ public class StaffManagementPanel extends JPanel {
             Staff staff = new Staff();
             staff.setName(name);
             staff.setUsername(username);
-            staff.setPassword(SecurityUtils.encrypt(password)); // Encrypt password
             staff.setEmail(email);
             staff.setRoleId(getRoleIdByName(roleName));
             if (isUpdate) {
                 staff.setId(editingStaffId);
             }
+            String keptPassword = editingStaffPassword;
 
             Staff secureStaff = parentFrame.getCurrentUser();
             Set<String> permissions = roleService.getStaffPermissions(secureStaff);
@@ -258,6 +274,9 @@ public class StaffManagementPanel extends JPanel {
                 @Override
                 protected Boolean doInBackground() throws Exception {
                     secureService.execute(staff);
+                    // Hashing is deliberately slow, so it stays off the EDT
+                    staff.setPassword(isUpdate && password.isEmpty() ? keptPassword
+                            : PasswordHasher.getInstance().hash(password));
                     return isUpdate ? staffDAO.updateStaff(staff) : staffDAO.insertStaff(staff) != null;
                 }
 
@@ -347,18 +366,27 @@ public class StaffManagementPanel extends JPanel {
     }
 
     public void refreshData() {
-        SwingWorker<List<Staff>, Void> worker = new SwingWorker<List<Staff>, Void>() {
+        loadStaffPage(null);
+    }
+
+    // A null cursor reloads the table from the first page
+    private void loadStaffPage(PageCursor cursor) {
+        loadMoreButton.setEnabled(false);
+
+        SwingWorker<Page<Staff>, Void> worker = new SwingWorker<Page<Staff>, Void>() {
             @Override
-            protected List<Staff> doInBackground() throws Exception {
-                return staffDAO.getAllStaff();
+            protected Page<Staff> doInBackground() throws Exception {
+                return staffDAO.fetchPage(cursor, PAGE_SIZE, SortDirection.ASCENDING);
             }
 
             @Override
             protected void done() {
                 try {
-                    List<Staff> staffList = get();
-                    tableModel.setRowCount(0);
-                    for (Staff staff : staffList) {
+                    Page<Staff> page = get();
+                    if (cursor == null) {
+                        tableModel.setRowCount(0);
+                    }
+                    for (Staff staff : page.getItems()) {
                         String roleName = roleService.getRoleById(staff.getRoleId()).getRoleName();
                         tableModel.addRow(new Object[]{
                             staff.getId(),
@@ -368,8 +396,13 @@ public class StaffManagementPanel extends JPanel {
                             staff.getEmail()
                         });
                     }
-                    parentFrame.setStatus("Staff list refreshed successfully");
+                    nextPageCursor = page.getNextCursor();
+                    loadMoreButton.setEnabled(page.hasMore());
+                    parentFrame.setStatus(cursor == null
+                            ? "Staff list refreshed successfully"
+                            : "Loaded " + page.size() + " more staff members");
                 } catch (Exception e) {
+                    loadMoreButton.setEnabled(nextPageCursor != null);
                     parentFrame.setStatus("Error refreshing staff list: " + e.getMessage());
                 }
             }
@@ -404,6 +437,7 @@ public class StaffManagementPanel extends JPanel {
         roleComboBox.setSelectedIndex(0);
         isEditing = false;
         editingStaffId = null;
+        editingStaffPassword = null;
         editButton.setEnabled(false);
         deleteButton.setEnabled(false);
     }
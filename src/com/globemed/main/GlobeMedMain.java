@@ -7,9 +7,13 @@ package com.globemed.main;
 //import com.globemed.gui.MainFrame;
 import com.formdev.flatlaf.FlatIntelliJLaf;
 import com.globemed.database.DatabaseConnection;
+import com.globemed.database.PatientDAO;
 import com.globemed.gui.MainFrame;
+import com.globemed.search.PatientSearchIndex;
+import com.globemed.utils.PasswordHasher;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import java.sql.Connection;
 import java.sql.SQLException;
 
 /**
@@ -27,14 +31,32 @@ public class GlobeMedMain {
         }
 
         // Test database connection
-        try {
-            DatabaseConnection.getConnection();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            if (!connection.isValid(5)) {
+                throw new SQLException("Database connection is not valid");
+            }
             System.out.println("Application starting...");
         } catch (SQLException e) {
             System.err.println("Failed to connect to database: " + e.getMessage());
             System.exit(1);
         }
 
+        // Calibrate password hashing before the first login needs it
+        Thread calibration = new Thread(PasswordHasher::getInstance, "globemed-password-calibration");
+        calibration.setDaemon(true);
+        calibration.start();
+
+        // Build the patient search index; searches fall back to the loaded rows until it is ready
+        Thread searchIndex = new Thread(() -> {
+            try {
+                PatientSearchIndex.getInstance().rebuild(new PatientDAO());
+            } catch (SQLException e) {
+                System.err.println("Error building patient search index: " + e.getMessage());
+            }
+        }, "globemed-search-index");
+        searchIndex.setDaemon(true);
+        searchIndex.start();
+
         // Launch GUI
         SwingUtilities.invokeLater(() -> {
             try {
@@ -45,7 +67,7 @@ public class GlobeMedMain {
                 e.printStackTrace();
             }
         });
-        // Shutdown hook to close database connection
+        // Shutdown hook to close the database connection pool
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             DatabaseConnection.closeConnection();
             System.out.println("Application closed.");
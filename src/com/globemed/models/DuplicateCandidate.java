@@ -0,0 +1,97 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * One patient in a cluster of suspected duplicates, awaiting review.
+ *
+ * @author Hansana
+ */
+public class DuplicateCandidate {
+
+    public static final String STATUS_PENDING = "PENDING";
+
+    private Long id;
+    private String runId;
+    private int clusterId;
+    private Long patientId;
+    private double score;
+    private String status = STATUS_PENDING;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public DuplicateCandidate() {
+    }
+
+    public DuplicateCandidate(String runId, int clusterId, Long patientId, double score) {
+        this.runId = runId;
+        this.clusterId = clusterId;
+        this.patientId = patientId;
+        this.score = score;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
+    public int getClusterId() {
+        return clusterId;
+    }
+
+    public void setClusterId(int clusterId) {
+        this.clusterId = clusterId;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(Long patientId) {
+        this.patientId = patientId;
+    }
+
+    /**
+     * Highest match score between this patient and another in the cluster,
+     * from 0 to 1.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -4,54 +4,166 @@
  */
 package com.globemed.patterns.bridge;
 
-import com.globemed.database.DatabaseConnection;
+import com.globemed.database.RoleChangeListener;
 import com.globemed.database.RoleDAO;
 import com.globemed.models.Permission;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Role permissions stored in the database, with a cache that is safe to use
+ * from several SwingWorkers at once.
+ *
+ * Each role maps to an immutable snapshot. A snapshot older than
+ * {@code refreshAfterMillis} is still served but triggers a background
+ * reload (refresh-ahead); one older than {@code expireAfterMillis} is never
+ * served and the caller waits for a fresh load. Concurrent misses for the
+ * same role share one query.
  *
  * @author Hansana
  */
-public class DatabasePermissionImpl implements PermissionImplementor {
+public class DatabasePermissionImpl implements PermissionImplementor, RoleChangeListener {
+
+    public static final long DEFAULT_REFRESH_AFTER_MS = 60 * 1000;
+    public static final long DEFAULT_EXPIRE_AFTER_MS = 5 * 60 * 1000;
+
+    private static final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "globemed-permission-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private RoleDAO roleDAO;
-    private Map<String, Set<String>> permissionCache; // Cache for performance
-    private boolean cacheEnabled;
+    private final Map<String, Snapshot> permissionCache; // Cache for performance
+    private final Map<String, CompletableFuture<Snapshot>> inFlightLoads;
+    // Bumped on every invalidation so a load that started before it is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean cacheEnabled;
+    private volatile long refreshAfterMillis;
+    private volatile long expireAfterMillis;
+
+    // Metrics
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder sharedLoadCount = new LongAdder();
 
     public DatabasePermissionImpl() {
+        this(DEFAULT_REFRESH_AFTER_MS, DEFAULT_EXPIRE_AFTER_MS);
+    }
+
+    public DatabasePermissionImpl(long refreshAfterMillis, long expireAfterMillis) {
         this.roleDAO = new RoleDAO();
-        this.permissionCache = new HashMap<>();
+        this.permissionCache = new ConcurrentHashMap<>();
+        this.inFlightLoads = new ConcurrentHashMap<>();
         this.cacheEnabled = true;
+        setStalenessBounds(refreshAfterMillis, expireAfterMillis);
+        RoleDAO.addRoleChangeListener(this);
         loadPermissions();
     }
 
+    /**
+     * Returns an unmodifiable view; callers that need to change the set must
+     * copy it.
+     */
     @Override
     public Set<String> getPermissionsForRole(String roleName) {
-        if (cacheEnabled && permissionCache.containsKey(roleName)) {
-            return new HashSet<>(permissionCache.get(roleName));
+        if (!cacheEnabled) {
+            try {
+                return queryPermissions(roleName);
+            } catch (SQLException e) {
+                System.err.println("Error retrieving permissions for role " + roleName + ": " + e.getMessage());
+                return Collections.emptySet();
+            }
         }
 
+        Snapshot snapshot = permissionCache.get(roleName);
+        long now = System.currentTimeMillis();
+        if (snapshot != null) {
+            long age = now - snapshot.loadedAt;
+            if (age < expireAfterMillis) {
+                hitCount.increment();
+                if (age >= refreshAfterMillis) {
+                    refreshAhead(roleName);
+                }
+                return snapshot.permissions;
+            }
+        }
+
+        missCount.increment();
         try {
-            List<Permission> permissions = roleDAO.getPermissionsByRoleName(roleName);
-            Set<String> permissionNames = new HashSet<>();
+            return load(roleName).join().permissions;
+        } catch (RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error retrieving permissions for role " + roleName + ": " + cause.getMessage());
+            return Collections.emptySet();
+        }
+    }
 
-            for (Permission permission : permissions) {
-                permissionNames.add(permission.getName());
+    /**
+     * Start a load for the role, or join the one already running.
+     */
+    private CompletableFuture<Snapshot> load(String roleName) {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> running = inFlightLoads.putIfAbsent(roleName, mine);
+        if (running != null) {
+            sharedLoadCount.increment();
+            return running;
+        }
+        runLoad(roleName, mine);
+        return mine;
+    }
+
+    // Caller must have registered mine in inFlightLoads
+    private void runLoad(String roleName, CompletableFuture<Snapshot> mine) {
+        long loadGeneration = generation.get();
+        try {
+            Snapshot snapshot = new Snapshot(queryPermissions(roleName), System.currentTimeMillis());
+            loadCount.increment();
+            if (generation.get() == loadGeneration) {
+                permissionCache.put(roleName, snapshot);
             }
+            mine.complete(snapshot);
+        } catch (SQLException | RuntimeException e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlightLoads.remove(roleName, mine);
+        }
+    }
 
-            // Update cache
-            if (cacheEnabled) {
-                permissionCache.put(roleName, new HashSet<>(permissionNames));
+    // The load is registered here, on the caller's thread, so further stale
+    // hits join it instead of queueing more refreshes
+    private void refreshAhead(String roleName) {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        if (inFlightLoads.putIfAbsent(roleName, mine) != null) {
+            return;
+        }
+        refreshCount.increment();
+        refresher.execute(() -> {
+            runLoad(roleName, mine);
+            if (mine.isCompletedExceptionally()) {
+                // Keep serving the current snapshot until it expires
+                System.err.println("Background refresh failed for role " + roleName);
             }
+        });
+    }
 
-            return permissionNames;
+    private Set<String> queryPermissions(String roleName) throws SQLException {
+        List<Permission> permissions = roleDAO.getPermissionsByRoleName(roleName);
+        Set<String> permissionNames = new HashSet<>();
 
-        } catch (SQLException e) {
-            System.err.println("Error retrieving permissions for role " + roleName + ": " + e.getMessage());
-            return new HashSet<>();
+        for (Permission permission : permissions) {
+            permissionNames.add(permission.getName());
         }
+
+        return Collections.unmodifiableSet(permissionNames);
     }
 
     @Override
@@ -62,13 +174,9 @@ public class DatabasePermissionImpl implements PermissionImplementor {
     @Override
     public void addPermissionToRole(String roleName, String permission) {
         try {
+            // RoleDAO notifies onRolePermissionsChanged, which drops the cached snapshot
             roleDAO.addPermissionToRole(roleName, permission);
 
-            // Update cache
-            if (cacheEnabled) {
-                permissionCache.computeIfAbsent(roleName, k -> new HashSet<>()).add(permission);
-            }
-
             System.out.println("Added permission '" + permission + "' to role '" + roleName + "' in database");
 
         } catch (SQLException e) {
@@ -81,11 +189,6 @@ public class DatabasePermissionImpl implements PermissionImplementor {
         try {
             roleDAO.removePermissionFromRole(roleName, permission);
 
-            // Update cache
-            if (cacheEnabled && permissionCache.containsKey(roleName)) {
-                permissionCache.get(roleName).remove(permission);
-            }
-
             System.out.println("Removed permission '" + permission + "' from role '" + roleName + "' in database");
 
         } catch (SQLException e) {
@@ -93,6 +196,12 @@ public class DatabasePermissionImpl implements PermissionImplementor {
         }
     }
 
+    @Override
+    public void onRolePermissionsChanged(String roleName) {
+        generation.incrementAndGet();
+        permissionCache.remove(roleName);
+    }
+
     @Override
     public List<String> getAllRoles() {
         try {
@@ -134,8 +243,7 @@ public class DatabasePermissionImpl implements PermissionImplementor {
             if (cacheEnabled) {
                 List<String> roles = roleDAO.getAllRoleNames();
                 for (String roleName : roles) {
-                    Set<String> permissions = getPermissionsForRole(roleName);
-                    permissionCache.put(roleName, permissions);
+                    load(roleName);
                 }
                 System.out.println("Loaded " + permissionCache.size() + " roles into permission cache");
             }
@@ -145,6 +253,7 @@ public class DatabasePermissionImpl implements PermissionImplementor {
     }
 
     public void clearCache() {
+        generation.incrementAndGet();
         permissionCache.clear();
         System.out.println("Permission cache cleared");
     }
@@ -155,4 +264,63 @@ public class DatabasePermissionImpl implements PermissionImplementor {
             clearCache();
         }
     }
+
+    /**
+     * @param refreshAfterMillis age after which a snapshot is reloaded in the
+     * background while still being served
+     * @param expireAfterMillis age after which a snapshot is no longer served
+     */
+    public void setStalenessBounds(long refreshAfterMillis, long expireAfterMillis) {
+        if (refreshAfterMillis <= 0 || expireAfterMillis < refreshAfterMillis) {
+            throw new IllegalArgumentException("Expected 0 < refreshAfter <= expireAfter, got "
+                    + refreshAfterMillis + " / " + expireAfterMillis);
+        }
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.expireAfterMillis = expireAfterMillis;
+    }
+
+    public long getRefreshAfterMillis() {
+        return refreshAfterMillis;
+    }
+
+    public long getExpireAfterMillis() {
+        return expireAfterMillis;
+    }
+
+    // Statistics
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void printStatistics() {
+        System.out.println("Database Permission Cache Statistics:");
+        System.out.println("  Cached roles: " + permissionCache.size()
+                + " (refresh after " + refreshAfterMillis + "ms, expire after " + expireAfterMillis + "ms)");
+        System.out.println(String.format("  Hits/misses: %d/%d (%.1f%% hit rate)",
+                getHitCount(), getMissCount(), getHitRate() * 100));
+        System.out.println("  Queries: " + loadCount.sum() + ", shared in-flight loads: " + sharedLoadCount.sum()
+                + ", background refreshes: " + refreshCount.sum());
+    }
+
+    // Immutable once published
+    private static final class Snapshot {
+
+        final Set<String> permissions;
+        final long loadedAt;
+
+        Snapshot(Set<String> permissions, long loadedAt) {
+            this.permissions = permissions;
+            this.loadedAt = loadedAt;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.patterns.chainofresponsibility;
+
+import com.globemed.database.RoleChangeListener;
+import com.globemed.database.RoleDAO;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the outcome of role checks per (role id, action) so that
+ * {@link RoleCheckHandler} does not query the roles and permissions tables
+ * for every record a user looks at.
+ *
+ * Entries expire after a TTL and are dropped as soon as {@link RoleDAO}
+ * reports a permission change for the role.
+ *
+ * @author Hansana
+ */
+public class AccessDecisionCache implements RoleChangeListener {
+
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private static AccessDecisionCache instance;
+
+    private final Map<String, Decision> decisions;
+    // Bumped on every invalidation; a decision loaded under an older
+    // generation may be stale and is not stored.
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long ttlMillis;
+
+    // Metrics
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    private AccessDecisionCache(long ttlMillis) {
+        this.decisions = new ConcurrentHashMap<>();
+        this.ttlMillis = ttlMillis;
+        RoleDAO.addRoleChangeListener(this);
+    }
+
+    public static synchronized AccessDecisionCache getInstance() {
+        if (instance == null) {
+            instance = new AccessDecisionCache(DEFAULT_TTL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Cached decision, or null if there is none or it has expired.
+     */
+    Decision get(Long roleId, String action) {
+        String key = key(roleId, action);
+        Decision decision = decisions.get(key);
+        if (decision == null) {
+            missCount.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() >= decision.expiresAt) {
+            decisions.remove(key, decision);
+            expiredCount.increment();
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return decision;
+    }
+
+    /**
+     * Generation to pass to {@link #put}; read it before loading the
+     * decision from the database.
+     */
+    long currentGeneration() {
+        return generation.get();
+    }
+
+    void put(Long roleId, String action, String roleName, boolean granted, long loadedGeneration) {
+        Decision decision = new Decision(roleName, granted, System.currentTimeMillis() + ttlMillis);
+        String key = key(roleId, action);
+        decisions.put(key, decision);
+        if (generation.get() != loadedGeneration) {
+            // Invalidated while we were loading; don't keep the old answer
+            decisions.remove(key, decision);
+        }
+    }
+
+    @Override
+    public void onRolePermissionsChanged(String roleName) {
+        invalidateRole(roleName);
+    }
+
+    public void invalidateRole(String roleName) {
+        generation.incrementAndGet();
+        invalidationCount.increment();
+        Iterator<Decision> iterator = decisions.values().iterator();
+        while (iterator.hasNext()) {
+            Decision decision = iterator.next();
+            // Unknown-role entries are dropped too, the role may just have been created
+            if (decision.roleName == null || decision.roleName.equals(roleName)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidationCount.increment();
+        decisions.clear();
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private static String key(Long roleId, String action) {
+        return roleId + ":" + action.toUpperCase();
+    }
+
+    // Statistics
+    public int size() {
+        return decisions.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public void printStatistics() {
+        System.out.println("Access Decision Cache Statistics:");
+        System.out.println("  Cached decisions: " + size() + " (TTL " + ttlMillis + "ms)");
+        System.out.println(String.format("  Hits/misses: %d/%d (%.1f%% hit rate)",
+                getHitCount(), getMissCount(), getHitRate() * 100));
+        System.out.println("  Expired: " + getExpiredCount() + ", invalidations: " + getInvalidationCount());
+    }
+
+    static final class Decision {
+
+        final String roleName; // null when the role id did not exist
+        final boolean granted;
+        final long expiresAt;
+
+        Decision(String roleName, boolean granted, long expiresAt) {
+            this.roleName = roleName;
+            this.granted = granted;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
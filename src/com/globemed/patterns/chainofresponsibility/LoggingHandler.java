@@ -4,8 +4,7 @@
  */
 package com.globemed.patterns.chainofresponsibility;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import com.globemed.audit.AuditLog;
 
 /**
  *
@@ -15,19 +14,14 @@ public class LoggingHandler extends AccessHandler {
 
     @Override
     public AccessResult handle(AccessRequest request) {
-        // Log the access attempt
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        String logEntry = String.format("[%s] User: %s, Action: %s, PatientID: %d, IP: %s",
-                timestamp,
+        // Log the access attempt to the audit trail
+        AuditLog.getInstance().record("ACCESS_CHAIN",
                 request.getStaff().getUsername(),
                 request.getAction(),
                 request.getPatientId(),
-                request.getClientIP());
+                request.getPatientId() != null ? "Patient ID: " + request.getPatientId() : null,
+                "IP: " + request.getClientIP());
 
-        System.out.println("ACCESS LOG: " + logEntry);
-
-        // Could write to database or file here
-        // For now, just pass to next or return success
         return passToNext(request);
     }
 }
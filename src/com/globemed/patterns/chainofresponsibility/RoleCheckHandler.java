@@ -8,8 +8,6 @@ import com.globemed.database.RoleDAO;
 import com.globemed.models.Role;
 import com.globemed.models.Permission;
 import java.sql.SQLException;
-import java.util.Arrays;
-import java.util.List;
 
 /**
  *
@@ -18,42 +16,63 @@ import java.util.List;
 public class RoleCheckHandler extends AccessHandler {
 
     private RoleDAO roleDAO;
+    private AccessDecisionCache decisionCache;
 
     public RoleCheckHandler() {
         this.roleDAO = new RoleDAO();
+        this.decisionCache = AccessDecisionCache.getInstance();
     }
 
     @Override
     public AccessResult handle(AccessRequest request) {
-        try {
-            Role userRole = roleDAO.getRoleById(request.getStaff().getRoleId());
-            if (userRole == null) {
-                return new AccessResult(false, "Role check failed: Invalid role",
-                        "ROLE_FAIL: Invalid role for user " + request.getStaff().getUsername());
+        Long roleId = request.getStaff().getRoleId();
+        String requiredPermission = getRequiredPermission(request.getAction());
+
+        AccessDecisionCache.Decision decision = decisionCache.get(roleId, request.getAction());
+        if (decision == null) {
+            try {
+                decision = loadDecision(roleId, request.getAction(), requiredPermission);
+            } catch (SQLException e) {
+                return new AccessResult(false, "Role check failed: Database error",
+                        "DB_ERROR: " + e.getMessage());
             }
+        }
 
-            // Get permissions for the role
-            List<Permission> permissions = roleDAO.getPermissionsForRole(userRole.getId());
+        if (decision.roleName == null) {
+            return new AccessResult(false, "Role check failed: Invalid role",
+                    "ROLE_FAIL: Invalid role for user " + request.getStaff().getUsername());
+        }
 
-            // Check if user has required permission for the action
-            String requiredPermission = getRequiredPermission(request.getAction());
-            boolean hasPermission = permissions.stream()
-                    .anyMatch(p -> p.getName().equals(requiredPermission));
+        if (!decision.granted) {
+            return new AccessResult(false, "Access denied: Insufficient permissions",
+                    "PERM_FAIL: User " + request.getStaff().getUsername()
+                    + " lacks " + requiredPermission + " permission");
+        }
 
-            if (!hasPermission) {
-                return new AccessResult(false, "Access denied: Insufficient permissions",
-                        "PERM_FAIL: User " + request.getStaff().getUsername()
-                        + " lacks " + requiredPermission + " permission");
-            }
+        System.out.println("Role check passed for user: " + request.getStaff().getUsername()
+                + " with role: " + decision.roleName);
+        return passToNext(request);
+    }
 
-            System.out.println("Role check passed for user: " + request.getStaff().getUsername()
-                    + " with role: " + userRole.getName());
-            return passToNext(request);
+    private AccessDecisionCache.Decision loadDecision(Long roleId, String action, String requiredPermission)
+            throws SQLException {
+        long generation = decisionCache.currentGeneration();
 
-        } catch (SQLException e) {
-            return new AccessResult(false, "Role check failed: Database error",
-                    "DB_ERROR: " + e.getMessage());
+        // getRoleById already loads the role's permissions
+        Role userRole = roleDAO.getRoleById(roleId);
+        String roleName = userRole != null ? userRole.getName() : null;
+        boolean granted = false;
+        if (userRole != null && userRole.getPermissions() != null) {
+            for (Permission permission : userRole.getPermissions()) {
+                if (requiredPermission.equals(permission.getName())) {
+                    granted = true;
+                    break;
+                }
+            }
         }
+
+        decisionCache.put(roleId, action, roleName, granted, generation);
+        return new AccessDecisionCache.Decision(roleName, granted, 0);
     }
 
     private String getRequiredPermission(String action) {
@@ -41,12 +41,7 @@ public class CompositeRole implements RoleComponent {
 
     @Override
     public Set<String> getAllPermissions() {
-        Set<String> allPermissions = new HashSet<>(directPermissions);
-
-        // Add permissions from bridge implementation
-        if (permissionImpl != null) {
-            allPermissions.addAll(permissionImpl.getPermissionsForRole(roleName));
-        }
+        Set<String> allPermissions = getOwnPermissions();
 
         // Add permissions from sub-roles (inheritance)
         for (RoleComponent subRole : subRoles) {
@@ -56,6 +51,17 @@ public class CompositeRole implements RoleComponent {
         return allPermissions;
     }
 
+    @Override
+    public Set<String> getOwnPermissions() {
+        Set<String> ownPermissions = new HashSet<>(directPermissions);
+
+        // Add permissions from bridge implementation
+        if (permissionImpl != null) {
+            ownPermissions.addAll(permissionImpl.getPermissionsForRole(roleName));
+        }
+        return ownPermissions;
+    }
+
     @Override
     public List<RoleComponent> getSubRoles() {
         return new ArrayList<>(subRoles);
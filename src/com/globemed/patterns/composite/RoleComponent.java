@@ -19,6 +19,8 @@ public interface RoleComponent {
 
     Set<String> getAllPermissions();
 
+    Set<String> getOwnPermissions(); // This role only, excluding sub-roles
+
     List<RoleComponent> getSubRoles();
 
     void addSubRole(RoleComponent role);
@@ -39,6 +39,11 @@ public class SimpleRole implements RoleComponent {
 
     @Override
     public Set<String> getAllPermissions() {
+        return getOwnPermissions(); // Leaf has nothing to inherit
+    }
+
+    @Override
+    public Set<String> getOwnPermissions() {
         // Get permissions from bridge implementation + direct permissions
         Set<String> allPermissions = new HashSet<>(directPermissions);
         if (permissionImpl != null) {
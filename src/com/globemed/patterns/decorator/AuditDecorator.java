@@ -4,10 +4,12 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.audit.AuditLog;
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import java.sql.SQLException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
@@ -17,53 +19,65 @@ import java.util.List;
 public class AuditDecorator extends PatientRecordServiceDecorator {
 
     private String currentUser;
+    private AuditLog auditLog;
 
     public AuditDecorator(PatientRecordService service, String currentUser) {
         super(service);
         this.currentUser = currentUser;
+        this.auditLog = AuditLog.getInstance();
     }
 
     @Override
     public Patient getPatientById(Long id) throws SQLException {
-        logAudit("READ", "Patient ID: " + id, "Single patient record accessed");
+        logAudit("READ", id, "Patient ID: " + id, "Single patient record accessed");
         return super.getPatientById(id);
     }
 
     @Override
     public List<Patient> getAllPatients() throws SQLException {
         List<Patient> patients = super.getAllPatients();
-        logAudit("READ", "All Patients", "Retrieved " + patients.size() + " patient records");
+        logAudit("READ", null, "All Patients", "Retrieved " + patients.size() + " patient records");
+        return patients;
+    }
+
+    @Override
+    public Page<Patient> getPatientPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        Page<Patient> page = super.getPatientPage(cursor, limit, sort);
+        logAudit("READ", null, "Patient Page", "Retrieved " + page.size() + " patient records"
+                + (cursor != null ? " after ID " + cursor.getLastId() : ""));
+        return page;
+    }
+
+    @Override
+    public List<Patient> getPatientsByIds(List<Long> ids) throws SQLException {
+        List<Patient> patients = super.getPatientsByIds(ids);
+        logAudit("READ", null, "Patient Search", "Retrieved " + patients.size() + " patient records");
         return patients;
     }
 
     @Override
     public Long createPatient(Patient patient) throws SQLException {
         Long id = super.createPatient(patient);
-        logAudit("CREATE", "Patient: " + patient.getName(), "New patient record created with ID: " + id);
+        logAudit("CREATE", id, "Patient: " + patient.getName(), "New patient record created with ID: " + id);
         return id;
     }
 
     @Override
     public boolean updatePatient(Patient patient) throws SQLException {
         boolean result = super.updatePatient(patient);
-        logAudit("UPDATE", "Patient ID: " + patient.getId(), "Patient record updated: " + patient.getName());
+        logAudit("UPDATE", patient.getId(), "Patient ID: " + patient.getId(), "Patient record updated: " + patient.getName());
         return result;
     }
 
     @Override
     public boolean deletePatient(Long id) throws SQLException {
         boolean result = super.deletePatient(id);
-        logAudit("DELETE", "Patient ID: " + id, "Patient record deleted");
+        logAudit("DELETE", id, "Patient ID: " + id, "Patient record deleted");
         return result;
     }
 
-    private void logAudit(String action, String target, String details) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-        String auditEntry = String.format("[%s] AUDIT: User=%s, Action=%s, Target=%s, Details=%s",
-                timestamp, currentUser, action, target, details);
-        System.out.println(auditEntry);
-
-        // In a real implementation, this would write to an audit database table
-        // For now, we'll just log to console
+    private void logAudit(String action, Long patientId, String target, String details) {
+        // Queued for the background audit writer; nothing is formatted here
+        auditLog.record("PATIENT_RECORDS", currentUser, action, patientId, target, details);
     }
 }
@@ -4,9 +4,11 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.audit.AuditLog;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -14,12 +16,16 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  */
 public class AuditLoggingDecorator<T> extends SecurityDecorator<T> {
 
-    private ConcurrentLinkedQueue<AuditLogEntry> auditLog;
+    private static final int MAX_RECENT_ENTRIES = 1000;
+
+    private ConcurrentLinkedQueue<AuditLogEntry> auditLog; // Recent entries kept in memory
+    private AtomicInteger auditLogSize; // ConcurrentLinkedQueue.size() is O(n)
     private boolean detailedLogging;
 
     public AuditLoggingDecorator(SecureService<T> service, boolean detailedLogging) {
         super(service, "AuditLogging");
         this.auditLog = new ConcurrentLinkedQueue<>();
+        this.auditLogSize = new AtomicInteger();
         this.detailedLogging = detailedLogging;
     }
 
@@ -67,13 +73,12 @@ public class AuditLoggingDecorator<T> extends SecurityDecorator<T> {
         );
 
         auditLog.offer(entry);
+        AuditLog.getInstance().record("SECURE_SERVICE", getCurrentUser(), eventType, entry.getServiceName(),
+                description);
 
-        // Print to console (in real system, would write to secure log file/database)
-        System.out.println("AUDIT: " + entry.toString());
-
-        // Keep only last 1000 entries to prevent memory issues
-        while (auditLog.size() > 1000) {
-            auditLog.poll();
+        // Keep only the last MAX_RECENT_ENTRIES entries to prevent memory issues
+        if (auditLogSize.incrementAndGet() > MAX_RECENT_ENTRIES && auditLog.poll() != null) {
+            auditLogSize.decrementAndGet();
         }
     }
 
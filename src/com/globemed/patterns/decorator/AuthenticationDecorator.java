@@ -4,10 +4,12 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.database.StaffDAO;
 import com.globemed.models.Staff;
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import com.globemed.session.Session;
+import com.globemed.session.SessionRegistry;
+import com.globemed.utils.PasswordHasher;
+import java.sql.SQLException;
 
 /**
  *
@@ -15,27 +17,28 @@ import java.util.Map;
  */
 public class AuthenticationDecorator<T> extends SecurityDecorator<T> {
 
-    private Map<String, AuthSession> activeSessions;
+    private final SessionRegistry sessions;
+    private final StaffDAO staffDAO;
+    // The session the calling thread acts for; set on login or via useSession
+    private final ThreadLocal<String> currentSessionToken = new ThreadLocal<>();
     private int sessionTimeoutMinutes;
 
     public AuthenticationDecorator(SecureService<T> service, int sessionTimeoutMinutes) {
         super(service, "Authentication");
-        this.activeSessions = new HashMap<>();
+        this.sessions = SessionRegistry.getInstance();
+        this.staffDAO = new StaffDAO();
         this.sessionTimeoutMinutes = sessionTimeoutMinutes;
     }
 
     @Override
     public T execute(T data) throws SecurityException {
-        String sessionToken = getCurrentSessionToken();
+        Session session = sessions.touch(getCurrentSessionToken());
 
-        if (!isValidSession(sessionToken)) {
+        if (session == null) {
             logAccess("AUTHENTICATION_FAILED", "Invalid or expired session");
             throw new SecurityException("Authentication required - invalid session");
         }
 
-        AuthSession session = activeSessions.get(sessionToken);
-        session.updateLastAccess();
-
         logAccess("AUTHENTICATION_SUCCESS", "User: " + session.getUsername());
         return super.execute(data);
     }
@@ -43,82 +46,56 @@ public class AuthenticationDecorator<T> extends SecurityDecorator<T> {
     public String authenticateUser(String username, String password) {
         // Simulate authentication
         if (isValidCredentials(username, password)) {
-            String sessionToken = generateSessionToken(username);
-            AuthSession session = new AuthSession(username, sessionToken, LocalDateTime.now());
-            activeSessions.put(sessionToken, session);
+            Session session = sessions.create(username, sessionTimeoutMinutes * 60_000L);
+            currentSessionToken.set(session.getToken());
 
-            logAccess("LOGIN_SUCCESS", "User authenticated: " + username);
-            return sessionToken;
+            logAccess(username, "LOGIN_SUCCESS", "User authenticated: " + username);
+            return session.getToken();
         } else {
-            logAccess("LOGIN_FAILED", "Invalid credentials for: " + username);
+            logAccess(username, "LOGIN_FAILED", "Invalid credentials for: " + username);
             throw new SecurityException("Invalid credentials");
         }
     }
 
+    /**
+     * Act for an existing session on the calling thread, e.g. in a
+     * SwingWorker started after login.
+     */
+    public void useSession(String sessionToken) {
+        currentSessionToken.set(sessionToken);
+    }
+
     public void logout(String sessionToken) {
-        AuthSession session = activeSessions.remove(sessionToken);
+        Session session = sessions.invalidate(sessionToken);
+        if (sessionToken != null && sessionToken.equals(currentSessionToken.get())) {
+            currentSessionToken.remove();
+        }
         if (session != null) {
-            logAccess("LOGOUT", "User logged out: " + session.getUsername());
+            logAccess(session.getUsername(), "LOGOUT", "User logged out: " + session.getUsername());
         }
     }
 
-    private boolean isValidSession(String sessionToken) {
-        if (sessionToken == null || !activeSessions.containsKey(sessionToken)) {
-            return false;
-        }
-
-        AuthSession session = activeSessions.get(sessionToken);
-        return !session.isExpired(sessionTimeoutMinutes);
+    @Override
+    public String getCurrentUser() {
+        String token = getCurrentSessionToken();
+        Session session = token != null ? sessions.get(token) : null;
+        return session != null ? session.getUsername() : super.getCurrentUser();
     }
 
     private boolean isValidCredentials(String username, String password) {
-        // Simulate credential validation
-        // In real implementation, this would check against database with hashed passwords
-        return username != null && password != null
-                && username.length() > 0 && password.length() >= 6;
-    }
-
-    private String generateSessionToken(String username) {
-        return "SESSION_" + username + "_" + System.currentTimeMillis();
-    }
-
-    private String getCurrentSessionToken() {
-        // In real implementation, this would get token from HTTP session or context
-        // For demo, we'll use a thread-local or return the last created session
-        return activeSessions.keySet().stream().findFirst().orElse(null);
-    }
-
-    // Inner class for session management
-    private static class AuthSession {
-
-        private String username;
-        private String sessionToken;
-        private LocalDateTime lastAccess;
-
-        public AuthSession(String username, String sessionToken, LocalDateTime lastAccess) {
-            this.username = username;
-            this.sessionToken = sessionToken;
-            this.lastAccess = lastAccess;
-        }
-
-        public void updateLastAccess() {
-            this.lastAccess = LocalDateTime.now();
-        }
-
-        public boolean isExpired(int timeoutMinutes) {
-            return LocalDateTime.now().isAfter(lastAccess.plusMinutes(timeoutMinutes));
-        }
-
-        public String getUsername() {
-            return username;
+        if (username == null || password == null || username.isEmpty()) {
+            return false;
         }
-
-        public String getSessionToken() {
-            return sessionToken;
+        try {
+            Staff staff = staffDAO.getStaffByUsername(username);
+            return staff != null && PasswordHasher.getInstance().verify(password, staff.getPassword());
+        } catch (SQLException e) {
+            System.err.println("Error checking credentials for " + username + ": " + e.getMessage());
+            return false;
         }
+    }
 
-        public LocalDateTime getLastAccess() {
-            return lastAccess;
-        }
+    private String getCurrentSessionToken() {
+        return currentSessionToken.get();
     }
 }
@@ -4,10 +4,15 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
 import com.globemed.database.PatientDAO;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -31,6 +36,24 @@ public class BasicPatientRecordService implements PatientRecordService {
         return patientDAO.getAllPatients();
     }
 
+    @Override
+    public Page<Patient> getPatientPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        return patientDAO.fetchPage(cursor, limit, sort);
+    }
+
+    @Override
+    public List<Patient> getPatientsByIds(List<Long> ids) throws SQLException {
+        Map<Long, Patient> found = patientDAO.getPatientsByIds(ids);
+        List<Patient> patients = new ArrayList<>(found.size());
+        for (Long id : ids) {
+            Patient patient = found.get(id);
+            if (patient != null) {
+                patients.add(patient);
+            }
+        }
+        return patients;
+    }
+
     @Override
     public Long createPatient(Patient patient) throws SQLException {
         return patientDAO.insertPatient(patient);
@@ -4,6 +4,8 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.audit.AuditLog;
+
 /**
  *
  * @author Hansana
@@ -28,7 +30,7 @@ public class BasicSecureService<T> implements SecureService<T> {
     }
 
     @Override
-    public void logAccess(String operation, String details) {
-        System.out.println("Basic log: " + operation + " - " + details);
+    public void logAccess(String user, String operation, String details) {
+        AuditLog.getInstance().record("SECURE_SERVICE", user, operation, serviceName, details);
     }
 }
@@ -4,6 +4,9 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import com.globemed.utils.SecurityUtils;
 import java.sql.SQLException;
@@ -25,8 +28,7 @@ public class PatientEncryptionDecorator extends PatientRecordServiceDecorator {
         Patient patient = super.getPatientById(id);
         if (patient != null) {
             // Decrypt sensitive data
-            patient.setMedicalHistory(SecurityUtils.decrypt(patient.getMedicalHistory()));
-            patient.setAddress(SecurityUtils.decrypt(patient.getAddress()));
+            SecurityUtils.decryptPatient(patient);
         }
         return patient;
     }
@@ -35,11 +37,21 @@ public class PatientEncryptionDecorator extends PatientRecordServiceDecorator {
     public List<Patient> getAllPatients() throws SQLException {
         System.out.println("ENCRYPTION: Decrypting all patient data");
         List<Patient> patients = super.getAllPatients();
-        for (Patient patient : patients) {
-            // Decrypt sensitive data
-            patient.setMedicalHistory(SecurityUtils.decrypt(patient.getMedicalHistory()));
-            patient.setAddress(SecurityUtils.decrypt(patient.getAddress()));
-        }
+        SecurityUtils.decryptAll(patients);
+        return patients;
+    }
+
+    @Override
+    public Page<Patient> getPatientPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        Page<Patient> page = super.getPatientPage(cursor, limit, sort);
+        SecurityUtils.decryptAll(page.getItems());
+        return page;
+    }
+
+    @Override
+    public List<Patient> getPatientsByIds(List<Long> ids) throws SQLException {
+        List<Patient> patients = super.getPatientsByIds(ids);
+        SecurityUtils.decryptAll(patients);
         return patients;
     }
 
@@ -51,9 +63,10 @@ public class PatientEncryptionDecorator extends PatientRecordServiceDecorator {
         encryptedPatient.setName(patient.getName());
         encryptedPatient.setDob(patient.getDob());
         encryptedPatient.setPhone(patient.getPhone());
+        encryptedPatient.setMedicalHistory(patient.getMedicalHistory());
+        encryptedPatient.setAddress(patient.getAddress());
         // Encrypt sensitive data
-        encryptedPatient.setMedicalHistory(SecurityUtils.encrypt(patient.getMedicalHistory()));
-        encryptedPatient.setAddress(SecurityUtils.encrypt(patient.getAddress()));
+        SecurityUtils.encryptPatient(encryptedPatient);
 
         return super.createPatient(encryptedPatient);
     }
@@ -67,9 +80,10 @@ public class PatientEncryptionDecorator extends PatientRecordServiceDecorator {
         encryptedPatient.setName(patient.getName());
         encryptedPatient.setDob(patient.getDob());
         encryptedPatient.setPhone(patient.getPhone());
+        encryptedPatient.setMedicalHistory(patient.getMedicalHistory());
+        encryptedPatient.setAddress(patient.getAddress());
         // Encrypt sensitive data
-        encryptedPatient.setMedicalHistory(SecurityUtils.encrypt(patient.getMedicalHistory()));
-        encryptedPatient.setAddress(SecurityUtils.encrypt(patient.getAddress()));
+        SecurityUtils.encryptPatient(encryptedPatient);
 
         return super.updatePatient(encryptedPatient);
     }
@@ -4,6 +4,9 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import java.sql.SQLException;
 import java.util.List;
@@ -18,6 +21,14 @@ public interface PatientRecordService {
 
     List<Patient> getAllPatients() throws SQLException;
 
+    Page<Patient> getPatientPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException;
+
+    /**
+     * Patients in the order of the given ids; ids with no patient are
+     * skipped.
+     */
+    List<Patient> getPatientsByIds(List<Long> ids) throws SQLException;
+
     Long createPatient(Patient patient) throws SQLException;
 
     boolean updatePatient(Patient patient) throws SQLException;
@@ -4,6 +4,9 @@
  */
 package com.globemed.patterns.decorator;
 
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import java.sql.SQLException;
 import java.util.List;
@@ -30,6 +33,16 @@ public abstract class PatientRecordServiceDecorator implements PatientRecordServ
         return wrappedService.getAllPatients();
     }
 
+    @Override
+    public Page<Patient> getPatientPage(PageCursor cursor, int limit, SortDirection sort) throws SQLException {
+        return wrappedService.getPatientPage(cursor, limit, sort);
+    }
+
+    @Override
+    public List<Patient> getPatientsByIds(List<Long> ids) throws SQLException {
+        return wrappedService.getPatientsByIds(ids);
+    }
+
     @Override
     public Long createPatient(Patient patient) throws SQLException {
         return wrappedService.createPatient(patient);
@@ -14,5 +14,19 @@ public interface SecureService<T> {
 
     String getServiceName();
 
-    void logAccess(String operation, String details);
+    /**
+     * Record an access on behalf of {@link #getCurrentUser()}.
+     */
+    default void logAccess(String operation, String details) {
+        logAccess(getCurrentUser(), operation, details);
+    }
+
+    void logAccess(String user, String operation, String details);
+
+    /**
+     * The user the calling thread acts for, or null if not known.
+     */
+    default String getCurrentUser() {
+        return null;
+    }
 }
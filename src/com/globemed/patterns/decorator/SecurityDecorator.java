@@ -29,7 +29,12 @@ public abstract class SecurityDecorator<T> implements SecureService<T> {
     }
 
     @Override
-    public void logAccess(String operation, String details) {
-        wrappedService.logAccess(operation, details + " [" + decoratorName + "]");
+    public void logAccess(String user, String operation, String details) {
+        wrappedService.logAccess(user, operation, details + " [" + decoratorName + "]");
+    }
+
+    @Override
+    public String getCurrentUser() {
+        return wrappedService.getCurrentUser();
     }
 }
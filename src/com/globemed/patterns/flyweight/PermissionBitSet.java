@@ -0,0 +1,139 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.patterns.flyweight;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable set of permissions stored as one bit per interned permission id
+ * (see {@link PermissionFlyweightFactory#getPermissionId(String)}). Testing
+ * membership is a single array read and mask.
+ *
+ * @author Hansana
+ */
+public final class PermissionBitSet {
+
+    public static final PermissionBitSet EMPTY = new PermissionBitSet(new long[0]);
+
+    private final long[] words;
+
+    private PermissionBitSet(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Build a bitset from permission names, interning any name not seen
+     * before.
+     */
+    public static PermissionBitSet of(Collection<String> permissionNames) {
+        if (permissionNames.isEmpty()) {
+            return EMPTY;
+        }
+        PermissionFlyweightFactory factory = PermissionFlyweightFactory.getInstance();
+        long[] words = new long[0];
+        for (String name : permissionNames) {
+            int id = factory.getPermissionId(name);
+            int word = id >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, word + 1);
+            }
+            words[word] |= 1L << id;
+        }
+        return new PermissionBitSet(words);
+    }
+
+    public boolean contains(int permissionId) {
+        int word = permissionId >>> 6;
+        return permissionId >= 0 && word < words.length && (words[word] & (1L << permissionId)) != 0;
+    }
+
+    public boolean contains(String permissionName) {
+        return contains(PermissionFlyweightFactory.getInstance().lookupPermissionId(permissionName));
+    }
+
+    public PermissionBitSet union(PermissionBitSet other) {
+        if (other.words.length == 0) {
+            return this;
+        }
+        if (words.length == 0) {
+            return other;
+        }
+        long[] merged = Arrays.copyOf(words, Math.max(words.length, other.words.length));
+        for (int i = 0; i < other.words.length; i++) {
+            merged[i] |= other.words[i];
+        }
+        return new PermissionBitSet(merged);
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /**
+     * Expand back into permission names, in id order.
+     */
+    public Set<String> toNames() {
+        PermissionFlyweightFactory factory = PermissionFlyweightFactory.getInstance();
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                names.add(factory.getPermissionName((i << 6) + bit));
+                word &= word - 1;
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PermissionBitSet)) {
+            return false;
+        }
+        long[] other = ((PermissionBitSet) obj).words;
+        int common = Math.min(words.length, other.length);
+        for (int i = 0; i < common; i++) {
+            if (words[i] != other[i]) {
+                return false;
+            }
+        }
+        long[] longer = words.length > other.length ? words : other;
+        for (int i = common; i < longer.length; i++) {
+            if (longer[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int last = words.length - 1;
+        while (last >= 0 && words[last] == 0) {
+            last--;
+        }
+        return Arrays.hashCode(Arrays.copyOf(words, last + 1));
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionBitSet" + toNames();
+    }
+}
@@ -4,9 +4,12 @@
  */
 package com.globemed.patterns.flyweight;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -17,8 +20,15 @@ public class PermissionFlyweightFactory {
     private static PermissionFlyweightFactory instance;
     private Map<String, PermissionFlyweight> permissions;
 
+    // Dense integer ids for permission names, used as bit positions in
+    // PermissionBitSet. Ids are never reused or removed.
+    private final Map<String, Integer> permissionIds;
+    private final List<String> permissionNamesById;
+
     private PermissionFlyweightFactory() {
         this.permissions = new HashMap<>();
+        this.permissionIds = new ConcurrentHashMap<>();
+        this.permissionNamesById = new ArrayList<>();
         initializeDefaultPermissions();
     }
 
@@ -46,10 +56,51 @@ public class PermissionFlyweightFactory {
             ConcretePermissionFlyweight permission = new ConcretePermissionFlyweight(
                     name, description, roles, securityLevel);
             permissions.put(name, permission);
+            getPermissionId(name);
             System.out.println("Added new permission flyweight: " + name);
         }
     }
 
+    /**
+     * Intern a permission name, assigning the next free id the first time
+     * the name is seen.
+     */
+    public int getPermissionId(String permissionName) {
+        Integer id = permissionIds.get(permissionName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (permissionNamesById) {
+            id = permissionIds.get(permissionName);
+            if (id == null) {
+                id = permissionNamesById.size();
+                permissionNamesById.add(permissionName);
+                permissionIds.put(permissionName, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Id of an already interned name, or -1. Unlike
+     * {@link #getPermissionId(String)} this never grows the table, so it is
+     * safe for checks against arbitrary input.
+     */
+    public int lookupPermissionId(String permissionName) {
+        Integer id = permissionName == null ? null : permissionIds.get(permissionName);
+        return id != null ? id : -1;
+    }
+
+    public String getPermissionName(int permissionId) {
+        synchronized (permissionNamesById) {
+            return permissionNamesById.get(permissionId);
+        }
+    }
+
+    public int getInternedPermissionCount() {
+        return permissionIds.size();
+    }
+
     public int getCreatedPermissionsCount() {
         return permissions.size();
     }
@@ -58,6 +109,7 @@ public class PermissionFlyweightFactory {
         System.out.println("Permission Flyweight Statistics:");
         System.out.println("Total permissions created: " + permissions.size());
         System.out.println("Memory saved by sharing: Significant for " + permissions.size() + " permissions");
+        System.out.println("Interned permission ids: " + getInternedPermissionCount());
 
         for (PermissionFlyweight permission : permissions.values()) {
             System.out.println("  - " + permission.getPermissionName()
@@ -7,6 +7,8 @@ package com.globemed.patterns.mediator;
 import com.globemed.database.AppointmentDAO;
 import com.globemed.models.Appointment;
 import com.globemed.patterns.observer.AppointmentSubject;
+import com.globemed.scheduling.SchedulingEngine;
+import com.globemed.scheduling.SlotLocks;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -21,11 +23,15 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
     private List<AppointmentComponent> components;
     private AppointmentDAO appointmentDAO;
     private AppointmentSubject appointmentSubject; // Observer pattern integration
+    private SchedulingEngine schedulingEngine; // In-memory conflict index
+    private SlotLocks slotLocks; // Serializes bookings per doctor/room
 
     public ConcreteAppointmentMediator() {
         this.components = new ArrayList<>();
         this.appointmentDAO = new AppointmentDAO();
         this.appointmentSubject = new AppointmentSubject();
+        this.schedulingEngine = SchedulingEngine.getInstance();
+        this.slotLocks = SlotLocks.getInstance();
     }
 
     public AppointmentSubject getAppointmentSubject() {
@@ -55,8 +61,26 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
             appointment.setLocation(location);
             appointment.setStatus("SCHEDULED");
 
-            Long appointmentId = appointmentDAO.insertAppointment(appointment);
-            appointment.setId(appointmentId);
+            // The checks above are a cheap pre-filter; the slot is claimed under the
+            // doctor/room locks here and the database re-checks it on insert
+            SlotLocks.Handle lock = slotLocks.lock(staffId, location);
+            try {
+                if (!checkStaffAvailability(staffId, appointmentTime) || !checkRoomAvailability(location, appointmentTime)) {
+                    notifyComponents("SCHEDULING_FAILED", "Slot was just booked by someone else");
+                    return false;
+                }
+
+                Long appointmentId = appointmentDAO.insertAppointmentIfSlotFree(appointment,
+                        SchedulingEngine.CONFLICT_WINDOW_MINUTES);
+                if (appointmentId == null) {
+                    notifyComponents("SCHEDULING_FAILED", "Slot was just booked by someone else");
+                    return false;
+                }
+                appointment.setId(appointmentId);
+                schedulingEngine.recordBooked(appointment);
+            } finally {
+                lock.unlock();
+            }
 
             // Notify components about successful scheduling
             notifyComponents("APPOINTMENT_SCHEDULED", appointment);
@@ -87,6 +111,7 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
             boolean success = appointmentDAO.updateAppointment(appointment);
 
             if (success) {
+                schedulingEngine.recordChanged(appointment, appointment.getAppointmentTime(), appointment.getLocation());
                 notifyComponents("APPOINTMENT_CANCELLED", appointment);
                 appointmentSubject.notifyAppointmentCancelled(appointment);
             }
@@ -108,13 +133,13 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
                 return false;
             }
 
-            // Check availability for new time and location
-            if (!checkStaffAvailability(appointment.getStaffId(), newTime)) {
+            // Check availability for new time and location, ignoring the appointment's own slot
+            if (!schedulingEngine.isStaffAvailable(appointment.getStaffId(), newTime, appointmentId)) {
                 notifyComponents("RESCHEDULING_FAILED", "Staff not available at new time");
                 return false;
             }
 
-            if (!checkRoomAvailability(newLocation, newTime)) {
+            if (!schedulingEngine.isRoomAvailable(newLocation, newTime, appointmentId)) {
                 notifyComponents("RESCHEDULING_FAILED", "Room not available at new time");
                 return false;
             }
@@ -126,9 +151,21 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
             appointment.setAppointmentTime(newTime);
             appointment.setLocation(newLocation);
             appointment.setStatus("SCHEDULED");
-            boolean success = appointmentDAO.updateAppointment(appointment);
 
-            if (success) {
+            boolean success;
+            SlotLocks.Handle lock = slotLocks.lock(appointment.getStaffId(), newLocation);
+            try {
+                success = appointmentDAO.updateAppointmentIfSlotFree(appointment, SchedulingEngine.CONFLICT_WINDOW_MINUTES);
+                if (success) {
+                    schedulingEngine.recordChanged(appointment, oldTime, oldLocation);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (!success) {
+                notifyComponents("RESCHEDULING_FAILED", "New slot was just booked by someone else");
+            } else {
                 notifyComponents("APPOINTMENT_RESCHEDULED", appointment);
                 appointmentSubject.notifyAppointmentUpdated(appointment, oldTime, oldLocation);
             }
@@ -156,6 +193,7 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
             boolean success = appointmentDAO.updateAppointment(appointment);
 
             if (success) {
+                schedulingEngine.recordChanged(appointment, appointment.getAppointmentTime(), appointment.getLocation());
                 notifyComponents("APPOINTMENT_STATUS_UPDATED", appointment);
                 appointmentSubject.notifyAppointmentUpdated(appointment, appointment.getAppointmentTime(), appointment.getLocation());
                 
@@ -185,14 +223,8 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
     @Override
     public boolean checkRoomAvailability(String location, LocalDateTime time) {
         try {
-            // Check if room is available at the specified time (30-min slots)
-            LocalDateTime startTime = time.minusMinutes(15);
-            LocalDateTime endTime = time.plusMinutes(15);
-
-            List<Appointment> conflictingAppointments = appointmentDAO.getAppointmentsByLocationAndTimeRange(
-                    location, startTime, endTime);
-
-            return conflictingAppointments.isEmpty();
+            // Room is taken if another appointment starts within 15 minutes either side
+            return schedulingEngine.isRoomAvailable(location, time, null);
 
         } catch (SQLException e) {
             System.err.println("Error checking room availability: " + e.getMessage());
@@ -203,14 +235,8 @@ public class ConcreteAppointmentMediator implements AppointmentMediator {
     @Override
     public boolean checkStaffAvailability(Long staffId, LocalDateTime time) {
         try {
-            // Check if staff member is available at the specified time (30-min slots)
-            LocalDateTime startTime = time.minusMinutes(15);
-            LocalDateTime endTime = time.plusMinutes(15);
-
-            List<Appointment> conflictingAppointments = appointmentDAO.getAppointmentsByStaffAndTimeRange(
-                    staffId, startTime, endTime);
-
-            return conflictingAppointments.isEmpty();
+            // Staff member is busy if another appointment starts within 15 minutes either side
+            return schedulingEngine.isStaffAvailable(staffId, time, null);
 
         } catch (SQLException e) {
             System.err.println("Error checking staff availability: " + e.getMessage());
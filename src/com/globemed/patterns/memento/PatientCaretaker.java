@@ -6,62 +6,134 @@ package com.globemed.patterns.memento;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
+ * The most recent versions of one patient, held in a fixed-size ring buffer
+ * so the oldest version is dropped in O(1). The full history stays in the
+ * patient's {@link PatientVersionStore} log.
+ *
+ * Versions are appended in time order, so {@link #getMementosSince} finds
+ * its starting point by binary search.
  *
  * @author Hansana
  */
 public class PatientCaretaker {
 
-    private List<PatientMemento> mementos;
-    private int maxVersions;
+    private final PatientMemento[] mementos;
+    private int head; // Index of the oldest version
+    private int size;
+    private long totalVersions; // Including versions dropped from the window
+    private boolean ordered = true; // False if the clock went backwards
 
     public PatientCaretaker(int maxVersions) {
-        this.mementos = new ArrayList<>();
-        this.maxVersions = maxVersions;
+        if (maxVersions <= 0) {
+            throw new IllegalArgumentException("maxVersions must be positive: " + maxVersions);
+        }
+        this.mementos = new PatientMemento[maxVersions];
+    }
+
+    public synchronized void saveMemento(PatientMemento memento) {
+        add(memento);
+        System.out.println("Saved patient version: " + memento.getChangeReason()
+                + " (Total versions: " + size + ")");
     }
 
-    public void saveMemento(PatientMemento memento) {
-        mementos.add(memento);
+    // Used when replaying the log, without the per-version message
+    synchronized void add(PatientMemento memento) {
+        PatientMemento latest = getLatestMemento();
+        if (latest != null && memento.getSnapshotTime().isBefore(latest.getSnapshotTime())) {
+            ordered = false;
+        }
 
-        // Keep only the most recent versions
-        while (mementos.size() > maxVersions) {
-            mementos.remove(0);
+        if (size == mementos.length) {
+            // Keep only the most recent versions
+            mementos[head] = memento;
+            head = (head + 1) % mementos.length;
+        } else {
+            mementos[(head + size) % mementos.length] = memento;
+            size++;
         }
+        totalVersions++;
+    }
 
-        System.out.println("Saved patient version: " + memento.getChangeReason()
-                + " (Total versions: " + mementos.size() + ")");
+    /**
+     * Number the next version at least {@code nextVersion}, so numbers used
+     * by versions that could not be replayed are not reused.
+     */
+    synchronized void reserveVersionsBelow(long nextVersion) {
+        totalVersions = Math.max(totalVersions, nextVersion);
     }
 
-    public PatientMemento getMemento(int index) {
-        if (index >= 0 && index < mementos.size()) {
-            return mementos.get(index);
+    public synchronized PatientMemento getMemento(int index) {
+        if (index >= 0 && index < size) {
+            return mementos[(head + index) % mementos.length];
         }
         return null;
     }
 
-    public PatientMemento getLatestMemento() {
-        return mementos.isEmpty() ? null : mementos.get(mementos.size() - 1);
+    public synchronized PatientMemento getLatestMemento() {
+        return size == 0 ? null : getMemento(size - 1);
     }
 
-    public List<PatientMemento> getAllMementos() {
-        return new ArrayList<>(mementos);
+    public synchronized List<PatientMemento> getAllMementos() {
+        return copyFrom(0);
+    }
+
+    public synchronized List<PatientMemento> getMementosSince(LocalDateTime since) {
+        if (!ordered) {
+            List<PatientMemento> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (getMemento(i).getSnapshotTime().isAfter(since)) {
+                    result.add(getMemento(i));
+                }
+            }
+            return result;
+        }
+
+        // First version strictly after 'since'
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getMemento(mid).getSnapshotTime().isAfter(since)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return copyFrom(low);
+    }
+
+    private List<PatientMemento> copyFrom(int start) {
+        List<PatientMemento> result = new ArrayList<>(size - start);
+        for (int i = start; i < size; i++) {
+            result.add(getMemento(i));
+        }
+        return result;
     }
 
-    public List<PatientMemento> getMementosSince(LocalDateTime since) {
-        return mementos.stream()
-                .filter(m -> m.getSnapshotTime().isAfter(since))
-                .collect(Collectors.toList());
+    public synchronized int getVersionCount() {
+        return size;
     }
 
-    public int getVersionCount() {
-        return mementos.size();
+    /**
+     * Number of versions ever saved for the patient, including those no
+     * longer held in memory.
+     */
+    public synchronized long getTotalVersions() {
+        return totalVersions;
     }
 
-    public void clearHistory() {
-        mementos.clear();
+    /**
+     * Clears the in-memory window only; the persisted log is kept.
+     */
+    public synchronized void clearHistory() {
+        Arrays.fill(mementos, null);
+        head = 0;
+        size = 0;
+        ordered = true;
         System.out.println("Patient version history cleared");
     }
 }
@@ -34,6 +34,19 @@ public class PatientMemento {
         this.changeReason = changeReason;
     }
 
+    // Rebuilt from the version log
+    PatientMemento(Long id, String name, LocalDate dob, String address, String phone,
+            String medicalHistory, LocalDateTime snapshotTime, String changeReason) {
+        this.id = id;
+        this.name = name;
+        this.dob = dob;
+        this.address = address;
+        this.phone = phone;
+        this.medicalHistory = medicalHistory;
+        this.snapshotTime = snapshotTime;
+        this.changeReason = changeReason;
+    }
+
     // Package-private getters for originator access
     Long getId() {
         return id;
@@ -0,0 +1,407 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.patterns.memento;
+
+import com.globemed.utils.SecurityUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only version log per patient, {@code patient-<id>.log}.
+ *
+ * Each record is framed as [length][crc32][payload] and holds only the
+ * fields that changed since the previous version. Medical history is stored
+ * as the text between the common prefix and suffix of the two versions, so
+ * appending a note costs the note, not the whole history. Every
+ * {@link #KEYFRAME_INTERVAL}th record is a full copy to bound the damage of
+ * a lost record. Text fields are encrypted with {@link SecurityUtils}.
+ *
+ * A crash can leave a partial record at the end of a log; it is cut off the
+ * next time the log is loaded, before anything is appended. Damage anywhere
+ * else is skipped without touching the file: replay resumes at the next
+ * intact record and deltas are ignored until the next keyframe.
+ *
+ * @author Hansana
+ */
+public class PatientVersionStore {
+
+    public static final String DEFAULT_DIRECTORY = "patient-history";
+    static final int KEYFRAME_INTERVAL = 16;
+
+    private static final byte[] MAGIC = "GMPVER01".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final int FLAG_KEYFRAME = 1;
+    private static final int NAME = 1;
+    private static final int DOB = 1 << 1;
+    private static final int ADDRESS = 1 << 2;
+    private static final int PHONE = 1 << 3;
+    private static final int HISTORY = 1 << 4;
+    private static final int ALL_FIELDS = NAME | DOB | ADDRESS | PHONE | HISTORY;
+
+    private final Path directory;
+
+    public PatientVersionStore(Path directory) {
+        this.directory = directory;
+    }
+
+    Path logPath(Long patientId) {
+        return directory.resolve("patient-" + patientId + ".log");
+    }
+
+    /**
+     * Replay a patient's log into the caretaker (which keeps the most recent
+     * versions) and cut off any partial record at the end.
+     *
+     * @return false if the last record could not be replayed, so the next
+     * version must be written as a keyframe
+     */
+    boolean load(Long patientId, PatientCaretaker caretaker) throws IOException {
+        Path log = logPath(patientId);
+        if (!Files.exists(log)) {
+            return true;
+        }
+        ReplayResult result = replay(patientId, log, caretaker::add);
+        caretaker.reserveVersionsBelow(result.nextVersion);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            if (channel.size() > result.validLength) {
+                System.err.println("Truncating damaged tail of " + log + " at " + result.validLength);
+                channel.truncate(result.validLength);
+            }
+        }
+        return result.inSync;
+    }
+
+    /**
+     * A version number above every version in the patient's log, for when
+     * the log cannot be replayed. Every record takes more than one byte.
+     */
+    long versionBound(Long patientId) throws IOException {
+        Path log = logPath(patientId);
+        return Files.exists(log) ? Files.size(log) : 0;
+    }
+
+    /**
+     * Every version in the log, oldest first.
+     */
+    public List<PatientMemento> readAll(Long patientId) throws IOException {
+        List<PatientMemento> versions = new ArrayList<>();
+        Path log = logPath(patientId);
+        if (Files.exists(log)) {
+            replay(patientId, log, versions::add);
+        }
+        return versions;
+    }
+
+    /**
+     * Append a version and sync it to disk. {@code previous} is the version
+     * before it, or null to write a full copy.
+     */
+    void append(Long patientId, PatientMemento previous, PatientMemento memento, long version) throws IOException {
+        append(patientId, previous, memento, version, true);
+    }
+
+    /**
+     * @param sync false for bulk writes, which leave syncing to the OS
+     */
+    void append(Long patientId, PatientMemento previous, PatientMemento memento, long version, boolean sync)
+            throws IOException {
+        boolean keyframe = previous == null || version % KEYFRAME_INTERVAL == 0;
+        byte[] payload = encode(previous, memento, version, keyframe);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        Files.createDirectories(directory);
+        Path log = logPath(patientId);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(MAGIC));
+            }
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        }
+    }
+
+    private byte[] encode(PatientMemento previous, PatientMemento memento, long version, boolean keyframe)
+            throws IOException {
+        int changed = keyframe ? ALL_FIELDS : changedFields(previous, memento);
+        Instant time = memento.getSnapshotTime().atZone(ZoneId.systemDefault()).toInstant();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(version);
+        out.writeLong(time.getEpochSecond());
+        out.writeInt(time.getNano());
+        out.writeByte(keyframe ? FLAG_KEYFRAME : 0);
+        out.writeByte(changed);
+        writeText(out, memento.getChangeReason());
+        if ((changed & NAME) != 0) {
+            writeText(out, memento.getName());
+        }
+        if ((changed & DOB) != 0) {
+            out.writeLong(memento.getDob() != null ? memento.getDob().toEpochDay() : NO_DATE);
+        }
+        if ((changed & ADDRESS) != 0) {
+            writeText(out, memento.getAddress());
+        }
+        if ((changed & PHONE) != 0) {
+            writeText(out, memento.getPhone());
+        }
+        if ((changed & HISTORY) != 0) {
+            String before = previous != null ? previous.getMedicalHistory() : null;
+            String after = memento.getMedicalHistory();
+            if (keyframe || before == null || after == null) {
+                out.writeBoolean(false); // Full text
+                writeText(out, after);
+            } else {
+                int prefix = commonPrefix(before, after);
+                int suffix = commonSuffix(before, after, prefix);
+                out.writeBoolean(true); // Delta against the previous version
+                out.writeInt(prefix);
+                out.writeInt(suffix);
+                writeText(out, after.substring(prefix, after.length() - suffix));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static int changedFields(PatientMemento previous, PatientMemento memento) {
+        int changed = 0;
+        if (!Objects.equals(previous.getName(), memento.getName())) {
+            changed |= NAME;
+        }
+        if (!Objects.equals(previous.getDob(), memento.getDob())) {
+            changed |= DOB;
+        }
+        if (!Objects.equals(previous.getAddress(), memento.getAddress())) {
+            changed |= ADDRESS;
+        }
+        if (!Objects.equals(previous.getPhone(), memento.getPhone())) {
+            changed |= PHONE;
+        }
+        if (!Objects.equals(previous.getMedicalHistory(), memento.getMedicalHistory())) {
+            changed |= HISTORY;
+        }
+        return changed;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Common suffix that does not overlap the common prefix in either string
+    private static int commonSuffix(String a, String b, int prefix) {
+        int max = Math.min(a.length(), b.length()) - prefix;
+        int i = 0;
+        while (i < max && a.charAt(a.length() - 1 - i) == b.charAt(b.length() - 1 - i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private interface VersionSink {
+
+        void accept(PatientMemento memento);
+    }
+
+    /**
+     * Feed every version that can be rebuilt to the sink. A damaged frame
+     * is skipped by scanning for the next frame whose CRC matches; a frame
+     * that cannot be decoded is skipped as a whole. Either way the following
+     * deltas are ignored until the next keyframe.
+     */
+    private ReplayResult replay(Long patientId, Path log, VersionSink sink) throws IOException {
+        byte[] bytes = Files.readAllBytes(log);
+        if (bytes.length < MAGIC.length) {
+            return new ReplayResult(0, 0, true); // Crashed while creating the log
+        }
+        if (!Arrays.equals(Arrays.copyOf(bytes, MAGIC.length), MAGIC)) {
+            throw new IOException("Not a patient version log: " + log);
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        int position = MAGIC.length;
+        long validLength = position;
+        long nextVersion = 0;
+        int skipped = 0;
+        PatientMemento previous = null;
+        boolean inSync = true;
+        while (position < bytes.length) {
+            int length = frameLength(data, position, crc);
+            if (length < 0) {
+                int next = position + 1;
+                while (next < bytes.length && frameLength(data, next, crc) < 0) {
+                    next++;
+                }
+                if (next == bytes.length) {
+                    break; // Torn tail
+                }
+                System.err.println("Skipping " + (next - position) + " damaged bytes at " + position + " in " + log);
+                position = next;
+                previous = null;
+                inSync = false;
+                continue;
+            }
+
+            int payloadStart = position + FRAME_HEADER_SIZE;
+            if (length >= 8) {
+                nextVersion = Math.max(nextVersion, data.getLong(payloadStart) + 1);
+            }
+            PatientMemento memento;
+            try {
+                memento = decode(patientId, previous, Arrays.copyOfRange(bytes, payloadStart, payloadStart + length));
+            } catch (IOException | RuntimeException e) {
+                memento = null;
+            }
+            if (memento != null) {
+                sink.accept(memento);
+            } else {
+                skipped++;
+            }
+            previous = memento;
+            inSync = memento != null;
+            position = payloadStart + length;
+            validLength = position;
+        }
+
+        if (skipped > 0) {
+            System.err.println("Could not replay " + skipped + " versions from " + log);
+        }
+        return new ReplayResult(validLength, nextVersion, inSync);
+    }
+
+    // Payload length of an intact frame at position, or -1
+    private static int frameLength(ByteBuffer data, int position, CRC32 crc) {
+        int available = data.limit() - position - FRAME_HEADER_SIZE;
+        if (available <= 0) {
+            return -1;
+        }
+        int length = data.getInt(position);
+        if (length <= 0 || length > MAX_PAYLOAD_SIZE || length > available) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(data.array(), position + FRAME_HEADER_SIZE, length);
+        return (int) crc.getValue() == data.getInt(position + 4) ? length : -1;
+    }
+
+    private static final class ReplayResult {
+
+        final long validLength; // End of the last intact frame
+        final long nextVersion; // Above every version number in the log
+        final boolean inSync; // The last frame was replayed
+
+        ReplayResult(long validLength, long nextVersion, boolean inSync) {
+            this.validLength = validLength;
+            this.nextVersion = nextVersion;
+            this.inSync = inSync;
+        }
+    }
+
+    private PatientMemento decode(Long patientId, PatientMemento previous, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        in.readLong(); // Version number, for tools reading the log
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        boolean keyframe = (in.readByte() & FLAG_KEYFRAME) != 0;
+        int changed = in.readByte();
+        if (!keyframe && previous == null) {
+            return null;
+        }
+
+        String changeReason = readText(in);
+        String name = previous != null ? previous.getName() : null;
+        LocalDate dob = previous != null ? previous.getDob() : null;
+        String address = previous != null ? previous.getAddress() : null;
+        String phone = previous != null ? previous.getPhone() : null;
+        String history = previous != null ? previous.getMedicalHistory() : null;
+
+        if ((changed & NAME) != 0) {
+            name = readText(in);
+        }
+        if ((changed & DOB) != 0) {
+            long day = in.readLong();
+            dob = day != NO_DATE ? LocalDate.ofEpochDay(day) : null;
+        }
+        if ((changed & ADDRESS) != 0) {
+            address = readText(in);
+        }
+        if ((changed & PHONE) != 0) {
+            phone = readText(in);
+        }
+        if ((changed & HISTORY) != 0) {
+            if (in.readBoolean()) {
+                int prefix = in.readInt();
+                int suffix = in.readInt();
+                String middle = readText(in);
+                if (history == null || prefix + suffix > history.length()) {
+                    throw new IOException("Medical history delta does not fit the previous version");
+                }
+                history = history.substring(0, prefix) + (middle != null ? middle : "")
+                        + history.substring(history.length() - suffix);
+            } else {
+                history = readText(in);
+            }
+        }
+
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneId.systemDefault());
+        return new PatientMemento(patientId, name, dob, address, phone, history, time, changeReason);
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = SecurityUtils.encrypt(value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return SecurityUtils.decrypt(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
@@ -4,41 +4,104 @@
  */
 package com.globemed.patterns.memento;
 
-import com.globemed.patterns.memento.*;
+import com.globemed.database.DatabaseConnection;
+import com.globemed.database.PatientDAO;
 import com.globemed.models.Patient;
+import com.globemed.utils.SecurityUtils;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 /**
+ * Patient version history: the most recent versions in memory, every
+ * version in the patient's {@link PatientVersionStore} log. A patient's log
+ * is replayed the first time their history is touched after a restart.
  *
  * @author Hansana
  */
 public class VersionControlService {
 
-    private Map<Long, PatientCaretaker> patientCaretakers;
+    private final Map<Long, PatientCaretaker> patientCaretakers;
+    private final PatientCaretaker unsavedPatients; // Patients without an id yet; memory only
+    private final PatientVersionStore store;
+    private final PatientDAO patientDAO;
+    // Patients whose last append failed; their next record must be a full copy
+    private final Set<Long> needsKeyframe;
     private int maxVersionsPerPatient;
 
+    private static final int READ_SLICE = 1000;
+
     public VersionControlService(int maxVersionsPerPatient) {
-        this.patientCaretakers = new HashMap<>();
+        this(maxVersionsPerPatient, new PatientVersionStore(Paths.get(PatientVersionStore.DEFAULT_DIRECTORY)));
+    }
+
+    public VersionControlService(int maxVersionsPerPatient, PatientVersionStore store) {
+        this.patientCaretakers = new ConcurrentHashMap<>();
+        this.needsKeyframe = ConcurrentHashMap.newKeySet();
         this.maxVersionsPerPatient = maxVersionsPerPatient;
+        this.unsavedPatients = new PatientCaretaker(maxVersionsPerPatient);
+        this.store = store;
+        this.patientDAO = new PatientDAO();
+    }
+
+    private PatientCaretaker caretakerFor(Long patientId) {
+        if (patientId == null) {
+            return unsavedPatients;
+        }
+        return patientCaretakers.computeIfAbsent(patientId, id -> {
+            PatientCaretaker caretaker = new PatientCaretaker(maxVersionsPerPatient);
+            try {
+                if (!store.load(id, caretaker)) {
+                    needsKeyframe.add(id);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not load version history for patient " + id + ": " + e.getMessage());
+                needsKeyframe.add(id);
+                try {
+                    caretaker.reserveVersionsBelow(store.versionBound(id));
+                } catch (IOException sizeError) {
+                    // Numbering restarts at 0; the log is unreadable anyway
+                }
+            }
+            return caretaker;
+        });
     }
 
     public void savePatientVersion(Patient patient, String changeReason) {
-        PatientCaretaker caretaker = patientCaretakers.computeIfAbsent(
-                patient.getId(),
-                k -> new PatientCaretaker(maxVersionsPerPatient)
-        );
+        PatientCaretaker caretaker = caretakerFor(patient.getId());
 
         PatientOriginator originator = new PatientOriginator(patient);
         PatientMemento memento = originator.createMemento(changeReason);
-        caretaker.saveMemento(memento);
+
+        synchronized (caretaker) {
+            if (patient.getId() != null) {
+                PatientMemento previous = needsKeyframe.remove(patient.getId())
+                        ? null : caretaker.getLatestMemento();
+                try {
+                    store.append(patient.getId(), previous, memento, caretaker.getTotalVersions());
+                } catch (IOException e) {
+                    System.err.println("Could not persist version for patient " + patient.getId() + ": " + e.getMessage());
+                    needsKeyframe.add(patient.getId());
+                }
+            }
+            caretaker.saveMemento(memento);
+        }
     }
 
     public boolean restorePatientVersion(Long patientId, int versionIndex) {
-        PatientCaretaker caretaker = patientCaretakers.get(patientId);
-        if (caretaker == null) {
+        PatientCaretaker caretaker = caretakerFor(patientId);
+        if (caretaker.getVersionCount() == 0) {
             System.out.println("No version history found for patient ID: " + patientId);
             return false;
         }
@@ -49,23 +112,218 @@ public class VersionControlService {
             return false;
         }
 
-        // In real implementation, you would retrieve current patient from database
-        // For demo, we'll create a new patient object
-        Patient patient = new Patient();
-        PatientOriginator originator = new PatientOriginator(patient);
-        originator.restoreFromMemento(memento);
+        Patient patient = toStoredPatient(memento);
+        try {
+            if (!patientDAO.updatePatient(patient)) {
+                System.out.println("Patient ID " + patientId + " no longer exists");
+                return false;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error restoring patient ID " + patientId + ": " + e.getMessage());
+            return false;
+        }
+        Patient restored = new Patient();
+        new PatientOriginator(restored).restoreFromMemento(memento);
+        savePatientVersion(restored, "Restored version: " + memento.getChangeReason());
 
         System.out.println("Restored patient ID " + patientId + " to version: " + memento.getChangeReason());
         return true;
     }
 
+    /**
+     * Restore every given patient to the version they had at
+     * {@code pointInTime}, replayed from their logs. All rows are written in
+     * one transaction with one UPDATE per {@link PatientDAO#BULK_UPDATE_CHUNK}
+     * patients; if any chunk fails nothing is changed. Patients with no
+     * version at or before that time are left as they are, as are patients
+     * no longer in the database. Each restore that was written is then
+     * recorded as a new version.
+     */
+    public RollbackResult rollbackToPointInTime(Collection<Long> patientIds, LocalDateTime pointInTime,
+            ProgressListener listener) throws SQLException, IOException {
+        long start = System.nanoTime();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(patientIds));
+        List<PatientMemento> targets = new ArrayList<>(ids.size());
+
+        // Logs are independent, so they are replayed in parallel a slice at a time
+        for (int from = 0; from < ids.size(); from += READ_SLICE) {
+            List<Long> slice = ids.subList(from, Math.min(from + READ_SLICE, ids.size()));
+            try {
+                targets.addAll(slice.parallelStream()
+                        .map(id -> versionAt(id, pointInTime))
+                        .filter(target -> target != null)
+                        .collect(Collectors.toList()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            listener.onProgress("Reading history", Math.min(from + READ_SLICE, ids.size()), ids.size());
+        }
+
+        List<Patient> rows = new ArrayList<>(targets.size());
+        for (PatientMemento target : targets) {
+            rows.add(toStoredPatient(target));
+        }
+
+        Set<Long> matched = new HashSet<>();
+        DatabaseConnection.beginTransaction();
+        try {
+            for (int from = 0; from < rows.size(); from += PatientDAO.BULK_UPDATE_CHUNK) {
+                int to = Math.min(from + PatientDAO.BULK_UPDATE_CHUNK, rows.size());
+                matched.addAll(patientDAO.updatePatients(rows.subList(from, to)));
+                listener.onProgress("Writing", to, rows.size());
+            }
+            DatabaseConnection.commitTransaction();
+        } catch (SQLException | RuntimeException e) {
+            DatabaseConnection.rollbackTransaction();
+            throw e;
+        }
+        patientDAO.bulkUpdateCommitted(rows, matched);
+
+        // Deleted patients keep their log, but nothing was restored for them
+        String reason = "Rolled back to " + pointInTime;
+        for (PatientMemento target : targets) {
+            if (matched.contains(target.getId())) {
+                recordRestore(target, reason);
+            }
+        }
+
+        RollbackResult result = new RollbackResult(ids.size(), matched.size(), ids.size() - targets.size(),
+                targets.size() - matched.size(), (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Rollback to " + pointInTime + ": " + result);
+        return result;
+    }
+
+    private PatientMemento versionAt(Long patientId, LocalDateTime pointInTime) {
+        List<PatientMemento> versions;
+        try {
+            versions = store.readAll(patientId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int index = lastVersionAtOrBefore(versions, pointInTime);
+        return index < 0 ? null : versions.get(index);
+    }
+
+    // Binary search over versions in time order
+    private static int lastVersionAtOrBefore(List<PatientMemento> versions, LocalDateTime pointInTime) {
+        int low = 0;
+        int high = versions.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versions.get(mid).getSnapshotTime().isAfter(pointInTime)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low - 1;
+    }
+
+    // Same locked path as savePatientVersion, so a concurrent save cannot
+    // slip in between the delta and the version it is based on
+    private void recordRestore(PatientMemento target, String reason) {
+        Long patientId = target.getId();
+        PatientMemento memento = new PatientMemento(patientId, target.getName(), target.getDob(),
+                target.getAddress(), target.getPhone(), target.getMedicalHistory(), LocalDateTime.now(), reason);
+        PatientCaretaker caretaker = caretakerFor(patientId);
+        synchronized (caretaker) {
+            PatientMemento previous = needsKeyframe.remove(patientId) ? null : caretaker.getLatestMemento();
+            try {
+                // One fsync per patient would dominate a bulk rollback
+                store.append(patientId, previous, memento, caretaker.getTotalVersions(), false);
+            } catch (IOException e) {
+                System.err.println("Could not record rollback for patient " + patientId + ": " + e.getMessage());
+                needsKeyframe.add(patientId);
+            }
+            caretaker.add(memento);
+        }
+    }
+
+    // Versions may hold clear or encrypted fields; the database stores them encrypted
+    private static Patient toStoredPatient(PatientMemento memento) {
+        Patient patient = new Patient();
+        new PatientOriginator(patient).restoreFromMemento(memento);
+        patient.setAddress(encryptIfClear(patient.getAddress()));
+        patient.setPhone(encryptIfClear(patient.getPhone()));
+        patient.setMedicalHistory(encryptIfClear(patient.getMedicalHistory()));
+        return patient;
+    }
+
+    private static String encryptIfClear(String value) {
+        return SecurityUtils.isEncrypted(value) ? value : SecurityUtils.encrypt(value);
+    }
+
     public List<PatientMemento> getPatientHistory(Long patientId) {
-        PatientCaretaker caretaker = patientCaretakers.get(patientId);
-        return caretaker != null ? caretaker.getAllMementos() : List.of();
+        return caretakerFor(patientId).getAllMementos();
     }
 
     public List<PatientMemento> getRecentChanges(Long patientId, LocalDateTime since) {
-        PatientCaretaker caretaker = patientCaretakers.get(patientId);
-        return caretaker != null ? caretaker.getMementosSince(since) : List.of();
+        return caretakerFor(patientId).getMementosSince(since);
+    }
+
+    /**
+     * Every version ever saved for the patient, read from the log.
+     */
+    public List<PatientMemento> getFullHistory(Long patientId) throws IOException {
+        return patientId != null ? store.readAll(patientId) : unsavedPatients.getAllMementos();
+    }
+
+    /**
+     * Receives progress from {@link #rollbackToPointInTime}; called on the
+     * thread running the rollback.
+     */
+    public interface ProgressListener {
+
+        void onProgress(String phase, int done, int total);
+    }
+
+    public static final class RollbackResult {
+
+        private final int requested;
+        private final int restored;
+        private final int withoutVersion;
+        private final int notFound;
+        private final long elapsedMillis;
+
+        RollbackResult(int requested, int restored, int withoutVersion, int notFound, long elapsedMillis) {
+            this.requested = requested;
+            this.restored = restored;
+            this.withoutVersion = withoutVersion;
+            this.notFound = notFound;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getRequested() {
+            return requested;
+        }
+
+        public int getRestored() {
+            return restored;
+        }
+
+        /**
+         * Patients with no version at or before the requested time.
+         */
+        public int getWithoutVersion() {
+            return withoutVersion;
+        }
+
+        /**
+         * Patients with an earlier version but no longer in the database.
+         */
+        public int getNotFound() {
+            return notFound;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return restored + " of " + requested + " patients restored, " + withoutVersion
+                    + " without an earlier version, " + notFound + " no longer in the database, in "
+                    + elapsedMillis + "ms";
+        }
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.patterns.observer;
+
+import com.globemed.models.Appointment;
+import java.time.LocalDateTime;
+
+/**
+ * One appointment change waiting to be delivered to observers. The
+ * appointment is copied when the event is created, so later changes made by
+ * the scheduling thread cannot leak into a notification that is still queued.
+ *
+ * @author Hansana
+ */
+public final class AppointmentEvent {
+
+    public enum Type {
+        CREATED, UPDATED, CANCELLED
+    }
+
+    private final Type type;
+    private final Appointment appointment;
+    private final LocalDateTime oldTime;
+    private final String oldLocation;
+    private final long publishedAtNanos;
+
+    AppointmentEvent(Type type, Appointment appointment, LocalDateTime oldTime, String oldLocation) {
+        this.type = type;
+        this.appointment = copyOf(appointment);
+        this.oldTime = oldTime;
+        this.oldLocation = oldLocation;
+        this.publishedAtNanos = System.nanoTime();
+    }
+
+    private static Appointment copyOf(Appointment source) {
+        Appointment copy = new Appointment();
+        copy.setId(source.getId());
+        copy.setPatientId(source.getPatientId());
+        copy.setStaffId(source.getStaffId());
+        copy.setAppointmentTime(source.getAppointmentTime());
+        copy.setLocation(source.getLocation());
+        copy.setStatus(source.getStatus());
+        return copy;
+    }
+
+    /**
+     * Hand this event to one observer. Each observer gets its own copy so one
+     * of them mutating the appointment cannot affect the next.
+     */
+    void deliverTo(Observer observer) {
+        Appointment view = copyOf(appointment);
+        switch (type) {
+            case CREATED:
+                observer.onAppointmentCreated(view);
+                break;
+            case UPDATED:
+                observer.onAppointmentUpdated(view, oldTime, oldLocation);
+                break;
+            case CANCELLED:
+                observer.onAppointmentCancelled(view);
+                break;
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getAppointmentId() {
+        return appointment.getId();
+    }
+
+    public Long getPatientId() {
+        return appointment.getPatientId();
+    }
+
+    public Long getStaffId() {
+        return appointment.getStaffId();
+    }
+
+    public LocalDateTime getOldTime() {
+        return oldTime;
+    }
+
+    public String getOldLocation() {
+        return oldLocation;
+    }
+
+    long getPublishedAtNanos() {
+        return publishedAtNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentEvent{type=" + type + ", appointment=" + appointment + "}";
+    }
+}
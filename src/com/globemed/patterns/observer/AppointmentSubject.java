@@ -8,67 +8,306 @@ import com.globemed.models.Appointment;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Publishes appointment changes to observers without making the scheduling
+ * thread wait for them.
+ *
+ * Events go into a bounded queue that a single dispatcher thread drains in
+ * batches. Observers registered for a patient or a doctor are indexed by that
+ * id and only see events for their own appointments; other observers (such as
+ * {@link AdminObserver}) see everything. When the queue is full the
+ * configured {@link BackpressurePolicy} decides what happens.
  *
  * @author Hansana
  */
 public class AppointmentSubject implements Subject {
 
-    private List<Observer> observers;
-    private String lastEvent;
-    private Appointment lastAppointment;
-    private LocalDateTime lastOldTime;
-    private String lastOldLocation;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final long DEFAULT_BLOCK_TIMEOUT_MS = 100;
+    private static final int DISPATCH_BATCH_SIZE = 64;
+
+    private final List<Observer> broadcastObservers;
+    private final Map<Long, List<Observer>> patientObservers;
+    private final Map<Long, List<Observer>> staffObservers;
+
+    private final BlockingQueue<AppointmentEvent> queue;
+    private final BackpressurePolicy policy;
+    private final long blockTimeoutMillis;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private volatile AppointmentEvent lastEvent;
+
+    // Metrics
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder callerRunsCount = new LongAdder();
+    private final LongAdder observerFailureCount = new LongAdder();
+    private final LongAdder dispatchedEventCount = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
 
     public AppointmentSubject() {
-        this.observers = new ArrayList<>();
+        this(DEFAULT_QUEUE_CAPACITY, BackpressurePolicy.CALLER_RUNS, DEFAULT_BLOCK_TIMEOUT_MS);
+    }
+
+    public AppointmentSubject(int queueCapacity, BackpressurePolicy policy, long blockTimeoutMillis) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.broadcastObservers = new CopyOnWriteArrayList<>();
+        this.patientObservers = new ConcurrentHashMap<>();
+        this.staffObservers = new ConcurrentHashMap<>();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.policy = policy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+
+        this.dispatcher = new Thread(this::dispatchLoop, "globemed-appointment-events");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
     }
 
+    /**
+     * Attach an observer. Patient and doctor observers are indexed by their
+     * id; anything else receives every event.
+     */
     @Override
     public void attach(Observer observer) {
-        observers.add(observer);
+        if (observer instanceof PatientObserver) {
+            attachPatientObserver(((PatientObserver) observer).getPatient().getId(), observer);
+        } else if (observer instanceof DoctorObserver) {
+            attachStaffObserver(((DoctorObserver) observer).getDoctor().getId(), observer);
+        } else {
+            broadcastObservers.add(observer);
+        }
+    }
+
+    public void attachPatientObserver(Long patientId, Observer observer) {
+        patientObservers.computeIfAbsent(patientId, id -> new CopyOnWriteArrayList<>()).add(observer);
+    }
+
+    public void attachStaffObserver(Long staffId, Observer observer) {
+        staffObservers.computeIfAbsent(staffId, id -> new CopyOnWriteArrayList<>()).add(observer);
     }
 
     @Override
     public void detach(Observer observer) {
-        observers.remove(observer);
+        broadcastObservers.remove(observer);
+        detachFrom(patientObservers, observer);
+        detachFrom(staffObservers, observer);
     }
 
+    private void detachFrom(Map<Long, List<Observer>> index, Observer observer) {
+        for (Map.Entry<Long, List<Observer>> entry : index.entrySet()) {
+            List<Observer> observers = entry.getValue();
+            if (observers.remove(observer) && observers.isEmpty()) {
+                index.remove(entry.getKey(), observers);
+            }
+        }
+    }
+
+    /**
+     * Re-publishes the most recent event.
+     */
     @Override
     public void notifyObservers() {
-        for (Observer observer : observers) {
-            switch (lastEvent) {
-                case "CREATED":
-                    observer.onAppointmentCreated(lastAppointment);
-                    break;
-                case "UPDATED":
-                    observer.onAppointmentUpdated(lastAppointment, lastOldTime, lastOldLocation);
-                    break;
-                case "CANCELLED":
-                    observer.onAppointmentCancelled(lastAppointment);
-                    break;
-            }
+        AppointmentEvent event = lastEvent;
+        if (event != null) {
+            publish(event);
         }
     }
 
     public void notifyAppointmentCreated(Appointment appointment) {
-        this.lastEvent = "CREATED";
-        this.lastAppointment = appointment;
-        notifyObservers();
+        publish(new AppointmentEvent(AppointmentEvent.Type.CREATED, appointment, null, null));
     }
 
     public void notifyAppointmentUpdated(Appointment appointment, LocalDateTime oldTime, String oldLocation) {
-        this.lastEvent = "UPDATED";
-        this.lastAppointment = appointment;
-        this.lastOldTime = oldTime;
-        this.lastOldLocation = oldLocation;
-        notifyObservers();
+        publish(new AppointmentEvent(AppointmentEvent.Type.UPDATED, appointment, oldTime, oldLocation));
     }
 
     public void notifyAppointmentCancelled(Appointment appointment) {
-        this.lastEvent = "CANCELLED";
-        this.lastAppointment = appointment;
-        notifyObservers();
+        publish(new AppointmentEvent(AppointmentEvent.Type.CANCELLED, appointment, null, null));
+    }
+
+    private void publish(AppointmentEvent event) {
+        lastEvent = event;
+        publishedCount.increment();
+
+        if (!running) {
+            droppedCount.increment();
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+
+        switch (policy) {
+            case CALLER_RUNS:
+                callerRunsCount.increment();
+                dispatch(event);
+                break;
+            case BLOCK:
+                try {
+                    if (!queue.offer(event, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        droppedCount.increment();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedCount.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    if (queue.poll() != null) {
+                        droppedCount.increment();
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+            default:
+                droppedCount.increment();
+                break;
+        }
+    }
+
+    private void dispatchLoop() {
+        List<AppointmentEvent> batch = new ArrayList<>(DISPATCH_BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                AppointmentEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DISPATCH_BATCH_SIZE - 1);
+                for (AppointmentEvent event : batch) {
+                    dispatch(event);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(AppointmentEvent event) {
+        long lag = System.nanoTime() - event.getPublishedAtNanos();
+        totalLagNanos.add(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        dispatchedEventCount.increment();
+
+        deliver(event, broadcastObservers);
+        if (event.getPatientId() != null) {
+            deliver(event, patientObservers.get(event.getPatientId()));
+        }
+        if (event.getStaffId() != null) {
+            deliver(event, staffObservers.get(event.getStaffId()));
+        }
+    }
+
+    private void deliver(AppointmentEvent event, List<Observer> observers) {
+        if (observers == null) {
+            return;
+        }
+        for (Observer observer : observers) {
+            try {
+                event.deliverTo(observer);
+                deliveredCount.increment();
+            } catch (RuntimeException e) {
+                // One misbehaving observer must not stop the others
+                observerFailureCount.increment();
+                System.err.println("Observer " + observer.getClass().getSimpleName()
+                        + " failed on " + event.getType() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stop accepting events and let the dispatcher drain what is queued, for
+     * up to {@code timeoutMillis}.
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            dispatcher.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dispatcher.isAlive()) {
+            dispatcher.interrupt();
+        }
+    }
+
+    // Statistics
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getObserverCount() {
+        int count = broadcastObservers.size();
+        for (List<Observer> observers : patientObservers.values()) {
+            count += observers.size();
+        }
+        for (List<Observer> observers : staffObservers.values()) {
+            count += observers.size();
+        }
+        return count;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getCallerRunsCount() {
+        return callerRunsCount.sum();
+    }
+
+    public long getObserverFailureCount() {
+        return observerFailureCount.sum();
+    }
+
+    public double getAverageLagMillis() {
+        long dispatched = dispatchedEventCount.sum();
+        return dispatched == 0 ? 0.0 : totalLagNanos.sum() / 1_000_000.0 / dispatched;
+    }
+
+    public double getMaxLagMillis() {
+        return maxLagNanos.get() / 1_000_000.0;
+    }
+
+    public void printStatistics() {
+        System.out.println("Appointment Event Statistics:");
+        System.out.println("  Observers: " + getObserverCount() + " (" + broadcastObservers.size() + " broadcast, "
+                + patientObservers.size() + " patients, " + staffObservers.size() + " staff indexed)");
+        System.out.println("  Queue depth: " + getQueueDepth() + " (policy: " + policy + ")");
+        System.out.println("  Published/delivered: " + getPublishedCount() + "/" + getDeliveredCount());
+        System.out.println("  Dropped: " + getDroppedCount() + ", run on caller: " + getCallerRunsCount()
+                + ", observer failures: " + getObserverFailureCount());
+        System.out.println(String.format("  Delivery lag avg/max: %.3fms / %.3fms",
+                getAverageLagMillis(), getMaxLagMillis()));
     }
 }
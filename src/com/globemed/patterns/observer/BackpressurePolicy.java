@@ -0,0 +1,30 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.patterns.observer;
+
+/**
+ * What {@link AppointmentSubject} does when its event queue is full.
+ *
+ * @author Hansana
+ */
+public enum BackpressurePolicy {
+    /**
+     * Deliver the event on the publishing thread, like the old synchronous
+     * subject did. Nothing is lost; the caller just slows down.
+     */
+    CALLER_RUNS,
+    /**
+     * Wait up to the configured timeout for space, then drop the event.
+     */
+    BLOCK,
+    /**
+     * Drop the event being published.
+     */
+    DROP_NEWEST,
+    /**
+     * Drop the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,42 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.scheduling;
+
+import java.time.LocalDateTime;
+
+/**
+ * A start time at which a doctor and a room are both free.
+ *
+ * @author Hansana
+ */
+public class AvailableSlot {
+
+    private final Long staffId;
+    private final String location;
+    private final LocalDateTime startTime;
+
+    public AvailableSlot(Long staffId, String location, LocalDateTime startTime) {
+        this.staffId = staffId;
+        this.location = location;
+        this.startTime = startTime;
+    }
+
+    public Long getStaffId() {
+        return staffId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailableSlot{staffId=" + staffId + ", location='" + location + "', startTime=" + startTime + "}";
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.scheduling;
+
+import com.globemed.database.AppointmentDAO;
+import com.globemed.models.Appointment;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of booked appointments per doctor and per room, used to
+ * answer "is this slot free?" without a database round trip.
+ *
+ * Appointments inside a rolling horizon (yesterday to {@link #HORIZON_DAYS}
+ * days ahead) are warm-loaded once and then kept in sync by the mediator
+ * after each committed insert, reschedule or cancellation. Checks outside
+ * the horizon fall back to the database, which stays the source of truth.
+ * The index is reloaded periodically, on a background thread, to pick up
+ * changes made by other clients; callers are never blocked on a reload.
+ *
+ * @author Hansana
+ */
+public final class SchedulingEngine {
+
+    // Two appointments conflict when their start times are at most this far apart
+    public static final int CONFLICT_WINDOW_MINUTES = 15;
+
+    private static final int HORIZON_DAYS = 90;
+    private static final long RELOAD_INTERVAL_MS = 5 * 60 * 1000;
+    private static final String CANCELLED = "CANCELLED";
+
+    private static SchedulingEngine instance;
+
+    private static final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "globemed-schedule-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AppointmentDAO appointmentDAO;
+    private final Object loadLock = new Object();
+
+    private volatile Map<Long, SlotCalendar> staffCalendars = new ConcurrentHashMap<>();
+    private volatile Map<String, SlotCalendar> roomCalendars = new ConcurrentHashMap<>();
+    private volatile long horizonStart = Long.MAX_VALUE; // epoch minutes, inclusive
+    private volatile long horizonEnd = Long.MIN_VALUE;
+    private volatile long loadedAt;
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+
+    // Changes recorded while a reload is in flight, replayed onto the new index
+    private List<Runnable> pendingChanges;
+
+    // Statistics
+    private final LongAdder memoryChecks = new LongAdder();
+    private final LongAdder databaseChecks = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    private SchedulingEngine() {
+        this.appointmentDAO = new AppointmentDAO();
+    }
+
+    public static synchronized SchedulingEngine getInstance() {
+        if (instance == null) {
+            instance = new SchedulingEngine();
+        }
+        return instance;
+    }
+
+    public boolean isStaffAvailable(Long staffId, LocalDateTime time, Long excludeAppointmentId) throws SQLException {
+        long minute = toEpochMinute(time);
+        if (covers(minute)) {
+            memoryChecks.increment();
+            return !hasBooking(staffCalendars.get(staffId), minute, excludeAppointmentId);
+        }
+        databaseChecks.increment();
+        return !appointmentDAO.hasStaffConflict(staffId, time.minusMinutes(CONFLICT_WINDOW_MINUTES),
+                time.plusMinutes(CONFLICT_WINDOW_MINUTES), excludeAppointmentId);
+    }
+
+    public boolean isRoomAvailable(String location, LocalDateTime time, Long excludeAppointmentId) throws SQLException {
+        long minute = toEpochMinute(time);
+        if (covers(minute)) {
+            memoryChecks.increment();
+            return !hasBooking(roomCalendars.get(location), minute, excludeAppointmentId);
+        }
+        databaseChecks.increment();
+        return !appointmentDAO.hasLocationConflict(location, time.minusMinutes(CONFLICT_WINDOW_MINUTES),
+                time.plusMinutes(CONFLICT_WINDOW_MINUTES), excludeAppointmentId);
+    }
+
+    /**
+     * Record a newly committed appointment.
+     */
+    public void recordBooked(Appointment appointment) {
+        recordChanged(appointment, null, null);
+    }
+
+    /**
+     * Record a committed change to an existing appointment: its previous
+     * slot is released and, unless it is now cancelled, the new one taken.
+     */
+    public void recordChanged(Appointment appointment, LocalDateTime oldTime, String oldLocation) {
+        long id = appointment.getId();
+        Long staffId = appointment.getStaffId();
+        boolean active = !CANCELLED.equals(appointment.getStatus());
+        long newMinute = toEpochMinute(appointment.getAppointmentTime());
+        String newLocation = appointment.getLocation();
+        Long oldMinute = oldTime != null ? toEpochMinute(oldTime) : null;
+
+        Runnable change = () -> {
+            if (oldMinute != null) {
+                release(staffCalendars.get(staffId), id, oldMinute);
+                release(roomCalendars.get(oldLocation), id, oldMinute);
+            }
+            // Without an old slot the new one may already be indexed (e.g. a status-only update)
+            release(staffCalendars.get(staffId), id, newMinute);
+            release(roomCalendars.get(newLocation), id, newMinute);
+            if (active) {
+                book(staffCalendars.computeIfAbsent(staffId, key -> new SlotCalendar()), id, newMinute);
+                if (newLocation != null) {
+                    book(roomCalendars.computeIfAbsent(newLocation, key -> new SlotCalendar()), id, newMinute);
+                }
+            }
+        };
+
+        synchronized (loadLock) {
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+        change.run();
+        reloadIfStale();
+    }
+
+    /**
+     * Rebuild the index from the database for the rolling horizon.
+     */
+    public void reload() throws SQLException {
+        synchronized (loadLock) {
+            if (pendingChanges != null) {
+                return; // Another thread is already reloading
+            }
+            pendingChanges = new ArrayList<>();
+        }
+
+        LocalDateTime from = LocalDateTime.now().toLocalDate().minusDays(1).atStartOfDay();
+        LocalDateTime to = from.plusDays(HORIZON_DAYS + 1);
+        Map<Long, SlotCalendar> newStaff = new ConcurrentHashMap<>();
+        Map<String, SlotCalendar> newRooms = new ConcurrentHashMap<>();
+
+        try (Stream<Appointment> appointments = appointmentDAO.streamAppointmentsByTimeRange(from, to)) {
+            appointments.filter(a -> !CANCELLED.equals(a.getStatus())).forEach(a -> {
+                long minute = toEpochMinute(a.getAppointmentTime());
+                newStaff.computeIfAbsent(a.getStaffId(), key -> new SlotCalendar()).add(a.getId(), minute);
+                if (a.getLocation() != null) {
+                    newRooms.computeIfAbsent(a.getLocation(), key -> new SlotCalendar()).add(a.getId(), minute);
+                }
+            });
+
+            synchronized (loadLock) {
+                staffCalendars = newStaff;
+                roomCalendars = newRooms;
+                for (Runnable change : pendingChanges) {
+                    change.run();
+                }
+                horizonStart = toEpochMinute(from);
+                horizonEnd = toEpochMinute(to) - 1;
+                loadedAt = System.currentTimeMillis();
+                reloads.increment();
+            }
+        } finally {
+            synchronized (loadLock) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    /**
+     * Booked start times for a doctor or room within a range, or null when
+     * the range is not covered by the in-memory index.
+     */
+    long[] bookedStaffMinutes(Long staffId, long fromMinute, long toMinute) {
+        return bookedMinutes(staffCalendars.get(staffId), fromMinute, toMinute);
+    }
+
+    long[] bookedRoomMinutes(String location, long fromMinute, long toMinute) {
+        return bookedMinutes(roomCalendars.get(location), fromMinute, toMinute);
+    }
+
+    private long[] bookedMinutes(SlotCalendar calendar, long fromMinute, long toMinute) {
+        if (!covers(fromMinute) || !covers(toMinute)) {
+            return null;
+        }
+        if (calendar == null) {
+            return new long[0];
+        }
+        synchronized (calendar) {
+            return calendar.startsBetween(fromMinute, toMinute);
+        }
+    }
+
+    // The whole conflict window around minute has to be inside the horizon
+    private boolean covers(long minute) {
+        reloadIfStale();
+        return minute - CONFLICT_WINDOW_MINUTES >= horizonStart && minute + CONFLICT_WINDOW_MINUTES <= horizonEnd;
+    }
+
+    // Until the reload finishes, checks are answered from the current index or the database
+    private void reloadIfStale() {
+        if (System.currentTimeMillis() - loadedAt > RELOAD_INTERVAL_MS && reloadScheduled.compareAndSet(false, true)) {
+            reloader.execute(() -> {
+                try {
+                    reload();
+                } catch (SQLException | RuntimeException e) {
+                    // Keep serving from the database until the next attempt
+                    System.err.println("Error loading scheduling index: " + e.getMessage());
+                    loadedAt = System.currentTimeMillis();
+                    horizonStart = Long.MAX_VALUE;
+                    horizonEnd = Long.MIN_VALUE;
+                } finally {
+                    reloadScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    private boolean hasBooking(SlotCalendar calendar, long minute, Long excludeAppointmentId) {
+        if (calendar == null) {
+            return false;
+        }
+        long exclude = excludeAppointmentId != null ? excludeAppointmentId : Long.MIN_VALUE;
+        synchronized (calendar) {
+            return calendar.hasBookingBetween(minute - CONFLICT_WINDOW_MINUTES, minute + CONFLICT_WINDOW_MINUTES, exclude);
+        }
+    }
+
+    private void book(SlotCalendar calendar, long id, long minute) {
+        synchronized (calendar) {
+            calendar.add(id, minute);
+        }
+    }
+
+    private void release(SlotCalendar calendar, long id, long minute) {
+        if (calendar != null) {
+            synchronized (calendar) {
+                calendar.remove(id, minute);
+            }
+        }
+    }
+
+    // Wall-clock minutes; appointment times are zone-less so UTC keeps the arithmetic DST-free
+    static long toEpochMinute(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    static LocalDateTime fromEpochMinute(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    public long getMemoryCheckCount() {
+        return memoryChecks.sum();
+    }
+
+    public long getDatabaseCheckCount() {
+        return databaseChecks.sum();
+    }
+
+    public void printStatistics() {
+        int staffBookings = 0;
+        for (SlotCalendar calendar : staffCalendars.values()) {
+            staffBookings += calendar.size();
+        }
+        System.out.println("Scheduling Engine Statistics:");
+        System.out.println("  Indexed bookings: " + staffBookings + " across " + staffCalendars.size()
+                + " staff and " + roomCalendars.size() + " rooms");
+        System.out.println("  Availability checks (memory/database): " + getMemoryCheckCount()
+                + "/" + getDatabaseCheckCount());
+        System.out.println("  Index reloads: " + reloads.sum());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.scheduling;
+
+import java.util.Arrays;
+
+/**
+ * Booked appointment start times for one doctor or one room, kept as a
+ * sorted array of epoch minutes with the appointment ids alongside. Range
+ * checks are a binary search plus a short scan, with no per-entry objects.
+ *
+ * Instances are not thread-safe on their own; {@link SchedulingEngine}
+ * synchronizes on each calendar.
+ *
+ * @author Hansana
+ */
+class SlotCalendar {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] starts;
+    private long[] ids;
+    private int size;
+
+    SlotCalendar() {
+        this.starts = new long[INITIAL_CAPACITY];
+        this.ids = new long[INITIAL_CAPACITY];
+    }
+
+    void add(long id, long startMinute) {
+        remove(id, startMinute); // Re-adding the same booking must not duplicate it
+        if (size == starts.length) {
+            int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        int index = upperBound(startMinute);
+        System.arraycopy(starts, index, starts, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        starts[index] = startMinute;
+        ids[index] = id;
+        size++;
+    }
+
+    boolean remove(long id, long startMinute) {
+        for (int i = lowerBound(startMinute); i < size && starts[i] == startMinute; i++) {
+            if (ids[i] == id) {
+                System.arraycopy(starts, i + 1, starts, i, size - i - 1);
+                System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if any booking other than {@code excludeId} starts within
+     * [fromMinute, toMinute], both ends inclusive.
+     */
+    boolean hasBookingBetween(long fromMinute, long toMinute, long excludeId) {
+        for (int i = lowerBound(fromMinute); i < size && starts[i] <= toMinute; i++) {
+            if (ids[i] != excludeId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the booked start minutes within [fromMinute, toMinute] into a new
+     * sorted array.
+     */
+    long[] startsBetween(long fromMinute, long toMinute) {
+        int from = lowerBound(fromMinute);
+        int to = upperBound(toMinute);
+        return Arrays.copyOfRange(starts, from, Math.max(from, to));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // First index whose start is >= minute
+    private int lowerBound(long minute) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose start is > minute
+    private int upperBound(long minute) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.scheduling;
+
+import com.globemed.database.AppointmentDAO;
+import com.globemed.models.Appointment;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the first free (doctor, room) slots in a time window.
+ *
+ * The booked start times of every requested doctor and room are fetched
+ * once - from the {@link SchedulingEngine} index when the window is inside
+ * its horizon, otherwise with a single query - and candidate start times
+ * are then swept in order in memory. Because candidates only move forward,
+ * each calendar keeps a cursor into its sorted array instead of searching
+ * again for every candidate.
+ *
+ * A booking at {@code b} blocks a candidate start {@code t} of length
+ * {@code d} when {@code t - 15 <= b <= t + max(d - 15, 15)}. This is never
+ * looser than the +/-15 minute rule of
+ * {@link SchedulingEngine#isStaffAvailable}, so every slot offered can be
+ * booked; longer appointments also block bookings later in their length.
+ *
+ * @author Hansana
+ */
+public class SlotFinder {
+
+    // Candidate start times are aligned to this grid
+    public static final int SLOT_STEP_MINUTES = 15;
+
+    private final SchedulingEngine schedulingEngine;
+    private final AppointmentDAO appointmentDAO;
+
+    public SlotFinder() {
+        this.schedulingEngine = SchedulingEngine.getInstance();
+        this.appointmentDAO = new AppointmentDAO();
+    }
+
+    public List<AvailableSlot> findAvailableSlots(List<Long> staffIds, List<String> rooms, LocalDateTime windowStart,
+            LocalDateTime windowEnd, int durationMinutes, int count) throws SQLException {
+        List<AvailableSlot> slots = new ArrayList<>();
+        if (staffIds.isEmpty() || rooms.isEmpty() || count <= 0 || !windowStart.isBefore(windowEnd)) {
+            return slots;
+        }
+
+        int window = SchedulingEngine.CONFLICT_WINDOW_MINUTES;
+        long now = SchedulingEngine.toEpochMinute(LocalDateTime.now());
+        long first = alignUp(Math.max(SchedulingEngine.toEpochMinute(windowStart), now));
+        long last = SchedulingEngine.toEpochMinute(windowEnd) - durationMinutes;
+        if (first > last) {
+            return slots;
+        }
+
+        // Every booking that can block any candidate lies in this range
+        long fetchFrom = first - window;
+        long fetchTo = last + blockLength(durationMinutes, window);
+        CalendarCursor[] staffCursors = new CalendarCursor[staffIds.size()];
+        CalendarCursor[] roomCursors = new CalendarCursor[rooms.size()];
+        loadCalendars(staffIds, rooms, fetchFrom, fetchTo, staffCursors, roomCursors);
+
+        for (long t = first; t <= last && slots.size() < count; t += SLOT_STEP_MINUTES) {
+            long blockFrom = t - window;
+            long blockTo = t + blockLength(durationMinutes, window);
+            for (int s = 0; s < staffCursors.length && slots.size() < count; s++) {
+                if (!staffCursors[s].isFree(blockFrom, blockTo)) {
+                    continue;
+                }
+                for (int r = 0; r < roomCursors.length && slots.size() < count; r++) {
+                    if (roomCursors[r].isFree(blockFrom, blockTo)) {
+                        slots.add(new AvailableSlot(staffIds.get(s), rooms.get(r),
+                                SchedulingEngine.fromEpochMinute(t)));
+                    }
+                }
+            }
+        }
+
+        return slots;
+    }
+
+    private void loadCalendars(List<Long> staffIds, List<String> rooms, long fromMinute, long toMinute,
+            CalendarCursor[] staffCursors, CalendarCursor[] roomCursors) throws SQLException {
+        boolean allIndexed = true;
+        for (int i = 0; i < staffIds.size() && allIndexed; i++) {
+            long[] booked = schedulingEngine.bookedStaffMinutes(staffIds.get(i), fromMinute, toMinute);
+            allIndexed = booked != null;
+            staffCursors[i] = new CalendarCursor(booked);
+        }
+        for (int i = 0; i < rooms.size() && allIndexed; i++) {
+            long[] booked = schedulingEngine.bookedRoomMinutes(rooms.get(i), fromMinute, toMinute);
+            allIndexed = booked != null;
+            roomCursors[i] = new CalendarCursor(booked);
+        }
+        if (allIndexed) {
+            return;
+        }
+
+        // Outside the in-memory horizon: one query for all calendars
+        List<Appointment> appointments = appointmentDAO.getActiveAppointmentsForCalendars(staffIds, rooms,
+                SchedulingEngine.fromEpochMinute(fromMinute), SchedulingEngine.fromEpochMinute(toMinute));
+        Map<Long, MinuteList> byStaff = new HashMap<>();
+        Map<String, MinuteList> byRoom = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            long minute = SchedulingEngine.toEpochMinute(appointment.getAppointmentTime());
+            byStaff.computeIfAbsent(appointment.getStaffId(), key -> new MinuteList()).add(minute);
+            byRoom.computeIfAbsent(appointment.getLocation(), key -> new MinuteList()).add(minute);
+        }
+        for (int i = 0; i < staffIds.size(); i++) {
+            MinuteList booked = byStaff.get(staffIds.get(i));
+            staffCursors[i] = new CalendarCursor(booked != null ? booked.toSortedArray() : new long[0]);
+        }
+        for (int i = 0; i < rooms.size(); i++) {
+            MinuteList booked = byRoom.get(rooms.get(i));
+            roomCursors[i] = new CalendarCursor(booked != null ? booked.toSortedArray() : new long[0]);
+        }
+    }
+
+    // Minutes after a candidate start in which an existing booking blocks it
+    private long blockLength(int durationMinutes, int window) {
+        return Math.max(durationMinutes - window, window);
+    }
+
+    private long alignUp(long minute) {
+        long remainder = Math.floorMod(minute, (long) SLOT_STEP_MINUTES);
+        return remainder == 0 ? minute : minute + SLOT_STEP_MINUTES - remainder;
+    }
+
+    // Sorted booked minutes plus a cursor that only moves forward
+    private static final class CalendarCursor {
+
+        private final long[] booked;
+        private int position;
+
+        CalendarCursor(long[] booked) {
+            this.booked = booked;
+        }
+
+        boolean isFree(long blockFrom, long blockTo) {
+            while (position < booked.length && booked[position] < blockFrom) {
+                position++;
+            }
+            return position == booked.length || booked[position] > blockTo;
+        }
+    }
+
+    private static final class MinuteList {
+
+        private long[] values = new long[8];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.scheduling;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding the check-then-book sequence for a doctor and a
+ * room. Bookings for different doctors and rooms usually hash to different
+ * stripes and run in parallel; two bookings touching the same doctor or
+ * room are serialized. Stripes are always taken in index order so two
+ * callers can never deadlock.
+ *
+ * @author Hansana
+ */
+public final class SlotLocks {
+
+    private static final int STRIPES = 64; // Power of two
+
+    private static final SlotLocks instance = new SlotLocks();
+
+    private final ReentrantLock[] locks;
+
+    private SlotLocks() {
+        this.locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public static SlotLocks getInstance() {
+        return instance;
+    }
+
+    /**
+     * Lock the stripes for a staff member and a room; release them with
+     * {@link Handle#unlock()} in a finally block.
+     */
+    public Handle lock(Long staffId, String location) {
+        int first = stripe("staff:" + staffId);
+        int second = stripe("room:" + location);
+        int low = Math.min(first, second);
+        int high = Math.max(first, second);
+
+        locks[low].lock();
+        if (high != low) {
+            locks[high].lock();
+        }
+        return new Handle(low, high);
+    }
+
+    private int stripe(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16); // Spread high bits, as HashMap does
+        return hash & (STRIPES - 1);
+    }
+
+    public final class Handle {
+
+        private final int low;
+        private final int high;
+        private boolean released;
+
+        private Handle(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        public void unlock() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (high != low) {
+                locks[high].unlock();
+            }
+            locks[low].unlock();
+        }
+    }
+}
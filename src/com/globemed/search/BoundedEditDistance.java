@@ -0,0 +1,69 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.search;
+
+/**
+ * Edit distance with an upper bound, counting an insertion, deletion,
+ * substitution or swap of adjacent characters as one edit. Only the band of
+ * cells within {@code max} of the diagonal is computed, and the comparison
+ * stops as soon as every cell in a row exceeds {@code max}, so most
+ * dissimilar words are rejected after a character or two.
+ *
+ * @author Hansana
+ */
+final class BoundedEditDistance {
+
+    private BoundedEditDistance() {
+    }
+
+    /**
+     * The distance between the words, or {@code max + 1} if it is more than
+     * {@code max}. The scratch rows must hold at least {@code b.length + 1}
+     * entries.
+     */
+    static int distance(char[] a, char[] b, int max, int[][] rows) {
+        if (Math.abs(a.length - b.length) > max) {
+            return max + 1;
+        }
+        int over = max + 1;
+        int[] beforePrevious = rows[0];
+        int[] previous = rows[1];
+        int[] current = rows[2];
+        for (int j = 0; j <= b.length; j++) {
+            previous[j] = j <= max ? j : over;
+        }
+
+        for (int i = 1; i <= a.length; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length, i + max);
+            current[0] = i <= max ? i : over;
+            if (from > 1) {
+                current[from - 1] = over;
+            }
+            int rowMin = current[0];
+            char ca = a[i - 1];
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b[j - 1] ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && ca == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = Math.min(value, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length) {
+                current[to + 1] = over;
+            }
+            if (rowMin > max) {
+                return over;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length];
+    }
+}
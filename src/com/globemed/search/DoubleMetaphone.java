@@ -0,0 +1,411 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.search;
+
+import java.text.Normalizer;
+
+/**
+ * Phonetic keys for a name word, after Lawrence Philips' Double Metaphone:
+ * a primary key for the most likely pronunciation and an alternate for
+ * names whose spelling suggests a second one. Words that sound alike get
+ * the same keys, e.g. SMITH / SMYTH or CATHERINE / KATHRYN.
+ *
+ * This is the core of the rule set (English plus the common Germanic,
+ * Slavic, Romance and Greek spellings), not every special case of the
+ * original. Keys are at most {@link #MAX_LENGTH} characters and are packed
+ * into an int so they can be stored and compared as primitives.
+ *
+ * @author Hansana
+ */
+final class DoubleMetaphone {
+
+    static final int MAX_LENGTH = 4;
+
+    // Key characters; 0 stands for TH
+    private static final String ALPHABET = "0AFHJKLMNPRSTX";
+
+    private final String word;
+    private final int length;
+    private final StringBuilder primary = new StringBuilder(MAX_LENGTH);
+    private final StringBuilder alternate = new StringBuilder(MAX_LENGTH);
+
+    private DoubleMetaphone(String word) {
+        this.word = word;
+        this.length = word.length();
+    }
+
+    /**
+     * Packed primary key in the low 16 bits and alternate in the high 16;
+     * 0 if the word has no letters.
+     */
+    static int encode(String value) {
+        String word = prepare(value);
+        if (word.isEmpty()) {
+            return 0;
+        }
+        DoubleMetaphone metaphone = new DoubleMetaphone(word);
+        metaphone.run();
+        return pack(metaphone.primary) | pack(metaphone.alternate) << 16;
+    }
+
+    static int primary(int keys) {
+        return keys & 0xFFFF;
+    }
+
+    static int alternate(int keys) {
+        return keys >>> 16;
+    }
+
+    /**
+     * True if the two words share a primary or alternate key.
+     */
+    static boolean soundAlike(int a, int b) {
+        int a1 = primary(a);
+        int a2 = alternate(a);
+        int b1 = primary(b);
+        int b2 = alternate(b);
+        return a1 != 0 && (a1 == b1 || a1 == b2 || a2 == b1 || a2 == b2);
+    }
+
+    // Four bits per key character, first character in the high bits
+    private static int pack(CharSequence key) {
+        int packed = 0;
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            packed <<= 4;
+            if (i < key.length()) {
+                packed |= ALPHABET.indexOf(key.charAt(i)) + 1;
+            }
+        }
+        return packed;
+    }
+
+    // Upper case letters only, with accents removed (Ç and Ñ are kept)
+    private static String prepare(String value) {
+        StringBuilder letters = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toUpperCase(value.charAt(i));
+            if (c == 'Ç' || c == 'Ñ') {
+                letters.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                letters.append(c);
+            } else if (Character.isLetter(c)) {
+                String plain = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                char base = plain.charAt(0);
+                if (base >= 'A' && base <= 'Z') {
+                    letters.append(base);
+                }
+            }
+        }
+        return letters.toString();
+    }
+
+    private void run() {
+        int i = 0;
+        if (startsWith(0, "GN", "KN", "PN", "WR", "PS")) {
+            i = 1;
+        }
+        if (charAt(0) == 'X') {
+            add("S");
+            i = 1;
+        }
+
+        while (i < length && (primary.length() < MAX_LENGTH || alternate.length() < MAX_LENGTH)) {
+            char c = word.charAt(i);
+            switch (c) {
+                case 'A':
+                case 'E':
+                case 'I':
+                case 'O':
+                case 'U':
+                case 'Y':
+                    if (i == 0) {
+                        add("A");
+                    }
+                    i++;
+                    break;
+                case 'B':
+                    add("P");
+                    i = charAt(i + 1) == 'B' ? i + 2 : i + 1;
+                    break;
+                case 'Ç':
+                    add("S");
+                    i++;
+                    break;
+                case 'C':
+                    i = handleC(i);
+                    break;
+                case 'D':
+                    if (startsWith(i, "DG")) {
+                        if (isOneOf(charAt(i + 2), "IEY")) {
+                            add("J");
+                            i += 3;
+                        } else {
+                            add("TK");
+                            i += 2;
+                        }
+                    } else {
+                        add("T");
+                        i = startsWith(i, "DT", "DD") ? i + 2 : i + 1;
+                    }
+                    break;
+                case 'F':
+                    add("F");
+                    i = charAt(i + 1) == 'F' ? i + 2 : i + 1;
+                    break;
+                case 'G':
+                    i = handleG(i);
+                    break;
+                case 'H':
+                    // Only sounded at the start or between vowels
+                    if ((i == 0 || isVowel(charAt(i - 1))) && isVowel(charAt(i + 1))) {
+                        add("H");
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                    break;
+                case 'J':
+                    if (startsWith(i, "JOSE") || startsWith(0, "SAN")) {
+                        add("H");
+                    } else if (i == 0) {
+                        add("J", "A");
+                    } else {
+                        add("J", "H");
+                    }
+                    i = charAt(i + 1) == 'J' ? i + 2 : i + 1;
+                    break;
+                case 'K':
+                    add("K");
+                    i = charAt(i + 1) == 'K' ? i + 2 : i + 1;
+                    break;
+                case 'L':
+                    add("L");
+                    i = charAt(i + 1) == 'L' ? i + 2 : i + 1;
+                    break;
+                case 'M':
+                    add("M");
+                    // Silent B in -UMB, as in THUMB
+                    i = charAt(i + 1) == 'M' || (startsWith(i - 1, "UMB") && i + 2 == length) ? i + 2 : i + 1;
+                    break;
+                case 'N':
+                case 'Ñ':
+                    add("N");
+                    i = charAt(i + 1) == 'N' ? i + 2 : i + 1;
+                    break;
+                case 'P':
+                    if (charAt(i + 1) == 'H') {
+                        add("F");
+                        i += 2;
+                    } else {
+                        add("P");
+                        i = isOneOf(charAt(i + 1), "PB") ? i + 2 : i + 1;
+                    }
+                    break;
+                case 'Q':
+                    add("K");
+                    i = charAt(i + 1) == 'Q' ? i + 2 : i + 1;
+                    break;
+                case 'R':
+                    add("R");
+                    i = charAt(i + 1) == 'R' ? i + 2 : i + 1;
+                    break;
+                case 'S':
+                    i = handleS(i);
+                    break;
+                case 'T':
+                    i = handleT(i);
+                    break;
+                case 'V':
+                    add("F");
+                    i = charAt(i + 1) == 'V' ? i + 2 : i + 1;
+                    break;
+                case 'W':
+                    if (startsWith(i, "WR")) {
+                        add("R");
+                        i += 2;
+                    } else if (i == 0 && isVowel(charAt(1))) {
+                        add("A", "F");
+                        i++;
+                    } else if (startsWith(i, "WICZ", "WITZ")) {
+                        add("TS", "FX");
+                        i += 4;
+                    } else {
+                        i++;
+                    }
+                    break;
+                case 'X':
+                    // Silent in French endings such as BREAUX
+                    if (!(i == length - 1 && (startsWith(i - 3, "IAU", "EAU") || startsWith(i - 2, "AU", "OU")))) {
+                        add("KS");
+                    }
+                    i = isOneOf(charAt(i + 1), "CX") ? i + 2 : i + 1;
+                    break;
+                case 'Z':
+                    if (charAt(i + 1) == 'H') {
+                        add("J");
+                        i += 2;
+                    } else {
+                        if (i > 0 && startsWith(i + 1, "ZO", "ZI", "ZA")) {
+                            add("S", "TS");
+                        } else {
+                            add("S");
+                        }
+                        i = charAt(i + 1) == 'Z' ? i + 2 : i + 1;
+                    }
+                    break;
+                default:
+                    i++;
+                    break;
+            }
+        }
+        primary.setLength(Math.min(primary.length(), MAX_LENGTH));
+        alternate.setLength(Math.min(alternate.length(), MAX_LENGTH));
+    }
+
+    private int handleC(int i) {
+        if (startsWith(i, "CH")) {
+            // Greek and Scottish CH, as in CHRIS, CHARACTER, MCHUGH
+            if ((i == 0 && (startsWith(i + 2, "R", "L") || startsWith(i, "CHARAC", "CHARIS", "CHOR", "CHYM", "CHEM")))
+                    || startsWith(0, "MC")) {
+                add("K");
+            } else {
+                add("X", "K");
+            }
+            return i + 2;
+        }
+        if (startsWith(i, "CZ")) {
+            add("S", "X");
+            return i + 2;
+        }
+        if (startsWith(i, "CC") && isOneOf(charAt(i + 2), "IEH") && !startsWith(i + 2, "HU")) {
+            add("KS");
+            return i + 3;
+        }
+        if (startsWith(i, "CIO", "CIA")) {
+            add("S", "X");
+            return i + 3;
+        }
+        if (isOneOf(charAt(i + 1), "IEY")) {
+            add("S");
+            return i + 2;
+        }
+        add("K");
+        if (isOneOf(charAt(i + 1), "KGQC") && !startsWith(i + 1, "CE", "CI")) {
+            return i + 2;
+        }
+        return i + 1;
+    }
+
+    private int handleG(int i) {
+        char next = charAt(i + 1);
+        if (next == 'H') {
+            if (i == 0) {
+                add(charAt(2) == 'I' ? "J" : "K");
+            } else if (!isVowel(charAt(i - 1))) {
+                add("K");
+            } else if (startsWith(i - 1, "UGH") && i + 2 == length && i > 1 && !isVowel(charAt(i - 3))) {
+                add("F"); // LAUGH, TOUGH
+            }
+            return i + 2;
+        }
+        if (next == 'N') {
+            if (i == 1 && isVowel(charAt(0))) {
+                add("KN", "N");
+            } else {
+                add("N", "KN");
+            }
+            return i + 2;
+        }
+        if (isOneOf(next, "EIY")) {
+            if (i == 0 || startsWith(i + 1, "ET", "ER")) {
+                add("K", "J");
+            } else {
+                add("J", "K");
+            }
+            return i + 2;
+        }
+        add("K");
+        return next == 'G' ? i + 2 : i + 1;
+    }
+
+    private int handleS(int i) {
+        if (startsWith(i, "SH")) {
+            add("X");
+            return i + 2;
+        }
+        if (startsWith(i, "SIO", "SIA")) {
+            add("S", "X");
+            return i + 3;
+        }
+        if (startsWith(i, "SCH")) {
+            if (isVowel(charAt(i + 3))) {
+                add("SK");
+            } else {
+                add("X", "S");
+            }
+            return i + 3;
+        }
+        if (startsWith(i, "SC")) {
+            add(isOneOf(charAt(i + 2), "IEY") ? "S" : "SK");
+            return i + 2;
+        }
+        if (startsWith(i, "SZ")) {
+            add("S", "X");
+            return i + 2;
+        }
+        if (i == 0 && isOneOf(charAt(1), "MNLW")) {
+            add("S", "X");
+            return 1;
+        }
+        add("S");
+        return charAt(i + 1) == 'S' ? i + 2 : i + 1;
+    }
+
+    private int handleT(int i) {
+        if (startsWith(i, "TION", "TIA", "TCH")) {
+            add("X");
+            return i + 3;
+        }
+        if (startsWith(i, "TH") || startsWith(i, "TTH")) {
+            add("0", "T");
+            return startsWith(i, "TTH") ? i + 3 : i + 2;
+        }
+        add("T");
+        return isOneOf(charAt(i + 1), "TD") ? i + 2 : i + 1;
+    }
+
+    private void add(String both) {
+        add(both, both);
+    }
+
+    private void add(String main, String alt) {
+        primary.append(main);
+        alternate.append(alt);
+    }
+
+    private char charAt(int i) {
+        return i >= 0 && i < length ? word.charAt(i) : 0;
+    }
+
+    private boolean startsWith(int i, String... prefixes) {
+        if (i < 0) {
+            return false;
+        }
+        for (String prefix : prefixes) {
+            if (word.startsWith(prefix, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isVowel(char c) {
+        return isOneOf(c, "AEIOUY");
+    }
+
+    private static boolean isOneOf(char c, String chars) {
+        return c != 0 && chars.indexOf(c) >= 0;
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.search;
+
+import com.globemed.database.DatabaseConnection;
+import com.globemed.database.DuplicateCandidateDAO;
+import com.globemed.database.PatientDAO;
+import com.globemed.database.UncheckedSQLException;
+import com.globemed.models.DuplicateCandidate;
+import com.globemed.models.Patient;
+import com.globemed.utils.SecurityUtils;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Batch job that finds patients registered more than once and writes them,
+ * grouped into clusters, to the duplicate review table.
+ *
+ * Comparing every pair of patients is out of the question, so patients are
+ * first grouped into blocks that share a date of birth and the phonetic
+ * keys of their name, or a phone number. Only patients within a block are
+ * compared, in parallel on a fork/join pool. Pairs scoring at least
+ * {@link #MATCH_THRESHOLD} are joined into clusters with union-find, so a
+ * patient matched by name in one block and by phone in another ends up in
+ * one cluster. Blocks larger than {@link #MAX_BLOCK_SIZE} (a shared
+ * placeholder phone number, for example) are skipped and counted.
+ *
+ * Progress is checkpointed to {@code <runId>.checkpoint} after every
+ * {@link #CHECKPOINT_BLOCKS} blocks, as the key of the last block scored.
+ * Running the job again with the same run id rescans the table and
+ * continues with the first block whose key sorts after it, so blocks that
+ * appear or disappear in between do not shift the resume point; patients
+ * added in between are only compared in the blocks still to be scored.
+ *
+ * @author Hansana
+ */
+public class DuplicatePatientJob {
+
+    public static final String DEFAULT_CHECKPOINT_DIRECTORY = "dedupe-checkpoints";
+    public static final double MATCH_THRESHOLD = 0.75;
+    public static final int MAX_BLOCK_SIZE = 200;
+
+    static final int CHECKPOINT_BLOCKS = 10_000;
+    private static final int SCAN_BATCH = 4096;
+    private static final int TASK_BLOCKS = 64;
+    private static final int NO_DOB = Integer.MIN_VALUE;
+
+    // Score weights; a pair needs a close name and at least one of the others.
+    // Names that sound alike only count as close within MAX_NAME_EDITS, since
+    // every pair in a date of birth block already sounds alike.
+    private static final double MIN_NAME_SIMILARITY = 0.85;
+    private static final double SOUNDS_ALIKE_SIMILARITY = 0.9;
+    private static final double NAME_WEIGHT = 0.5;
+    private static final double DOB_WEIGHT = 0.3;
+    private static final double PHONE_WEIGHT = 0.3;
+    private static final int MAX_NAME_EDITS = 3;
+
+    private final String runId;
+    private final Path checkpointFile;
+    private final ForkJoinPool pool;
+    private final PatientDAO patientDAO;
+    private final DuplicateCandidateDAO candidateDAO;
+
+    // Metrics
+    private final LongAdder comparisons = new LongAdder();
+    private long patientsScanned;
+    private int blockCount;
+    private int oversizedBlocks;
+    private int blocksResumed;
+    private int matchedPairs;
+    private int clusterCount;
+    private int patientsInClusters;
+    private long scanMillis;
+    private long scoreMillis;
+    private long writeMillis;
+
+    public DuplicatePatientJob(String runId) {
+        this(runId, Paths.get(DEFAULT_CHECKPOINT_DIRECTORY), ForkJoinPool.commonPool());
+    }
+
+    public DuplicatePatientJob(String runId, Path checkpointDirectory, ForkJoinPool pool) {
+        if (runId == null || !runId.matches("[A-Za-z0-9_.-]{1,64}")) {
+            throw new IllegalArgumentException("Run id must be 1-64 letters, digits, '.', '_' or '-': " + runId);
+        }
+        this.runId = runId;
+        this.checkpointFile = checkpointDirectory.resolve(runId + ".checkpoint");
+        this.pool = pool;
+        this.patientDAO = new PatientDAO();
+        this.candidateDAO = new DuplicateCandidateDAO();
+    }
+
+    /**
+     * Run the job, or resume it from its checkpoint. Returns the number of
+     * clusters in the review table for this run.
+     */
+    public int run() throws SQLException, IOException {
+        candidateDAO.createTableIfMissing();
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+        if (checkpoint.finishedClusters >= 0) {
+            System.out.println("Duplicate detection run " + runId + " already finished with "
+                    + checkpoint.finishedClusters + " clusters");
+            return checkpoint.finishedClusters;
+        }
+
+        long start = System.nanoTime();
+        List<Record> records = scan();
+        scanMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<Block> blocks = buildBlocks(records);
+        LongIntMap indexById = new LongIntMap(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            indexById.put(records.get(i).id, i);
+        }
+        Clusters clusters = new Clusters(records.size());
+        for (int p = 0; p < checkpoint.pairs.size; p++) {
+            int a = indexById.get(checkpoint.pairs.first[p]);
+            int b = indexById.get(checkpoint.pairs.second[p]);
+            if (a != LongIntMap.MISSING && b != LongIntMap.MISSING) {
+                clusters.union(a, b, checkpoint.pairs.scores[p]);
+            }
+        }
+        matchedPairs = checkpoint.pairs.size;
+        blocksResumed = checkpoint.lastBlockKey != null ? firstBlockAfter(blocks, checkpoint.lastBlockKey) : 0;
+        if (blocksResumed > 0) {
+            System.out.println("Resuming duplicate detection run " + runId + " at block " + blocksResumed
+                    + " of " + blocks.size());
+        }
+
+        try (BufferedWriter log = checkpoint.openForAppend()) {
+            for (int from = blocksResumed; from < blocks.size(); from += CHECKPOINT_BLOCKS) {
+                int to = Math.min(from + CHECKPOINT_BLOCKS, blocks.size());
+                PairList pairs = pool.invoke(new ScoreTask(records, blocks, from, to, comparisons));
+
+                IdPairs found = new IdPairs();
+                for (int p = 0; p < pairs.size; p++) {
+                    clusters.union(pairs.first[p], pairs.second[p], pairs.scores[p]);
+                    found.add(records.get(pairs.first[p]).id, records.get(pairs.second[p]).id, pairs.scores[p]);
+                }
+                matchedPairs += pairs.size;
+                checkpoint.append(log, found, blocks.get(to - 1).key);
+            }
+        }
+        scoreMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<DuplicateCandidate> candidates = clusters.toCandidates(runId, records);
+        DatabaseConnection.beginTransaction();
+        try {
+            // Replace anything left by an earlier attempt at this run
+            candidateDAO.deleteRun(runId);
+            candidateDAO.insertCandidates(candidates);
+            DatabaseConnection.commitTransaction();
+        } catch (SQLException | RuntimeException e) {
+            DatabaseConnection.rollbackTransaction();
+            throw e;
+        }
+        writeMillis = (System.nanoTime() - start) / 1_000_000;
+
+        clusterCount = candidates.isEmpty() ? 0 : candidates.get(candidates.size() - 1).getClusterId();
+        patientsInClusters = candidates.size();
+        try (BufferedWriter log = checkpoint.openForAppend()) {
+            checkpoint.finish(log, clusterCount);
+        }
+        printStatistics();
+        return clusterCount;
+    }
+
+    private List<Record> scan() throws SQLException {
+        List<Record> records = new ArrayList<>();
+        try (Stream<Patient> patients = patientDAO.streamAllPatients()) {
+            Iterator<Patient> rows = patients.iterator();
+            List<Patient> batch = new ArrayList<>(SCAN_BATCH);
+            while (rows.hasNext()) {
+                batch.add(rows.next());
+                if (batch.size() == SCAN_BATCH || !rows.hasNext()) {
+                    SecurityUtils.decryptAll(batch);
+                    for (Patient patient : batch) {
+                        records.add(new Record(patient));
+                    }
+                    batch.clear();
+                }
+            }
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+        patientsScanned = records.size();
+        return records;
+    }
+
+    /**
+     * Blocks of two or more records, ordered by key so a resumed run can
+     * find where it stopped. Keys contain no spaces, as the checkpoint
+     * stores them on a space-separated line.
+     */
+    private List<Block> buildBlocks(List<Record> records) {
+        Map<String, IntList> byKey = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            if (record.dob != NO_DOB && record.nameKeys.length > 0) {
+                StringBuilder key = new StringBuilder("d").append(record.dob);
+                for (int nameKey : record.nameKeys) {
+                    key.append(':').append(nameKey);
+                }
+                byKey.computeIfAbsent(key.toString(), k -> new IntList()).add(i);
+            }
+            if (!record.phone.isEmpty()) {
+                byKey.computeIfAbsent("p" + record.phone, k -> new IntList()).add(i);
+            }
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, IntList> block : byKey.entrySet()) {
+            int size = block.getValue().size;
+            if (size > MAX_BLOCK_SIZE) {
+                oversizedBlocks++;
+            } else if (size > 1) {
+                keys.add(block.getKey());
+            }
+        }
+        Collections.sort(keys);
+        List<Block> blocks = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            blocks.add(new Block(key, byKey.get(key).toArray()));
+        }
+        blockCount = blocks.size();
+        return blocks;
+    }
+
+    // Index of the first block whose key sorts after lastKey
+    private static int firstBlockAfter(List<Block> blocks, String lastKey) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).key.compareTo(lastKey) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Match score from 0 to 1, or 0 if the names are not close enough for
+     * the other fields to count.
+     */
+    static double score(Record a, Record b, int[][] rows) {
+        double name = nameSimilarity(a, b, rows);
+        if (name < MIN_NAME_SIMILARITY) {
+            return 0;
+        }
+        double score = NAME_WEIGHT * name;
+        if (a.dob != NO_DOB && a.dob == b.dob) {
+            score += DOB_WEIGHT;
+        }
+        if (!a.phone.isEmpty() && a.phone.equals(b.phone)) {
+            score += PHONE_WEIGHT;
+        }
+        return Math.min(1.0, score);
+    }
+
+    private static double nameSimilarity(Record a, Record b, int[][] rows) {
+        if (Arrays.equals(a.name, b.name)) {
+            return 1.0;
+        }
+        double similarity = 0;
+        int distance = BoundedEditDistance.distance(a.name, b.name, MAX_NAME_EDITS, rows);
+        if (distance <= MAX_NAME_EDITS) {
+            similarity = 1.0 - (double) distance / Math.max(a.name.length, b.name.length);
+        }
+        if (distance <= MAX_NAME_EDITS && a.nameKeys.length > 0 && Arrays.equals(a.nameKeys, b.nameKeys)) {
+            similarity = Math.max(similarity, SOUNDS_ALIKE_SIMILARITY);
+        }
+        return similarity;
+    }
+
+    public void printStatistics() {
+        long compared = comparisons.sum();
+        System.out.println("Duplicate Detection Run " + runId + ":");
+        System.out.println(String.format("  Scanned %d patients in %dms (%.0f/s)",
+                patientsScanned, scanMillis, scanMillis == 0 ? 0.0 : patientsScanned * 1000.0 / scanMillis));
+        System.out.println("  Blocks: " + blockCount + " (" + blocksResumed + " resumed from checkpoint, "
+                + oversizedBlocks + " over " + MAX_BLOCK_SIZE + " skipped)");
+        System.out.println(String.format("  Compared %d pairs in %dms (%.0f/s), %d matched",
+                compared, scoreMillis, scoreMillis == 0 ? 0.0 : compared * 1000.0 / scoreMillis, matchedPairs));
+        System.out.println("  Clusters: " + clusterCount + " covering " + patientsInClusters
+                + " patients, written in " + writeMillis + "ms");
+    }
+
+    /**
+     * What the job needs of one patient, normalized once.
+     */
+    static final class Record {
+
+        final long id;
+        final int dob;
+        final char[] name; // Words sorted, so word order does not matter
+        final int[] nameKeys; // Primary phonetic key of each word, sorted
+        final String phone;
+
+        Record(Patient patient) {
+            this.id = patient.getId();
+            this.dob = patient.getDob() != null ? (int) patient.getDob().toEpochDay() : NO_DOB;
+            String normalized = PatientSearchIndex.normalize(patient.getName());
+            String[] words = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+            Arrays.sort(words);
+            this.name = String.join(" ", words).toCharArray();
+            int[] keys = new int[words.length];
+            int count = 0;
+            for (String word : words) {
+                int primary = DoubleMetaphone.primary(DoubleMetaphone.encode(word));
+                if (primary != 0) {
+                    keys[count++] = primary;
+                }
+            }
+            this.nameKeys = Arrays.copyOf(keys, count);
+            Arrays.sort(this.nameKeys);
+            this.phone = normalizePhone(patient.getPhone());
+        }
+
+        // National number without the country code or trunk prefix; empty if too short to mean anything
+        private static String normalizePhone(String phone) {
+            if (phone == null) {
+                return "";
+            }
+            String digits = phone.replaceAll("[^0-9]", "");
+            if (digits.startsWith("94") && digits.length() == 11) {
+                digits = digits.substring(2);
+            } else if (digits.startsWith("0")) {
+                digits = digits.substring(1);
+            }
+            return digits.length() >= 7 ? digits : "";
+        }
+    }
+
+    private static final class Block {
+
+        final String key;
+        final int[] members; // Record indices
+
+        Block(String key, int[] members) {
+            this.key = key;
+            this.members = members;
+        }
+    }
+
+    /**
+     * Scores every pair within a range of blocks, splitting the range until
+     * it is small enough to do directly.
+     */
+    private static final class ScoreTask extends RecursiveTask<PairList> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Record> records;
+        private final List<Block> blocks;
+        private final int from;
+        private final int to;
+        private final LongAdder comparisons;
+
+        ScoreTask(List<Record> records, List<Block> blocks, int from, int to, LongAdder comparisons) {
+            this.records = records;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.comparisons = comparisons;
+        }
+
+        @Override
+        protected PairList compute() {
+            if (to - from > TASK_BLOCKS) {
+                int middle = (from + to) >>> 1;
+                ScoreTask left = new ScoreTask(records, blocks, from, middle, comparisons);
+                left.fork();
+                PairList right = new ScoreTask(records, blocks, middle, to, comparisons).compute();
+                PairList pairs = left.join();
+                pairs.addAll(right);
+                return pairs;
+            }
+
+            PairList pairs = new PairList();
+            int[][] rows = new int[3][64];
+            long compared = 0;
+            for (int k = from; k < to; k++) {
+                int[] block = blocks.get(k).members;
+                for (int i = 0; i < block.length; i++) {
+                    Record a = records.get(block[i]);
+                    for (int j = i + 1; j < block.length; j++) {
+                        Record b = records.get(block[j]);
+                        if (b.name.length >= rows[0].length) {
+                            rows = new int[3][b.name.length + 1];
+                        }
+                        compared++;
+                        double score = score(a, b, rows);
+                        if (score >= MATCH_THRESHOLD) {
+                            pairs.add(block[i], block[j], (float) score);
+                        }
+                    }
+                }
+            }
+            comparisons.add(compared);
+            return pairs;
+        }
+    }
+
+    /**
+     * Union-find over record indices, keeping each record's best match
+     * score.
+     */
+    private static final class Clusters {
+
+        final int[] parent;
+        final float[] bestScore;
+
+        Clusters(int size) {
+            parent = new int[size];
+            bestScore = new float[size];
+            for (int i = 0; i < size; i++) {
+                parent[i] = i;
+            }
+        }
+
+        int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]]; // Path halving
+                i = parent[i];
+            }
+            return i;
+        }
+
+        void union(int a, int b, float score) {
+            bestScore[a] = Math.max(bestScore[a], score);
+            bestScore[b] = Math.max(bestScore[b], score);
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA != rootB) {
+                parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+            }
+        }
+
+        /**
+         * One candidate per clustered record, clusters numbered from 1 in
+         * order of their lowest patient id.
+         */
+        List<DuplicateCandidate> toCandidates(String runId, List<Record> records) {
+            Map<Integer, List<Integer>> members = new HashMap<>();
+            List<Integer> roots = new ArrayList<>();
+            for (int i = 0; i < parent.length; i++) {
+                if (bestScore[i] > 0) {
+                    int root = find(i);
+                    List<Integer> cluster = members.get(root);
+                    if (cluster == null) {
+                        cluster = new ArrayList<>();
+                        members.put(root, cluster);
+                        roots.add(root);
+                    }
+                    cluster.add(i);
+                }
+            }
+
+            List<DuplicateCandidate> candidates = new ArrayList<>();
+            int clusterId = 0;
+            for (Integer root : roots) {
+                clusterId++;
+                for (int i : members.get(root)) {
+                    double score = Math.round(bestScore[i] * 1000) / 1000.0;
+                    candidates.add(new DuplicateCandidate(runId, clusterId, records.get(i).id, score));
+                }
+            }
+            return candidates;
+        }
+    }
+
+    private static final class IntList {
+
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    // Matched pairs of record indices
+    private static final class PairList {
+
+        int[] first = new int[16];
+        int[] second = new int[16];
+        float[] scores = new float[16];
+        int size;
+
+        void add(int a, int b, float score) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            first[size] = a;
+            second[size] = b;
+            scores[size] = score;
+            size++;
+        }
+
+        void addAll(PairList other) {
+            for (int p = 0; p < other.size; p++) {
+                add(other.first[p], other.second[p], other.scores[p]);
+            }
+        }
+    }
+
+    // Matched pairs of patient ids, as checkpointed
+    private static final class IdPairs {
+
+        long[] first = new long[16];
+        long[] second = new long[16];
+        float[] scores = new float[16];
+        int size;
+
+        void add(long a, long b, float score) {
+            if (size == first.length) {
+                first = Arrays.copyOf(first, size * 2);
+                second = Arrays.copyOf(second, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            first[size] = a;
+            second[size] = b;
+            scores[size] = score;
+            size++;
+        }
+
+        void addAll(IdPairs other) {
+            for (int p = 0; p < other.size; p++) {
+                add(other.first[p], other.second[p], other.scores[p]);
+            }
+        }
+    }
+
+    /**
+     * Append-only text log of matched pairs, each segment closed by the key
+     * of the last block it covers. A segment without its closing line was
+     * interrupted and is ignored; its blocks are scored again.
+     */
+    private static final class Checkpoint {
+
+        final Path file;
+        final IdPairs pairs = new IdPairs();
+        String lastBlockKey; // Null if no segment was completed
+        int finishedClusters = -1;
+
+        private Checkpoint(Path file) {
+            this.file = file;
+        }
+
+        static Checkpoint load(Path file) throws IOException {
+            Checkpoint checkpoint = new Checkpoint(file);
+            if (!Files.exists(file)) {
+                return checkpoint;
+            }
+            IdPairs segment = new IdPairs();
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    try {
+                        if (fields[0].equals("pair") && fields.length == 4) {
+                            segment.add(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Float.parseFloat(fields[3]));
+                        } else if (fields[0].equals("after") && fields.length == 2) {
+                            checkpoint.pairs.addAll(segment);
+                            segment = new IdPairs();
+                            checkpoint.lastBlockKey = fields[1];
+                        } else if (fields[0].equals("done") && fields.length == 2) {
+                            checkpoint.finishedClusters = Integer.parseInt(fields[1]);
+                        }
+                    } catch (NumberFormatException e) {
+                        break; // Torn last line
+                    }
+                }
+            }
+            return checkpoint;
+        }
+
+        BufferedWriter openForAppend() throws IOException {
+            Files.createDirectories(file.getParent() != null ? file.getParent() : Paths.get("."));
+            FileOutputStream out = new FileOutputStream(file.toFile(), true);
+            return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                @Override
+                public void flush() throws IOException {
+                    super.flush();
+                    out.getFD().sync();
+                }
+            };
+        }
+
+        void append(BufferedWriter log, IdPairs found, String lastBlockKey) throws IOException {
+            for (int p = 0; p < found.size; p++) {
+                log.write("pair " + found.first[p] + " " + found.second[p] + " " + found.scores[p]);
+                log.newLine();
+            }
+            log.write("after " + lastBlockKey);
+            log.newLine();
+            log.flush();
+        }
+
+        void finish(BufferedWriter log, int clusters) throws IOException {
+            log.write("done " + clusters);
+            log.newLine();
+            log.flush();
+        }
+    }
+}
@@ -0,0 +1,713 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.search;
+
+import com.globemed.database.PatientChangeListener;
+import com.globemed.database.PatientDAO;
+import com.globemed.database.UncheckedSQLException;
+import com.globemed.models.Patient;
+import com.globemed.utils.SecurityUtils;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory n-gram index over patient name, phone and address, so the
+ * patient list can be searched without loading and decrypting every row in
+ * the client.
+ *
+ * Every word of the indexed text is split into overlapping three-character
+ * grams, padded at the front so one- and two-character word prefixes are
+ * grams too. A query intersects the posting lists of its grams and checks
+ * the remaining candidates against the text. Queries of three or more
+ * characters match anywhere in a field; shorter ones match the start of a
+ * word.
+ *
+ * Names can also be matched fuzzily, for misspellings: see
+ * {@link #fuzzySearch}.
+ *
+ * The index is built from {@link PatientDAO#streamAllPatients()} and then
+ * kept current as a {@link PatientChangeListener}. A changed patient gets a
+ * new document number and the old one is marked deleted; the space is
+ * reclaimed once deleted documents outnumber live ones.
+ *
+ * @author Hansana
+ */
+public class PatientSearchIndex implements PatientChangeListener {
+
+    public static final int DEFAULT_LIMIT = 200;
+
+    private static final int GRAM_LENGTH = 3;
+    private static final char PAD = '^';
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final int BUILD_BATCH = 4096;
+    private static final int MIN_COMPACTION = 1024;
+
+    // Match ranks, best first
+    private static final int NAME_START = 0;
+    private static final int NAME_WORD = 1;
+    private static final int NAME_ANYWHERE = 2;
+    private static final int PHONE = 3;
+    private static final int ADDRESS = 4;
+
+    // Fuzzy match costs per query word, best first
+    private static final byte EXACT = 0;
+    private static final byte ONE_EDIT = 2;
+    private static final byte SOUNDS_ALIKE = 3;
+    private static final byte TWO_EDITS = 4;
+    private static final byte NO_MATCH = Byte.MAX_VALUE;
+    private static final int MAX_FUZZY_WORDS = 4;
+
+    private static PatientSearchIndex instance;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Documents documents = new Documents(16); // Guarded by lock
+    private List<Change> pendingChanges; // Non-null while a rebuild runs; guarded by lock
+    private volatile boolean ready;
+
+    // Metrics
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder candidateCount = new LongAdder();
+    private final LongAdder changeCount = new LongAdder();
+    private final LongAdder fuzzyQueryCount = new LongAdder();
+    private final LongAdder fuzzyQueryNanos = new LongAdder();
+    private volatile long lastBuildMillis;
+
+    private PatientSearchIndex() {
+    }
+
+    public static synchronized PatientSearchIndex getInstance() {
+        if (instance == null) {
+            instance = new PatientSearchIndex();
+            PatientDAO.addPatientChangeListener(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * False until the first {@link #rebuild} has finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Build the index from the database and swap it in. Changes made while
+     * the build runs are applied to the new index before the swap.
+     */
+    public void rebuild(PatientDAO patientDAO) throws SQLException {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                throw new IllegalStateException("Patient search index is already being built");
+            }
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            Documents fresh = new Documents(1024);
+            try (Stream<Patient> patients = patientDAO.streamAllPatients()) {
+                Iterator<Patient> rows = patients.iterator();
+                List<Patient> batch = new ArrayList<>(BUILD_BATCH);
+                while (rows.hasNext()) {
+                    batch.add(rows.next());
+                    if (batch.size() == BUILD_BATCH || !rows.hasNext()) {
+                        SecurityUtils.decryptAll(batch);
+                        for (Patient patient : batch) {
+                            fresh.put(patient.getId(), documentText(patient));
+                        }
+                        batch.clear();
+                    }
+                }
+            } catch (UncheckedSQLException e) {
+                throw e.getCause();
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Change change : pendingChanges) {
+                    change.applyTo(fresh);
+                }
+                fresh.trim();
+                documents = fresh;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            pendingChanges = null;
+            lock.writeLock().unlock();
+        }
+
+        lastBuildMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Patient search index built: " + size() + " patients in " + lastBuildMillis + "ms");
+    }
+
+    @Override
+    public void onPatientSaved(Patient patient) {
+        // The listener gets its own copy, so it can be decrypted in place
+        SecurityUtils.decryptPatient(patient);
+        apply(new Change(patient.getId(), documentText(patient)));
+    }
+
+    @Override
+    public void onPatientDeleted(Long patientId) {
+        apply(new Change(patientId, null));
+    }
+
+    private void apply(Change change) {
+        changeCount.increment();
+        lock.writeLock().lock();
+        try {
+            change.applyTo(documents);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+            if (documents.needsCompaction()) {
+                documents = documents.compacted();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} patients whose name, phone or address
+     * contains the query, name matches first and then in index order (id
+     * order, except that changed patients move to the end). Case and
+     * punctuation are ignored.
+     */
+    public List<Long> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        long start = System.nanoTime();
+        long[] grams = queryGrams(normalized);
+        boolean wordPrefixOnly = normalized.length() < GRAM_LENGTH && normalized.indexOf(' ') < 0;
+        // Largest key on top, so the worst of the current best is dropped first
+        PriorityQueue<Long> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, Comparator.reverseOrder());
+
+        List<Long> ids;
+        lock.readLock().lock();
+        try {
+            int[] candidates = documents.candidates(grams);
+            candidateCount.add(candidates.length);
+            for (int doc : candidates) {
+                String text = documents.texts[doc];
+                if (text == null) {
+                    continue; // Deleted
+                }
+                int rank = rank(text, normalized, wordPrefixOnly);
+                if (rank < 0) {
+                    continue;
+                }
+                long key = ((long) rank << 32) | doc;
+                if (best.size() < limit) {
+                    best.add(key);
+                } else if (key < best.peek()) {
+                    best.poll();
+                    best.add(key);
+                }
+                if (best.size() == limit && best.peek() >>> 32 == NAME_START) {
+                    break; // Candidates come in index order, so none later can rank higher
+                }
+            }
+
+            long[] keys = new long[best.size()];
+            int i = 0;
+            for (Long key : best) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            ids = new ArrayList<>(keys.length);
+            for (long key : keys) {
+                ids.add(documents.ids[(int) key]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        queryCount.increment();
+        queryNanos.add(System.nanoTime() - start);
+        return ids;
+    }
+
+    /**
+     * Ids of up to {@code limit} patients whose name has a word like each
+     * word of the query: within one edit for words of three to five
+     * letters, two edits for longer words, or with the same Double
+     * Metaphone key. Closest matches first, then in index order.
+     *
+     * The query's words are compared against each distinct name word once,
+     * giving a cost per word; patients are then scored from the word ids
+     * stored for their names, without touching their text.
+     */
+    public List<Long> fuzzySearch(String query, int limit) {
+        String[] words = normalize(query).split(" ");
+        if (words[0].isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (words.length > MAX_FUZZY_WORDS) {
+            words = Arrays.copyOf(words, MAX_FUZZY_WORDS);
+        }
+
+        long start = System.nanoTime();
+        PriorityQueue<Long> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, Comparator.reverseOrder());
+        List<Long> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Documents docs = documents;
+            byte[][] costs = new byte[words.length][];
+            for (int w = 0; w < words.length; w++) {
+                costs[w] = docs.termCosts(words[w]);
+                if (costs[w] == null) {
+                    return ids; // Nothing like this word in any name
+                }
+            }
+
+            for (int doc = 0; doc < docs.count; doc++) {
+                if (docs.texts[doc] == null) {
+                    continue;
+                }
+                int from = docs.nameOffsets[doc];
+                int to = docs.nameOffsets[doc + 1];
+                int total = 0;
+                for (int w = 0; w < costs.length && total >= 0; w++) {
+                    byte[] wordCosts = costs[w];
+                    int wordBest = NO_MATCH;
+                    for (int k = from; k < to; k++) {
+                        wordBest = Math.min(wordBest, wordCosts[docs.nameTerms[k]]);
+                    }
+                    total = wordBest == NO_MATCH ? -1 : total + wordBest;
+                }
+                if (total < 0) {
+                    continue;
+                }
+                long key = ((long) total << 32) | doc;
+                if (best.size() < limit) {
+                    best.add(key);
+                } else if (key < best.peek()) {
+                    best.poll();
+                    best.add(key);
+                }
+                if (best.size() == limit && best.peek() >>> 32 == EXACT) {
+                    break;
+                }
+            }
+
+            long[] keys = new long[best.size()];
+            int i = 0;
+            for (Long key : best) {
+                keys[i++] = key;
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                ids.add(docs.ids[(int) key]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        fuzzyQueryCount.increment();
+        fuzzyQueryNanos.add(System.nanoTime() - start);
+        return ids;
+    }
+
+    // No edits for one- and two-letter words; they would match too much
+    private static int maxEdits(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.liveCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void printStatistics() {
+        long queries = queryCount.sum();
+        lock.readLock().lock();
+        try {
+            System.out.println("Patient Search Index Statistics:");
+            System.out.println("  Patients: " + documents.liveCount() + " (" + documents.deletedCount
+                    + " deleted documents awaiting compaction), ready: " + ready);
+            System.out.println("  Grams: " + documents.postings.size() + ", posting bytes: " + documents.postingBytes());
+            System.out.println("  Distinct name words: " + documents.termCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+        System.out.println(String.format("  Queries: %d, avg %.2fms, avg candidates %.1f",
+                queries, queries == 0 ? 0.0 : queryNanos.sum() / 1e6 / queries,
+                queries == 0 ? 0.0 : (double) candidateCount.sum() / queries));
+        long fuzzyQueries = fuzzyQueryCount.sum();
+        System.out.println(String.format("  Fuzzy queries: %d, avg %.2fms",
+                fuzzyQueries, fuzzyQueries == 0 ? 0.0 : fuzzyQueryNanos.sum() / 1e6 / fuzzyQueries));
+        System.out.println("  Changes applied: " + changeCount.sum() + ", last build: " + lastBuildMillis + "ms");
+    }
+
+    // Name, phone as written, phone digits only, address
+    private static String documentText(Patient patient) {
+        return normalize(patient.getName()) + FIELD_SEPARATOR
+                + normalize(patient.getPhone()) + FIELD_SEPARATOR
+                + digitsOf(patient.getPhone()) + FIELD_SEPARATOR
+                + normalize(patient.getAddress());
+    }
+
+    /**
+     * Lower case, with every run of characters other than letters and
+     * digits replaced by one space.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String digitsOf(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    private static long gram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // Grams of every word in the text, each once, ascending
+    private static long[] documentGrams(String text) {
+        long[] grams = new long[text.length()];
+        int count = 0;
+        int wordStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ' || text.charAt(i) == FIELD_SEPARATOR) {
+                if (i > wordStart) {
+                    count = addWordGrams(text, wordStart, i, true, grams, count);
+                }
+                wordStart = i + 1;
+            }
+        }
+        return distinct(grams, count);
+    }
+
+    // A word padded at the front also yields grams for its one- and two-character prefixes
+    private static int addWordGrams(String text, int from, int to, boolean padded, long[] grams, int count) {
+        char a = padded ? PAD : 0;
+        char b = padded ? PAD : 0;
+        int skip = padded ? 0 : 2;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (skip > 0) {
+                skip--;
+            } else {
+                grams[count++] = gram(a, b, c);
+            }
+            a = b;
+            b = c;
+        }
+        return count;
+    }
+
+    private static long[] queryGrams(String query) {
+        String[] words = query.split(" ");
+        long[] grams = new long[query.length()];
+        int count = 0;
+        int position = 0;
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int from = position;
+            int to = position + word.length();
+            position = to + 1;
+            if (w > 0) {
+                // Every word after the first starts a word in the text
+                count = addWordGrams(query, from, to, true, grams, count);
+            } else if (word.length() >= GRAM_LENGTH) {
+                // The first word may end a longer word in the text
+                count = addWordGrams(query, from, to, false, grams, count);
+            } else if (words.length == 1) {
+                // A short query on its own matches word prefixes
+                count = addWordGrams(query, from, to, true, grams, count);
+            }
+        }
+        return distinct(grams, count);
+    }
+
+    private static long[] distinct(long[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || values[i] != values[unique - 1]) {
+                values[unique++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, unique);
+    }
+
+    /**
+     * Rank of the best match of the query in the text, or -1 for none.
+     */
+    private static int rank(String text, String query, boolean wordPrefixOnly) {
+        int nameEnd = text.indexOf(FIELD_SEPARATOR);
+        int phoneEnd = text.indexOf(FIELD_SEPARATOR, text.indexOf(FIELD_SEPARATOR, nameEnd + 1) + 1);
+        int best = -1;
+        for (int at = text.indexOf(query); at >= 0; at = text.indexOf(query, at + 1)) {
+            boolean wordStart = at == 0 || text.charAt(at - 1) == ' ' || text.charAt(at - 1) == FIELD_SEPARATOR;
+            if (wordPrefixOnly && !wordStart) {
+                continue;
+            }
+            int rank;
+            if (at < nameEnd) {
+                rank = at == 0 ? NAME_START : wordStart ? NAME_WORD : NAME_ANYWHERE;
+            } else {
+                rank = at < phoneEnd ? PHONE : ADDRESS;
+            }
+            if (best < 0 || rank < best) {
+                best = rank;
+            }
+            if (best == NAME_START || at >= nameEnd) {
+                break; // Later matches cannot rank better
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Stored text and posting lists. Document numbers only grow, so every
+     * posting list stays sorted as documents are added.
+     *
+     * For fuzzy matching each distinct name word is a term with its
+     * phonetic keys, and each document's name is a run of term ids in
+     * {@code nameTerms}, from {@code nameOffsets[doc]} to
+     * {@code nameOffsets[doc + 1]}.
+     */
+    private static final class Documents {
+
+        long[] ids;
+        String[] texts; // Null for deleted documents
+        int count;
+        int deletedCount;
+        final LongIntMap docByPatient;
+        final Map<Long, Postings> postings = new HashMap<>();
+
+        final Map<String, Integer> termIds = new HashMap<>();
+        char[][] terms = new char[256][];
+        int[] termKeys = new int[256]; // Packed Double Metaphone keys
+        int termCount;
+        int[] nameOffsets;
+        int[] nameTerms;
+        int nameTermCount;
+
+        Documents(int capacity) {
+            ids = new long[capacity];
+            texts = new String[capacity];
+            nameOffsets = new int[capacity + 1];
+            nameTerms = new int[capacity * 2];
+            docByPatient = new LongIntMap(capacity);
+        }
+
+        void put(long patientId, String text) {
+            remove(patientId);
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                texts = Arrays.copyOf(texts, count * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, count * 2 + 1);
+            }
+            int doc = count++;
+            ids[doc] = patientId;
+            texts[doc] = text;
+            docByPatient.put(patientId, doc);
+            for (long gram : documentGrams(text)) {
+                postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+            }
+
+            String name = text.substring(0, text.indexOf(FIELD_SEPARATOR));
+            for (String word : name.split(" ")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                if (nameTermCount == nameTerms.length) {
+                    nameTerms = Arrays.copyOf(nameTerms, nameTermCount * 2);
+                }
+                nameTerms[nameTermCount++] = termId(word);
+            }
+            nameOffsets[doc + 1] = nameTermCount;
+        }
+
+        private int termId(String word) {
+            Integer id = termIds.get(word);
+            if (id != null) {
+                return id;
+            }
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                termKeys = Arrays.copyOf(termKeys, termCount * 2);
+            }
+            terms[termCount] = word.toCharArray();
+            termKeys[termCount] = DoubleMetaphone.encode(word);
+            termIds.put(word, termCount);
+            return termCount++;
+        }
+
+        /**
+         * Cost of matching the word against every term, or null if no term
+         * is close enough.
+         */
+        byte[] termCosts(String word) {
+            char[] chars = word.toCharArray();
+            int keys = DoubleMetaphone.encode(word);
+            int max = maxEdits(chars.length);
+            int longest = chars.length + max;
+            int[][] rows = {new int[longest + 1], new int[longest + 1], new int[longest + 1]};
+            byte[] costs = new byte[termCount];
+            boolean any = false;
+            for (int t = 0; t < termCount; t++) {
+                char[] term = terms[t];
+                byte cost = NO_MATCH;
+                if (term.length <= longest) {
+                    int distance = BoundedEditDistance.distance(chars, term, max, rows);
+                    if (distance <= max) {
+                        cost = distance == 0 ? EXACT : distance == 1 ? ONE_EDIT : TWO_EDITS;
+                    }
+                }
+                if (cost > SOUNDS_ALIKE && DoubleMetaphone.soundAlike(keys, termKeys[t])) {
+                    cost = SOUNDS_ALIKE;
+                }
+                costs[t] = cost;
+                any |= cost != NO_MATCH;
+            }
+            return any ? costs : null;
+        }
+
+        void remove(long patientId) {
+            int doc = docByPatient.remove(patientId);
+            if (doc != LongIntMap.MISSING) {
+                texts[doc] = null;
+                deletedCount++;
+            }
+        }
+
+        int liveCount() {
+            return count - deletedCount;
+        }
+
+        boolean needsCompaction() {
+            return deletedCount >= MIN_COMPACTION && deletedCount > liveCount();
+        }
+
+        Documents compacted() {
+            Documents compacted = new Documents(Math.max(16, liveCount()));
+            for (int doc = 0; doc < count; doc++) {
+                if (texts[doc] != null) {
+                    compacted.put(ids[doc], texts[doc]);
+                }
+            }
+            return compacted;
+        }
+
+        /**
+         * Documents holding every gram; all live documents if there are no
+         * grams. May include deleted documents.
+         */
+        int[] candidates(long[] grams) {
+            if (grams.length == 0) {
+                int[] all = new int[count];
+                for (int doc = 0; doc < count; doc++) {
+                    all[doc] = doc;
+                }
+                return all;
+            }
+
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            // Start from the rarest gram so every later pass has the fewest candidates
+            Arrays.sort(lists, Comparator.comparingInt(Postings::size));
+            int[] candidates = lists[0].toArray();
+            for (int i = 1; i < lists.length && candidates.length > 0; i++) {
+                candidates = lists[i].retain(candidates, candidates.length);
+            }
+            return candidates;
+        }
+
+        void trim() {
+            for (Postings list : postings.values()) {
+                list.trim();
+            }
+        }
+
+        long postingBytes() {
+            long bytes = 0;
+            for (Postings list : postings.values()) {
+                bytes += list.memoryBytes();
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Change {
+
+        final long patientId;
+        final String text; // Null for a deletion
+
+        Change(long patientId, String text) {
+            this.patientId = patientId;
+            this.text = text;
+        }
+
+        void applyTo(Documents documents) {
+            if (text == null) {
+                documents.remove(patientId);
+            } else {
+                documents.put(patientId, text);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.search;
+
+import java.util.Arrays;
+
+/**
+ * Ascending document numbers for one n-gram, stored as variable-length
+ * gaps. Common n-grams have small gaps, so most entries take one byte.
+ *
+ * @author Hansana
+ */
+class Postings {
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int count;
+    private int last = -1;
+
+    /**
+     * Documents must be added in ascending order.
+     */
+    void add(int doc) {
+        if (doc <= last) {
+            throw new IllegalArgumentException("Postings must be added in order: " + doc + " after " + last);
+        }
+        int gap = doc - last;
+        last = doc;
+        count++;
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+        }
+        while ((gap & ~0x7F) != 0) {
+            data[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        data[length++] = (byte) gap;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int[] toArray() {
+        int[] docs = new int[count];
+        int doc = -1;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * The documents of {@code candidates} (ascending) that are also in this
+     * list, in one pass over both.
+     */
+    int[] retain(int[] candidates, int candidateCount) {
+        int[] kept = new int[Math.min(candidateCount, count)];
+        int keptCount = 0;
+        int doc = -1;
+        int position = 0;
+        int remaining = count;
+        int c = 0;
+        while (c < candidateCount && remaining > 0) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            remaining--;
+            while (c < candidateCount && candidates[c] < doc) {
+                c++;
+            }
+            if (c < candidateCount && candidates[c] == doc) {
+                kept[keptCount++] = doc;
+                c++;
+            }
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    long memoryBytes() {
+        return data.length + 32;
+    }
+
+    void trim() {
+        data = Arrays.copyOf(data, length);
+    }
+}
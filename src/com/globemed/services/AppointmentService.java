@@ -9,7 +9,11 @@ import com.globemed.patterns.observer.*;
 import com.globemed.models.Appointment;
 import com.globemed.models.Patient;
 import com.globemed.models.Staff;
+import com.globemed.scheduling.AvailableSlot;
+import com.globemed.scheduling.SlotFinder;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,12 +28,14 @@ public class AppointmentService {
     private Map<Long, PatientComponent> patientComponents;
     private Map<Long, DoctorComponent> doctorComponents;
     private Map<String, RoomComponent> roomComponents;
+    private SlotFinder slotFinder;
 
     public AppointmentService() {
         this.mediator = new ConcreteAppointmentMediator();
         this.patientComponents = new HashMap<>();
         this.doctorComponents = new HashMap<>();
         this.roomComponents = new HashMap<>();
+        this.slotFinder = new SlotFinder();
 
         // Set up default rooms
         initializeDefaultRooms();
@@ -47,9 +53,9 @@ public class AppointmentService {
         PatientComponent patientComponent = new PatientComponent(mediator, patient);
         patientComponents.put(patient.getId(), patientComponent);
 
-        // Set up patient observer
+        // Set up patient observer, indexed so it only hears about this patient
         PatientObserver patientObserver = new PatientObserver(patient);
-        mediator.getAppointmentSubject().attach(patientObserver);
+        mediator.getAppointmentSubject().attachPatientObserver(patient.getId(), patientObserver);
 
         System.out.println("Patient " + patient.getName() + " registered in appointment system");
     }
@@ -58,9 +64,9 @@ public class AppointmentService {
         DoctorComponent doctorComponent = new DoctorComponent(mediator, doctor);
         doctorComponents.put(doctor.getId(), doctorComponent);
 
-        // Set up doctor observer
+        // Set up doctor observer, indexed so it only hears about this doctor
         DoctorObserver doctorObserver = new DoctorObserver(doctor);
-        mediator.getAppointmentSubject().attach(doctorObserver);
+        mediator.getAppointmentSubject().attachStaffObserver(doctor.getId(), doctorObserver);
 
         System.out.println("Doctor " + doctor.getName() + " registered in appointment system");
     }
@@ -105,6 +111,21 @@ public class AppointmentService {
                 && mediator.checkRoomAvailability(location, time);
     }
 
+    /**
+     * First {@code count} start times in the window at which one of the
+     * doctors and one of the rooms are both free for the given duration.
+     * Returns an empty list if the booked calendars cannot be loaded.
+     */
+    public List<AvailableSlot> findAvailableSlots(List<Long> staffIds, List<String> rooms, LocalDateTime windowStart,
+            LocalDateTime windowEnd, int durationMinutes, int count) {
+        try {
+            return slotFinder.findAvailableSlots(staffIds, rooms, windowStart, windowEnd, durationMinutes, count);
+        } catch (SQLException e) {
+            System.err.println("Error finding available slots: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
     public List<String> getAvailableRooms() {
         return roomComponents.keySet().stream().collect(java.util.stream.Collectors.toList());
     }
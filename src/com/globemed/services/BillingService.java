@@ -2,6 +2,9 @@ package com.globemed.services;
 
 import com.globemed.database.BillDAO;
 import com.globemed.database.AppointmentDAO;
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Bill;
 import com.globemed.models.BillItem;
 import com.globemed.models.Appointment;
@@ -12,6 +15,7 @@ import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.time.LocalDate;
 
 public class BillingService {
@@ -42,6 +46,10 @@ public class BillingService {
         return billDAO.getAllBills();
     }
 
+    public Page<Bill> getBillPage(PageCursor cursor, int limit) throws SQLException {
+        return billDAO.fetchPage(cursor, limit, SortDirection.ASCENDING);
+    }
+
     public Bill getBillById(Long id) throws SQLException {
         return billDAO.getBillById(id);
     }
@@ -261,37 +269,32 @@ public class BillingService {
     }
 
     public List<Bill> searchBills(String claimStatus, LocalDate fromDate, LocalDate toDate) throws SQLException {
-        // This would require additional DAO methods for complex searches
-        List<Bill> allBills = billDAO.getAllBills();
-        List<Bill> filteredBills = new ArrayList<>();
-
-        for (Bill bill : allBills) {
-            boolean matches = true;
+        return billDAO.searchBills(claimStatus, fromDate, toDate);
+    }
 
-            if (claimStatus != null && !claimStatus.isEmpty()) {
-                matches = matches && claimStatus.equals(bill.getClaimStatus());
-            }
+    public BigDecimal calculateTotalRevenue() throws SQLException {
+        return calculateRevenue(null, null);
+    }
 
-            // Additional date filtering would require appointment data
-            if (matches) {
-                filteredBills.add(bill);
-            }
-        }
+    // Revenue from PAID bills whose appointment falls in the range (either bound may be null)
+    public BigDecimal calculateRevenue(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return billDAO.sumTotalsByStatus(fromDate, toDate).getOrDefault("PAID", BigDecimal.ZERO);
+    }
 
-        return filteredBills;
+    public Map<String, BigDecimal> getTotalsByStatus(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return billDAO.sumTotalsByStatus(fromDate, toDate);
     }
 
-    public BigDecimal calculateTotalRevenue() throws SQLException {
-        List<Bill> allBills = billDAO.getAllBills();
-        BigDecimal total = BigDecimal.ZERO;
+    public Map<String, Long> getBillCountsByStatus(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return billDAO.countByStatus(fromDate, toDate);
+    }
 
-        for (Bill bill : allBills) {
-            if ("PAID".equals(bill.getClaimStatus())) {
-                total = total.add(bill.getTotalAmount());
-            }
-        }
+    public Map<LocalDate, BigDecimal> getPaidRevenueByDay(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return billDAO.sumRevenueByDay("PAID", fromDate, toDate);
+    }
 
-        return total;
+    public Map<String, BigDecimal> getPaidRevenueByItemType(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        return billDAO.sumRevenueByItemType("PAID", fromDate, toDate);
     }
 
     public void deleteBill(Long billId) throws SQLException {
@@ -9,6 +9,7 @@ import com.globemed.database.*;
 import com.globemed.patterns.visitor.*;
 import com.globemed.patterns.builder.*;
 import com.globemed.patterns.bridge.PermissionImplementor;
+import com.globemed.utils.SecurityUtils;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -40,6 +41,8 @@ public class ReportService {
         if (patient == null) {
             throw new IllegalArgumentException("Patient not found with ID: " + patientId);
         }
+        // Stored fields are encrypted; reports show the clear values
+        SecurityUtils.decryptPatient(patient);
 
         Appointment appointment = appointmentDAO.getAppointmentById(appointmentId);
         if (appointment == null) {
@@ -63,6 +66,7 @@ public class ReportService {
         if (patient == null) {
             throw new IllegalArgumentException("Patient not found with ID: " + patientId);
         }
+        SecurityUtils.decryptPatient(patient);
 
         List<Bill> bills = billDAO.getBillsByPatientIdAndDateRange(patientId, startDate, endDate);
 
@@ -81,6 +85,7 @@ public class ReportService {
         if (patient == null) {
             throw new IllegalArgumentException("Patient not found with ID: " + patientId);
         }
+        SecurityUtils.decryptPatient(patient);
 
         Appointment appointment = appointmentDAO.getAppointmentById(appointmentId);
         if (appointment == null) {
@@ -106,6 +111,26 @@ public class ReportService {
         return reportDAO.getAllReports();
     }
 
+    // Get one page of reports, newest first
+    public Page<Report> getReportPage(PageCursor cursor, int limit) throws SQLException {
+        return reportDAO.fetchPage(cursor, limit, SortDirection.DESCENDING);
+    }
+
+    // Get one page of report listings (no content), newest first
+    public Page<ReportSummary> getReportSummaryPage(PageCursor cursor, int limit) throws SQLException {
+        return reportDAO.fetchSummaryPage(cursor, limit, SortDirection.DESCENDING);
+    }
+
+    // Get report listings by type
+    public List<ReportSummary> getReportSummariesByType(String type) throws SQLException {
+        return reportDAO.getReportSummariesByType(type);
+    }
+
+    // Get one report with its content
+    public Report getReportById(Long reportId) throws SQLException {
+        return reportDAO.getReportById(reportId);
+    }
+
     // Get reports by type
     public List<Report> getReportsByType(String type) throws SQLException {
         return reportDAO.getReportsByType(type);
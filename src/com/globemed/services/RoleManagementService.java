@@ -6,6 +6,9 @@ package com.globemed.services;
 
 import com.globemed.patterns.composite.*;
 import com.globemed.patterns.bridge.*;
+import com.globemed.patterns.flyweight.PermissionBitSet;
+import com.globemed.database.RoleChangeListener;
+import com.globemed.database.RoleDAO;
 import com.globemed.models.Staff;
 import java.util.*;
 
@@ -13,17 +16,28 @@ import java.util.*;
  *
  * @author Hansana
  */
-public class RoleManagementService {
+public class RoleManagementService implements RoleChangeListener {
+
+    // Compiled permissions older than this are rebuilt, which picks up
+    // changes made in the database without going through RoleDAO
+    private static final long RECOMPILE_AFTER_MS = 60 * 1000;
 
     private Map<String, RoleComponent> roleHierarchy;
     private PermissionImplementor defaultPermissionImpl;
     private Map<String, RoleAbstraction> bridgeRoles;
+    // Effective permissions per role name, flattened over the hierarchy.
+    // Rebuilt as a whole whenever roles or their permissions change.
+    private volatile Map<String, PermissionBitSet> compiledPermissions;
+    private volatile boolean compiledStale;
+    private volatile long compiledAt;
+    private long compileCount;
 
     public RoleManagementService(PermissionImplementor permissionImpl) {
         this.roleHierarchy = new HashMap<>();
         this.defaultPermissionImpl = permissionImpl;
         this.bridgeRoles = new HashMap<>();
         initializeDefaultRoles();
+        RoleDAO.addRoleChangeListener(this);
     }
 
     private void initializeDefaultRoles() {
@@ -75,6 +89,7 @@ public class RoleManagementService {
 
         // Create bridge roles for flexible permission management
         createBridgeRoles();
+        recompilePermissions();
 
         System.out.println("Default role hierarchy initialized with " + roleHierarchy.size() + " roles");
     }
@@ -142,14 +157,62 @@ public class RoleManagementService {
         }
     }
 
+    /**
+     * Flatten every role's effective permissions (its own plus everything
+     * inherited from sub-roles) into bitsets. Each role is visited once even
+     * when it appears under several parents.
+     */
+    public synchronized void recompilePermissions() {
+        // Cleared first so a change arriving mid-compile marks it stale again
+        compiledStale = false;
+        compiledAt = System.currentTimeMillis();
+        Map<RoleComponent, PermissionBitSet> visited = new IdentityHashMap<>();
+        Map<String, PermissionBitSet> compiled = new HashMap<>();
+        for (Map.Entry<String, RoleComponent> entry : roleHierarchy.entrySet()) {
+            compiled.put(entry.getKey(), compile(entry.getValue(), visited));
+        }
+        compiledPermissions = compiled;
+        compileCount++;
+    }
+
+    private PermissionBitSet compile(RoleComponent role, Map<RoleComponent, PermissionBitSet> visited) {
+        PermissionBitSet bits = visited.get(role);
+        if (bits != null) {
+            return bits;
+        }
+        bits = PermissionBitSet.of(role.getOwnPermissions());
+        for (RoleComponent subRole : role.getSubRoles()) {
+            bits = bits.union(compile(subRole, visited));
+        }
+        visited.put(role, bits);
+        return bits;
+    }
+
+    /**
+     * Role permissions changed through RoleDAO; the bitsets are rebuilt on
+     * the next check, after every implementor cache has seen the change.
+     */
+    @Override
+    public void onRolePermissionsChanged(String roleName) {
+        compiledStale = true;
+    }
+
+    private Map<String, PermissionBitSet> currentPermissions() {
+        if (compiledStale || System.currentTimeMillis() - compiledAt > RECOMPILE_AFTER_MS) {
+            recompilePermissions();
+        }
+        return compiledPermissions;
+    }
+
+    private PermissionBitSet getCompiledPermissions(String roleName) {
+        PermissionBitSet bits = roleName == null ? null : currentPermissions().get(roleName);
+        return bits != null ? bits : PermissionBitSet.EMPTY;
+    }
+
     // Public methods for role management
     public boolean checkPermission(Staff staff, String permission) {
         try {
-            RoleComponent role = getRoleById(staff.getRoleId());
-            if (role != null) {
-                return role.hasPermission(permission);
-            }
-            return false;
+            return getCompiledPermissions(getRoleNameById(staff.getRoleId())).contains(permission);
         } catch (Exception e) {
             System.err.println("Error checking permission: " + e.getMessage());
             return false;
@@ -157,11 +220,7 @@ public class RoleManagementService {
     }
 
     public Set<String> getStaffPermissions(Staff staff) {
-        RoleComponent role = getRoleById(staff.getRoleId());
-        if (role != null) {
-            return role.getAllPermissions();
-        }
-        return new HashSet<>();
+        return new HashSet<>(getCompiledPermissions(getRoleNameById(staff.getRoleId())).toNames());
     }
 
     public RoleComponent getRoleByName(String roleName) {
@@ -169,21 +228,26 @@ public class RoleManagementService {
     }
 
     public RoleComponent getRoleById(Long roleId) {
+        String roleName = getRoleNameById(roleId);
+        return roleName != null ? roleHierarchy.get(roleName) : null;
+    }
+
+    private String getRoleNameById(Long roleId) {
         // In a real system, you'd query the database by ID
         // For this example, we'll use a simple mapping
         switch (roleId.intValue()) {
             case 1:
-                return roleHierarchy.get("Administrator");
+                return "Administrator";
             case 2:
-                return roleHierarchy.get("Doctor");
+                return "Doctor";
             case 3:
-                return roleHierarchy.get("Nurse");
+                return "Nurse";
             case 4:
-                return roleHierarchy.get("Pharmacist");
+                return "Pharmacist";
             case 5:
-                return roleHierarchy.get("Surgeon");
+                return "Surgeon";
             case 6:
-                return roleHierarchy.get("Specialist");
+                return "Specialist";
             default:
                 return null;
         }
@@ -210,6 +274,7 @@ public class RoleManagementService {
             // Create bridge role
             ConcreteRole bridgeRole = new ConcreteRole(roleName, description, defaultPermissionImpl);
             bridgeRoles.put(roleName, bridgeRole);
+            recompilePermissions();
 
             System.out.println("Added custom role: " + roleName + " under " + parentRoleName);
         } else {
@@ -221,6 +286,7 @@ public class RoleManagementService {
         RoleAbstraction bridgeRole = bridgeRoles.get(roleName);
         if (bridgeRole != null) {
             bridgeRole.addPermission(permission);
+            recompilePermissions();
             System.out.println("Added permission '" + permission + "' to role '" + roleName + "'");
         } else {
             System.out.println("Role not found: " + roleName);
@@ -231,6 +297,7 @@ public class RoleManagementService {
         RoleAbstraction bridgeRole = bridgeRoles.get(roleName);
         if (bridgeRole != null) {
             bridgeRole.removePermission(permission);
+            recompilePermissions();
             System.out.println("Removed permission '" + permission + "' from role '" + roleName + "'");
         } else {
             System.out.println("Role not found: " + roleName);
@@ -241,6 +308,7 @@ public class RoleManagementService {
         ConcreteRole bridgeRole = (ConcreteRole) bridgeRoles.get(roleName);
         if (bridgeRole != null) {
             bridgeRole.migrateTo(newImplementor);
+            recompilePermissions();
         } else {
             System.out.println("Role not found: " + roleName);
         }
@@ -252,9 +320,18 @@ public class RoleManagementService {
 
     public Map<String, Set<String>> getRolePermissionMatrix() {
         Map<String, Set<String>> matrix = new HashMap<>();
-        for (Map.Entry<String, RoleComponent> entry : roleHierarchy.entrySet()) {
-            matrix.put(entry.getKey(), entry.getValue().getAllPermissions());
+        for (Map.Entry<String, PermissionBitSet> entry : currentPermissions().entrySet()) {
+            matrix.put(entry.getKey(), new HashSet<>(entry.getValue().toNames()));
         }
         return matrix;
     }
+
+    public void printStatistics() {
+        System.out.println("Role Permission Statistics:");
+        System.out.println("  Roles compiled: " + compiledPermissions.size()
+                + " (recompiled " + compileCount + " times)");
+        for (Map.Entry<String, PermissionBitSet> entry : compiledPermissions.entrySet()) {
+            System.out.println("  - " + entry.getKey() + ": " + entry.getValue().cardinality() + " permissions");
+        }
+    }
 }
@@ -6,8 +6,12 @@ package com.globemed.services;
 
 import com.globemed.patterns.chainofresponsibility.*;
 import com.globemed.patterns.decorator.*;
+import com.globemed.database.Page;
+import com.globemed.database.PageCursor;
+import com.globemed.database.SortDirection;
 import com.globemed.models.Patient;
 import com.globemed.models.Staff;
+import com.globemed.search.PatientSearchIndex;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -73,6 +77,51 @@ public class SecurePatientService {
         return secureService.getAllPatients();
     }
 
+    public Page<Patient> getPatientPage(PageCursor cursor, int limit) throws SQLException, SecurityException {
+        AccessRequest request = new AccessRequest(currentUser, "VIEW", null, "127.0.0.1");
+        AccessResult accessResult = accessChain.handle(request);
+
+        if (!accessResult.isGranted()) {
+            throw new SecurityException("Access denied: " + accessResult.getMessage());
+        }
+
+        return secureService.getPatientPage(cursor, limit, SortDirection.ASCENDING);
+    }
+
+    /**
+     * Patients whose name, phone or address contains the query, best
+     * matches first. Only the matching rows are read from the database.
+     */
+    public List<Patient> searchPatients(String query, int limit) throws SQLException, SecurityException {
+        AccessRequest request = new AccessRequest(currentUser, "VIEW", null, "127.0.0.1");
+        AccessResult accessResult = accessChain.handle(request);
+
+        if (!accessResult.isGranted()) {
+            throw new SecurityException("Access denied: " + accessResult.getMessage());
+        }
+
+        return secureService.getPatientsByIds(PatientSearchIndex.getInstance().search(query, limit));
+    }
+
+    /**
+     * Patients whose name is spelled or sounds like the query, closest
+     * first, for when an exact search finds little.
+     */
+    public List<Patient> findSimilarPatients(String query, int limit) throws SQLException, SecurityException {
+        AccessRequest request = new AccessRequest(currentUser, "VIEW", null, "127.0.0.1");
+        AccessResult accessResult = accessChain.handle(request);
+
+        if (!accessResult.isGranted()) {
+            throw new SecurityException("Access denied: " + accessResult.getMessage());
+        }
+
+        return secureService.getPatientsByIds(PatientSearchIndex.getInstance().fuzzySearch(query, limit));
+    }
+
+    public boolean isSearchReady() {
+        return PatientSearchIndex.getInstance().isReady();
+    }
+
     public Long createPatient(Patient patient) throws SQLException, SecurityException {
         AccessRequest request = new AccessRequest(currentUser, "CREATE", null, "127.0.0.1");
         AccessResult accessResult = accessChain.handle(request);
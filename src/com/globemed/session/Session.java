@@ -0,0 +1,70 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.session;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * An authenticated session held by {@link SessionRegistry}. A session
+ * expires once it has been idle for longer than its timeout.
+ *
+ * @author Hansana
+ */
+public final class Session {
+
+    private final String token;
+    private final String username;
+    private final long createdAtMillis;
+    private final long idleTimeoutMillis;
+    private volatile long lastAccessMillis;
+
+    Session(String token, String username, long idleTimeoutMillis, long nowMillis) {
+        this.token = token;
+        this.username = username;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.createdAtMillis = nowMillis;
+        this.lastAccessMillis = nowMillis;
+    }
+
+    void touch(long nowMillis) {
+        // A plain write: concurrent touches only race to store a similar time
+        lastAccessMillis = nowMillis;
+    }
+
+    long getExpiresAtMillis() {
+        return lastAccessMillis + idleTimeoutMillis;
+    }
+
+    boolean isExpired(long nowMillis) {
+        return nowMillis >= getExpiresAtMillis();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis), ZoneId.systemDefault());
+    }
+
+    public LocalDateTime getLastAccess() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastAccessMillis), ZoneId.systemDefault());
+    }
+
+    @Override
+    public String toString() {
+        return "Session{user=" + username + ", lastAccess=" + getLastAccess() + "}";
+    }
+}
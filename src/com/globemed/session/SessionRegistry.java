@@ -0,0 +1,202 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.session;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authenticated sessions shared by every workstation in the process.
+ *
+ * Sessions are looked up by token in a concurrent map. Idle expiry is driven
+ * by a {@link TimingWheel} advanced once per tick by a daemon thread, so the
+ * cost of expiry does not grow with the number of sessions. Touching a
+ * session only updates its last-access time; when the wheel fires for a
+ * session that has been used since it was scheduled, it is rescheduled for
+ * its new deadline instead of expiring. Lookups check the deadline too, so a
+ * session is never accepted after its timeout even between ticks.
+ *
+ * @author Hansana
+ */
+public class SessionRegistry {
+
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    private static final int TOKEN_BYTES = 32;
+
+    private static SessionRegistry instance;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final TimingWheel<Session> wheel;
+    private final ScheduledExecutorService ticker;
+
+    // Metrics
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder loggedOutCount = new LongAdder();
+    private final LongAdder rescheduledCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    SessionRegistry(long tickMillis) {
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "globemed-session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireIdleSessions, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized SessionRegistry getInstance() {
+        if (instance == null) {
+            instance = new SessionRegistry(DEFAULT_TICK_MILLIS);
+        }
+        return instance;
+    }
+
+    public Session create(String username, long idleTimeoutMillis) {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeoutMillis);
+        }
+        long now = System.currentTimeMillis();
+        Session session;
+        do {
+            session = new Session(newToken(), username, idleTimeoutMillis, now);
+        } while (sessions.putIfAbsent(session.getToken(), session) != null);
+
+        synchronized (wheel) {
+            wheel.schedule(session, session.getExpiresAtMillis());
+        }
+        createdCount.increment();
+        return session;
+    }
+
+    /**
+     * The live session for a token, or null if there is none or it has
+     * expired. Does not count as activity.
+     */
+    public Session get(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.get(token);
+        if (session == null) {
+            rejectedCount.increment();
+            return null;
+        }
+        if (session.isExpired(System.currentTimeMillis())) {
+            expire(session);
+            rejectedCount.increment();
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Like {@link #get(String)}, and records activity on the session.
+     */
+    public Session touch(String token) {
+        Session session = get(token);
+        if (session != null) {
+            session.touch(System.currentTimeMillis());
+        }
+        return session;
+    }
+
+    /**
+     * End a session (logout). Returns the session, or null if it was not
+     * active.
+     */
+    public Session invalidate(String token) {
+        if (token == null) {
+            return null;
+        }
+        Session session = sessions.remove(token);
+        if (session != null) {
+            // Its wheel entry is dropped when it fires
+            loggedOutCount.increment();
+        }
+        return session;
+    }
+
+    private void expire(Session session) {
+        // Only the caller that actually removes it counts the expiry
+        if (sessions.remove(session.getToken(), session)) {
+            expiredCount.increment();
+        }
+    }
+
+    private void expireIdleSessions() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Session> due;
+            synchronized (wheel) {
+                due = wheel.advanceTo(now);
+            }
+            for (Session session : due) {
+                if (sessions.get(session.getToken()) != session) {
+                    continue; // Logged out or already expired
+                }
+                if (session.isExpired(now)) {
+                    expire(session);
+                } else {
+                    rescheduledCount.increment();
+                    synchronized (wheel) {
+                        wheel.schedule(session, session.getExpiresAtMillis());
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            // Keep the ticker alive; a failed run is retried on the next tick
+            System.err.println("Session expiry failed: " + e.getMessage());
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public int getActiveCount() {
+        return sessions.size();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    public long getLoggedOutCount() {
+        return loggedOutCount.sum();
+    }
+
+    public void printStatistics() {
+        int scheduled;
+        synchronized (wheel) {
+            scheduled = wheel.size();
+        }
+        System.out.println("Session Registry Statistics:");
+        System.out.println("  Active sessions: " + getActiveCount() + " (timers scheduled: " + scheduled + ")");
+        System.out.println("  Created: " + getCreatedCount() + ", expired: " + getExpiredCount()
+                + ", logged out: " + getLoggedOutCount());
+        System.out.println("  Rejected lookups: " + rejectedCount.sum()
+                + ", timers rescheduled after activity: " + rescheduledCount.sum());
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.session;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel with three levels of 64 slots.
+ *
+ * Level 0 covers the next 64 ticks one tick per slot, level 1 the next 4096
+ * ticks 64 ticks per slot, and level 2 the next 262144 ticks. Scheduling is
+ * O(1); when the lower level wraps round, the matching slot of the level
+ * above is cascaded down. Deadlines further out than level 2 reaches are
+ * clamped and simply come round again.
+ *
+ * Not thread-safe; {@link SessionRegistry} guards it with a lock.
+ *
+ * @author Hansana
+ */
+final class TimingWheel<T> {
+
+    private static final int LEVELS = 3;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<List<Entry<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.slots = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    void schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(0, deadlineMillis - startMillis + tickMillis - 1) / tickMillis;
+        insert(new Entry<>(item, deadlineTick));
+        size++;
+    }
+
+    private void insert(Entry<T> entry) {
+        long delay = entry.deadlineTick - currentTick;
+        if (delay <= 0) {
+            delay = 1; // Overdue; fire on the next tick
+        } else if (delay > MAX_DELAY_TICKS) {
+            delay = MAX_DELAY_TICKS;
+        }
+        long tick = currentTick + delay;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        slots.get(level * SLOTS + slot).add(entry);
+    }
+
+    /**
+     * Advance to the given time and return every item whose deadline has
+     * passed.
+     */
+    List<T> advanceTo(long nowMillis) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        List<T> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the top so entries land in the right lower slot
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level);
+                }
+            }
+            List<Entry<T>> slot = slots.get((int) (currentTick & SLOT_MASK));
+            if (slot.isEmpty()) {
+                continue;
+            }
+            List<Entry<T>> entries = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry<T> entry : entries) {
+                if (entry.deadlineTick <= currentTick) {
+                    due.add(entry.item);
+                    size--;
+                } else {
+                    insert(entry); // Clamped deadline, not due yet
+                }
+            }
+        }
+        return due;
+    }
+
+    private void cascade(int level) {
+        int slot = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        List<Entry<T>> bucket = slots.get(level * SLOTS + slot);
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Entry<T>> entries = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Entry<T> entry : entries) {
+            if (entry.deadlineTick <= currentTick) {
+                // The current level 0 slot is processed right after cascading
+                slots.get((int) (currentTick & SLOT_MASK)).add(entry);
+            } else {
+                insert(entry);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Entry<T> {
+
+        final T item;
+        final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package com.globemed.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 password hashes, stored as
+ * {@code pbkdf2$<iterations>$<base64 salt>$<base64 hash>}.
+ *
+ * The iteration count is calibrated once at startup so one hash takes about
+ * {@link #DEFAULT_TARGET_MILLIS} on this machine, unless it is fixed with the
+ * {@code globemed.password.iterations} system property. Hashing and
+ * verification run on a small bounded pool sized below the core count, so a
+ * burst of logins queues here instead of starving the EDT and the
+ * connection pool; when the queue is full the login is rejected.
+ *
+ * Passwords stored before hashing (clear text or {@link SecurityUtils}
+ * encrypted) still verify, and {@link #needsRehash(String)} reports them so
+ * they can be replaced on the next successful login.
+ *
+ * @author Hansana
+ */
+public class PasswordHasher {
+
+    public static final long DEFAULT_TARGET_MILLIS = 100;
+
+    private static final String PREFIX = "pbkdf2";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MIN_ITERATIONS = 100_000;
+    private static final int MAX_ITERATIONS = 5_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final int QUEUE_CAPACITY = 32;
+    private static final long WAIT_SECONDS = 30;
+
+    private static PasswordHasher instance;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+
+    // Metrics
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder verifyCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rehashCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder workNanos = new LongAdder();
+
+    private PasswordHasher(int iterations) {
+        this.iterations = iterations;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread thread = new Thread(r, "globemed-password-hash");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized PasswordHasher getInstance() {
+        if (instance == null) {
+            Integer configured = Integer.getInteger("globemed.password.iterations");
+            int iterations = configured != null ? configured : calibrate(DEFAULT_TARGET_MILLIS);
+            instance = new PasswordHasher(Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations)));
+            System.out.println("Password hashing: " + instance.iterations + " PBKDF2 iterations");
+        }
+        return instance;
+    }
+
+    /**
+     * Iteration count for which one hash takes about {@code targetMillis},
+     * measured on this machine and rounded to 10,000.
+     */
+    public static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        char[] probe = "calibration-password".toCharArray();
+        long best = Long.MAX_VALUE;
+        // The first runs include JIT warm-up; keep the fastest
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            derive(probe, salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanosPerIteration = (double) best / CALIBRATION_ITERATIONS;
+        long iterations = Math.round(targetMillis * 1_000_000.0 / nanosPerIteration / 10_000) * 10_000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    public String hash(String password) {
+        return runBounded(() -> hashNow(password));
+    }
+
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        boolean matched = runBounded(() -> verifyNow(password, stored));
+        verifyCount.increment();
+        if (!matched) {
+            failedCount.increment();
+        }
+        return matched;
+    }
+
+    /**
+     * True for passwords not yet hashed and for hashes weaker than the
+     * current cost. A small calibration drift does not force a rehash.
+     */
+    public boolean needsRehash(String stored) {
+        int storedIterations = parseIterations(stored);
+        return storedIterations < 0 || storedIterations < iterations * 3L / 4;
+    }
+
+    /**
+     * The new hash to store after a successful login, or null if the stored
+     * value is current.
+     */
+    public String rehashIfNeeded(String password, String stored) {
+        if (!needsRehash(stored)) {
+            return null;
+        }
+        rehashCount.increment();
+        return hash(password);
+    }
+
+    public static boolean isHashed(String stored) {
+        return parseIterations(stored) > 0;
+    }
+
+    private String hashNow(String password) {
+        long start = System.nanoTime();
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password.toCharArray(), salt, iterations);
+        hashCount.increment();
+        workNanos.add(System.nanoTime() - start);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    private boolean verifyNow(String password, String stored) {
+        long start = System.nanoTime();
+        try {
+            int storedIterations = parseIterations(stored);
+            if (storedIterations < 0) {
+                return verifyLegacy(password, stored);
+            }
+            String[] parts = stored.split("\\$");
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            byte[] actual = derive(password.toCharArray(), salt, storedIterations);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Malformed password hash: " + e.getMessage());
+            return false;
+        } finally {
+            workNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // Clear text, or encrypted with SecurityUtils by older versions
+    private static boolean verifyLegacy(String password, String stored) {
+        byte[] given = password.getBytes(StandardCharsets.UTF_8);
+        if (MessageDigest.isEqual(given, stored.getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+        String decrypted = SecurityUtils.decrypt(stored);
+        return decrypted != null && MessageDigest.isEqual(given, decrypted.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Iterations of a pbkdf2$ value, or -1 if it is not one
+    private static int parseIterations(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX + "$")) {
+            return -1;
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return -1;
+        }
+        try {
+            int value = Integer.parseInt(parts[1]);
+            return value > 0 ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private <T> T runBounded(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new RejectedExecutionException("Too many logins in progress, please try again");
+        }
+        try {
+            return future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking password", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IllegalStateException("Timed out checking password", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Verify {@code attempts} logins from {@code callers} threads at once
+     * through the bounded pool and print the throughput, to size the target
+     * latency against the number of workstations.
+     */
+    public void benchmark(int attempts, int callers) throws InterruptedException {
+        String stored = hash("benchmark-password");
+        LongAdder completed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < callers; c++) {
+            int share = attempts / callers + (c < attempts % callers ? 1 : 0);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < share; i++) {
+                    try {
+                        verify("benchmark-password", stored);
+                        completed.increment();
+                    } catch (RejectedExecutionException e) {
+                        rejected.increment();
+                    }
+                }
+            }, "password-benchmark-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Password benchmark: %d verified, %d rejected in %.2fs (%.1f logins/s, %d threads)",
+                completed.sum(), rejected.sum(), seconds, completed.sum() / seconds, executor.getMaximumPoolSize()));
+    }
+
+    public void printStatistics() {
+        long operations = hashCount.sum() + verifyCount.sum();
+        System.out.println("Password Hasher Statistics:");
+        System.out.println("  Iterations: " + iterations + ", pool threads: " + executor.getMaximumPoolSize()
+                + ", queued: " + executor.getQueue().size() + "/" + QUEUE_CAPACITY);
+        System.out.println("  Hashes: " + hashCount.sum() + ", verifications: " + verifyCount.sum()
+                + " (" + failedCount.sum() + " failed), rehashed on login: " + rehashCount.sum());
+        System.out.println(String.format("  Average cost: %.1fms, rejected (queue full): %d",
+                operations == 0 ? 0.0 : workNanos.sum() / 1e6 / operations, rejectedCount.sum()));
+    }
+}
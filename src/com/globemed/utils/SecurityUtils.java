@@ -4,26 +4,107 @@
  */
 package com.globemed.utils;
 
+import com.globemed.models.Patient;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.List;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
+ * Field-level encryption for sensitive patient data.
+ *
+ * Values are encrypted with AES-256-GCM and stored as
+ * {@code v1:<base64(iv || ciphertext || tag)>}. The key is derived once with
+ * PBKDF2 from the {@code globemed.encryption.key} system property (or the
+ * {@code GLOBEMED_ENCRYPTION_KEY} environment variable), and each thread
+ * keeps its own {@link Cipher}, so encrypting or decrypting a field costs a
+ * cipher init rather than a provider lookup and key derivation.
+ *
+ * Values without the version prefix were written by the old Base64 scheme
+ * and are still decoded, so existing rows stay readable until they are next
+ * saved.
  *
  * @author Hansana
  */
 public class SecurityUtils {
 
-    // Simple encryption for demonstration (use proper encryption in production)
+    private static final String VERSION_PREFIX = "v1:";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BITS = 256;
+    private static final int KEY_DERIVATION_ITERATIONS = 210_000;
+    private static final byte[] KEY_SALT = "GlobeMed/field-encryption/v1".getBytes(StandardCharsets.UTF_8);
+    private static final String DEVELOPMENT_PASSPHRASE = "globemed-development-key";
+
+    // Lists at least this long are processed on the common fork-join pool
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    });
+
+    private static final ThreadLocal<SecureRandom> RANDOMS = ThreadLocal.withInitial(SecureRandom::new);
+
+    // Derived on first use; PBKDF2 is deliberately slow
+    private static final class KeyHolder {
+
+        static final SecretKey KEY = deriveKey();
+    }
+
+    private static SecretKey deriveKey() {
+        String passphrase = System.getProperty("globemed.encryption.key");
+        if (passphrase == null || passphrase.isEmpty()) {
+            passphrase = System.getenv("GLOBEMED_ENCRYPTION_KEY");
+        }
+        if (passphrase == null || passphrase.isEmpty()) {
+            System.err.println("WARNING: globemed.encryption.key is not set, using the development key");
+            passphrase = DEVELOPMENT_PASSPHRASE;
+        }
+
+        PBEKeySpec spec = new PBEKeySpec(passphrase.toCharArray(), KEY_SALT, KEY_DERIVATION_ITERATIONS, KEY_BITS);
+        try {
+            byte[] keyBytes = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(keyBytes, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive the field encryption key", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
     public static String encrypt(String data) {
         if (data == null || data.isEmpty()) {
             return data;
         }
 
+        byte[] plaintext = data.getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOMS.get().nextBytes(iv);
         try {
-            // Simple Base64 encoding for demo (use AES in production)
-            return Base64.getEncoder().encodeToString(data.getBytes("UTF-8"));
-        } catch (Exception e) {
-            System.err.println("Encryption error: " + e.getMessage());
-            return data; // Return original if encryption fails
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.ENCRYPT_MODE, KeyHolder.KEY, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] output = new byte[IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+            System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+            cipher.doFinal(plaintext, 0, plaintext.length, output, IV_LENGTH);
+            return VERSION_PREFIX + Base64.getEncoder().encodeToString(output);
+        } catch (GeneralSecurityException e) {
+            // Never fall back to storing the plaintext
+            throw new IllegalStateException("Encryption failed", e);
         }
     }
 
@@ -31,13 +112,85 @@ public class SecurityUtils {
         if (encryptedData == null || encryptedData.isEmpty()) {
             return encryptedData;
         }
+        if (!isEncrypted(encryptedData)) {
+            return decodeLegacy(encryptedData);
+        }
 
         try {
-            // Simple Base64 decoding for demo
-            return new String(Base64.getDecoder().decode(encryptedData), "UTF-8");
-        } catch (Exception e) {
+            byte[] input = Base64.getDecoder().decode(encryptedData.substring(VERSION_PREFIX.length()));
+            if (input.length < IV_LENGTH + TAG_BITS / 8) {
+                throw new GeneralSecurityException("ciphertext too short");
+            }
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.DECRYPT_MODE, KeyHolder.KEY, new GCMParameterSpec(TAG_BITS, input, 0, IV_LENGTH));
+            byte[] plaintext = cipher.doFinal(input, IV_LENGTH, input.length - IV_LENGTH);
+            return new String(plaintext, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
             System.err.println("Decryption error: " + e.getMessage());
             return encryptedData; // Return original if decryption fails
         }
     }
+
+    public static boolean isEncrypted(String data) {
+        return data != null && data.startsWith(VERSION_PREFIX);
+    }
+
+    // Values written before AES-GCM were plain Base64; anything that does not
+    // decode to valid UTF-8 was never encoded and is returned unchanged
+    private static String decodeLegacy(String data) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(data);
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (IllegalArgumentException | CharacterCodingException e) {
+            return data;
+        }
+    }
+
+    // Phone numbers were stored in clear text before, so there is no legacy
+    // encoding to undo
+    private static String decryptIfEncrypted(String data) {
+        return isEncrypted(data) ? decrypt(data) : data;
+    }
+
+    /**
+     * Encrypt the sensitive fields (medical history, address, phone) in place.
+     */
+    public static void encryptPatient(Patient patient) {
+        patient.setMedicalHistory(encrypt(patient.getMedicalHistory()));
+        patient.setAddress(encrypt(patient.getAddress()));
+        patient.setPhone(encrypt(patient.getPhone()));
+    }
+
+    /**
+     * Decrypt the sensitive fields in place.
+     */
+    public static void decryptPatient(Patient patient) {
+        patient.setMedicalHistory(decrypt(patient.getMedicalHistory()));
+        patient.setAddress(decrypt(patient.getAddress()));
+        patient.setPhone(decryptIfEncrypted(patient.getPhone()));
+    }
+
+    public static void encryptAll(List<Patient> patients) {
+        if (patients.size() >= PARALLEL_THRESHOLD) {
+            patients.parallelStream().forEach(SecurityUtils::encryptPatient);
+        } else {
+            for (Patient patient : patients) {
+                encryptPatient(patient);
+            }
+        }
+    }
+
+    public static void decryptAll(List<Patient> patients) {
+        if (patients.size() >= PARALLEL_THRESHOLD) {
+            patients.parallelStream().forEach(SecurityUtils::decryptPatient);
+        } else {
+            for (Patient patient : patients) {
+                decryptPatient(patient);
+            }
+        }
+    }
 }